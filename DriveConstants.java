@@ -10,14 +10,19 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularAcceleration;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
 import edu.wpi.first.units.measure.Distance;
+import edu.wpi.first.units.measure.Frequency;
 import edu.wpi.first.units.measure.LinearAcceleration;
 import edu.wpi.first.units.measure.LinearVelocity;
 import edu.wpi.first.units.measure.Mass;
 import edu.wpi.first.units.measure.MomentOfInertia;
+import edu.wpi.first.units.measure.Temperature;
+import edu.wpi.first.units.measure.Time;
+import edu.wpi.first.units.measure.Voltage;
 import edu.wpi.first.wpilibj.RobotBase;
 import frc.robot.Constants.RobotMap;
 
@@ -36,9 +41,12 @@ public class DriveConstants {
     public static final MomentOfInertia robotMOI = KilogramSquareMeters.of(6.8);
 
     public static final Distance wheelRadius = Inches.of(1.931);
+    public static final double wheelCOF = 1.0;
 
-    public static final Current driveCurrentLimit = Amps.of(60);
-    public static final Current steerCurrentLimit = Amps.of(30);
+    public static final Current driveCurrentLimit = Amps.of(60); // Supply
+    public static final Current steerCurrentLimit = Amps.of(30); // Supply
+    public static final Current driveStatorCurrentLimit = Amps.of(120); // Set at startup and lowered by the thermal model
+    public static final Current steerStatorCurrentLimit = Amps.of(40); // Set at startup and lowered by the thermal model
 
     public static final double kPDriveDefault = RobotBase.isReal() ? 1       : 0.3;
     public static final double kIDriveDefault = RobotBase.isReal() ? 0       : 0;
@@ -99,6 +107,143 @@ public class DriveConstants {
     public static final double kIThetaControllerDefault = 0;
     public static final double kDThetaControllerDefault = 0;
 
+    // High-rate odometry
+    public static final Frequency odometryFrequency = Hertz.of(250);
+    public static final int odometryQueueSize = 20;
+    public static final Frequency sparkOdometryFrequency = Hertz.of(200); // Also the SparkMax position frame rate
+    public static final int odometryThreadPriority = 41;
+
+    // Status signal rates
+    public static final Frequency odometrySignalFrequency = Hertz.of(100);
+    public static final Frequency controlSignalFrequency = Hertz.of(50);
+    public static final Frequency absEncoderSignalFrequency = Hertz.of(20); // Fused with the motor encoder, so it can be slow
+    public static final Frequency thermalSignalFrequency = Hertz.of(4);
+
+    // Signal filtering
+    public static final int accelerationFilterWindow = 7; // Samples in each Savitzky-Golay fit
+
+    // Steer estimation
+    public static final double steerEstimatorGain = 0.05; // Fraction of the error corrected per absolute sample
+    public static final Angle steerReseedThreshold = Degrees.of(3);
+    public static final AngularVelocity steerEstimatorMaxVelocity = RadiansPerSecond.of(8);
+    public static final Time steerReseedTimeout = Seconds.of(0.01); // How long the main loop waits for the controller to accept a reseed
+    public static final AngularVelocity steerReseedMaxVelocity = RadiansPerSecond.of(0.5); // Slow enough that a reseed's jump stands out from the motion
+
+    // Profiled steering
+    public static final boolean profiledSteer = false; // Motion Magic on TalonFX, MAXMotion on SparkMax, a trapezoid profile in sim
+    public static final double steerProfileMargin = 0.8; // Fraction of the characterized limits the profile asks for
+    public static final Angle steerSettleStep = Degrees.of(30); // Setpoint jumps at least this big are timed
+    public static final Angle steerSettleTolerance = Degrees.of(2);
+    public static final Time steerSettleTimeout = Seconds.of(1);
+
+    // Latency compensation
+    public static final Time maxLatencyCompensation = Seconds.of(0.05);
+    public static final Time gyroLatency = Seconds.of(0.005);
+
+    // Control loop
+    public static final Frequency controlLoopFrequency = Hertz.of(200); // Clamped to [100, 250]
+    public static final Time controlLoopPeriod = Seconds.of(1 / Math.max(100, Math.min(controlLoopFrequency.in(Hertz), 250)));
+    public static final int controlThreadPriority = 40;
+    public static final boolean synchronizedControl = false; // Runs the control loop when module signals arrive instead of on a timer
+    public static final Time syncWaitTimeout = Seconds.of(0.05);
+    public static final int controlLatencyBufferSize = 32; // Control cycles kept between main loop cycles
+
+    // Loop watchdog
+    public static final Time loopBudget = Seconds.of(0.02);
+    public static final int loopWatchdogWindow = 10; // Cycles
+    public static final double loopOverrunThreshold = 1.1; // Fraction of the budget between cycle starts that counts as an overrun
+    public static final int loopShedOverruns = 3; // Overruns in the window that shed a level
+    public static final double loopShedThreshold = 0.9; // Fraction of the budget the drivetrain's own work can take before shedding
+    public static final double loopRestoreThreshold = 0.7; // Fraction of the budget the drivetrain's own work must stay under to restore
+    public static final int loopRestoreCycles = 50;
+    public static final int telemetryDownsample = 5;
+
+    // JIT warm-up
+    public static final int warmupIterations = 20000;
+    public static final Time warmupBudget = Seconds.of(0.005); // Per cycle
+
+    // Driver input shaping
+    public static final double joystickDeadband = 0.1;
+    public static final double translationExpo = 2;
+    public static final double rotationExpo = 2;
+    public static final double translationSlewRate = 6; // 1/s
+    public static final double rotationSlewRate = 8; // 1/s
+    public static final Time headingPredictionLatency = Seconds.of(0.015); // From the command running to its speeds taking effect, up to a control period plus the module response
+
+    // Thermal model
+    public static final Temperature ambientTemperature = Celsius.of(25);
+    public static final Temperature motorTemperatureLimit = Celsius.of(90);
+    public static final Time thermalHorizon = Seconds.of(30);
+    public static final double thermalCorrectionRate = 0.05; // 1/s
+
+    public static final double driveThermalResistance = 1.1; // K/W
+    public static final double driveThermalCapacitance = 300; // J/K
+    public static final double steerThermalResistance = 1.5; // K/W
+    public static final double steerThermalCapacitance = 200; // J/K
+
+    public static final Current minDriveCurrentLimit = Amps.of(20);
+    public static final Current minSteerCurrentLimit = Amps.of(10);
+    public static final Current currentLimitHysteresis = Amps.of(2);
+
+    // Battery model
+    public static final Voltage nominalBatteryVoltage = Volts.of(12.5);
+    public static final Voltage minBatteryVoltage = Volts.of(7.5); // Brownout starts at 6.75V on the roboRIO 2
+    public static final double batteryResistance = 0.02; // Ohms, battery plus wiring
+    public static final double minBatteryResistance = 0.005; // Ohms
+    public static final double maxBatteryResistance = 0.1; // Ohms
+    public static final double batteryModelForgetting = 0.995;
+    public static final double steerReserveMargin = 1.5; // Steer current reserved per amp the steer motor is drawing
+    public static final double minSupplyDutyCycle = 0.1; // Floor when a supply limit is turned into a stator limit
+    public static final Voltage brownoutVoltage = Volts.of(6.75);
+
+    // Sim sensor models
+    public static final long simSeed = 1086;
+    public static final Time simSignalLatency = Seconds.of(0.008); // Motor position and velocity frames
+    public static final Time simAbsEncoderLatency = Seconds.of(0.02);
+    public static final int simMotorCountsPerRev = 2048;
+    public static final int simAbsEncoderCountsPerRev = 4096;
+    public static final LinearVelocity simDriveVelocityNoise = MetersPerSecond.of(0.02);
+    public static final AngularVelocity simSteerVelocityNoise = RadiansPerSecond.of(0.05);
+    public static final Angle simAbsEncoderNoise = Degrees.of(0.2);
+    public static final Current simCurrentNoise = Amps.of(0.5);
+    public static final double simFrameDropRate = 0.01;
+    public static final Current simOtherLoadCurrent = Amps.of(10); // Everything on the robot that isn't the drivetrain
+
+    // Chassis sim
+    public static final double tireSlipStiffness = 2000; // N per m/s of slip
+    public static final Distance centerOfMassHeight = Meters.of(0.2);
+    public static final Time chassisSimSubstep = Seconds.of(0.0005);
+    public static final double bumperRestitution = 0.3; // How much closing speed is kept when two robots collide
+
+    // Pathfinding
+    public static final Distance fieldLength = Meters.of(17.548);
+    public static final Distance fieldWidth = Meters.of(8.052);
+    public static final Translation2d blueReefCenter = new Translation2d(4.489, 4.026);
+    public static final Translation2d redReefCenter = new Translation2d(13.059, 4.026);
+    public static final Distance reefRadius = Meters.of(0.96); // Circumscribed radius of the reef hexagon
+    public static final Distance bumperThickness = Inches.of(3.5);
+    public static final Distance pathfindingClearance = Meters.of(0.05);
+    public static final Distance navGridCellSize = Meters.of(0.1);
+    public static final Distance dynamicObstacleRadius = Meters.of(0.55); // Half the diagonal of another robot
+    public static final Distance obstacleUpdateDistance = Meters.of(0.2); // How far a robot moves before the pathfinders are told again
+    public static final LinearVelocity pathfindingMaxVelocity = MetersPerSecond.of(3);
+    public static final LinearAcceleration pathfindingMaxAcceleration = MetersPerSecondPerSecond.of(2.5);
+    public static final Distance replanDeviation = Meters.of(0.3);
+
+    // Visual servoing
+    public static final Distance visualServoDistance = Meters.of(0.5); // Starts handing over to the visual pose this far from the goal
+    public static final Distance visualServoBlendDistance = Meters.of(0.2); // Fully on the visual pose this much closer
+    public static final Time visualServoHandoverTime = Seconds.of(0.2); // Quickest full handover in either direction
+    public static final Time visualServoMaxAge = Seconds.of(0.5);
+    public static final Time odometryHistoryLength = Seconds.of(1.5);
+
+    // Cost-to-go map
+    public static final String costToGoFile = "costtogo.bin"; // In the deploy directory
+    public static final int costToGoHeadingBins = 16;
+
     // Kraken X44 DCMotor instance
     public static final DCMotor krakenX44 = new DCMotor(12, 4.05, 275, 1.4, 788.54, 1);
+
+    // Kraken X60 DCMotor instance
+    public static final DCMotor krakenX60 = DCMotor.getKrakenX60(1);
 }
@@ -2,57 +2,60 @@ package frc.robot.subsystems.drivetrain;
 
 import static edu.wpi.first.units.Units.*;
 
-import com.ctre.phoenix.sensors.CANCoderConfiguration;
-import com.ctre.phoenix6.configs.CANcoderConfiguration;
-import com.ctre.phoenix6.configs.Pigeon2Configuration;
-import com.ctre.phoenix6.configs.Slot0Configs;
-import com.ctre.phoenix6.configs.TalonFXConfiguration;
-import com.ctre.phoenix6.hardware.CANcoder;
-import com.ctre.phoenix6.hardware.TalonFX;
-import com.ctre.phoenix6.signals.DifferentialSensorSourceValue;
-import com.ctre.phoenix6.signals.FeedbackSensorSourceValue;
-import com.ctre.phoenix6.signals.GravityTypeValue;
-import com.ctre.phoenix6.signals.InvertedValue;
-import com.ctre.phoenix6.signals.StaticFeedforwardSignValue;
-import com.ctre.phoenix6.swerve.SwerveModuleConstants.SteerFeedbackType;
-import com.ctre.phoenix6.swerve.SwerveModuleConstants.SteerMotorArrangement;
-import com.ctre.phoenix6.swerve.SwerveDrivetrain;
-import com.ctre.phoenix6.swerve.SwerveDrivetrainConstants;
-import com.ctre.phoenix6.swerve.SwerveModule;
-import com.ctre.phoenix6.swerve.SwerveModuleConstants;
-import com.ctre.phoenix6.swerve.SwerveModuleConstants.ClosedLoopOutputType;
-import com.ctre.phoenix6.swerve.SwerveModuleConstants.DriveMotorArrangement;
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.config.ModuleConfig;
 import com.pathplanner.lib.config.PIDConstants;
 import com.pathplanner.lib.config.RobotConfig;
 import com.pathplanner.lib.controllers.PPHolonomicDriveController;
 import choreo.trajectory.SwerveSample;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.units.measure.Voltage;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.sysid.SysIdRoutineLog;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.robot.Constants;
-import frc.robot.Constants.RobotMap;
+import frc.robot.subsystems.drivetrain.filter.SampleBuffer;
+import frc.robot.subsystems.drivetrain.pathfinding.CostToGoMap;
+import frc.robot.subsystems.drivetrain.pathfinding.Pathfinder;
+import frc.robot.subsystems.drivetrain.trajectory.CompactTrajectory;
+import frc.robot.subsystems.drivetrain.trajectory.TrajectoryLibrary;
 import frc.robot.subsystems.gyro.Gyro;
 import frc.robot.subsystems.util.AdjustableValues;
 import frc.robot.subsystems.vision.Vision;
 import frc.robot.subsystems.vision.util.VisionResult;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import org.littletonrobotics.junction.Logger;
 
 public class Drivetrain extends SubsystemBase {
+    // Null for the robot's own drivetrain, or the name of an extra simulated one
+    private String robotName;
+    private String key;
+    private boolean replay;
+
+    private DrivetrainIO io;
     private ModuleIO[] modules;
     private SwerveModuleState[] states;
     private SwerveModulePosition[] positions;
@@ -75,15 +78,75 @@ public class Drivetrain extends SubsystemBase {
     private SwerveDriveKinematics kinematics;
     private SwerveDrivePoseEstimator poseEstimator;
 
+    // Odometry alone, for carrying vision frames forward to now
+    private SwerveDriveOdometry odometry;
+    private TimeInterpolatableBuffer<Pose2d> odometryHistory = TimeInterpolatableBuffer.createBuffer(DriveConstants.odometryHistoryLength.in(Seconds));
+
+    // The newest vision frame, and that frame carried forward by odometry
+    private Pose2d latestVisionPose;
+    private double latestVisionTimestamp = -1;
+    private volatile Pose2d visualPose;
+
     // Subsystem depencies
     private Gyro gyro;
     private Vision vision;
 
     // Configs for closed loop control
-    private boolean headingLocked;
-    private Rotation2d lockedAngle;
+    private volatile boolean headingLocked;
+    private volatile Rotation2d lockedAngle;
 
+    // The heading when there's no gyro, from the backend's samples if it has them or integrated from the modules if not
     private Rotation2d estimatedHeading = new Rotation2d();
+    private boolean sampledHeadingSeeded = false;
+
+    // Latest gyro reading and the FPGA time it was measured at
+    private volatile Rotation2d yaw = new Rotation2d();
+    private volatile double yawTimestamp = 0;
+    private volatile double yawRate = 0;
+
+    private double lastSampleTimestamp = -1;
+
+    // Plans paths around the field on its own thread, created on first use
+    private Pathfinder pathfinder;
+
+    // Created on first use since most runs never use them
+    private SysIdRoutine sysIdRoutine;
+
+    // Exercises the hot paths while disabled
+    private DrivetrainWarmup warmup = new DrivetrainWarmup();
+    private LoopWatchdog watchdog;
+
+    // Travel times to every reef pose, or null if the map wasn't deployed
+    private CostToGoMap costToGoMap;
+    private String costToGoStatus = "Loaded";
+
+    // The latest snapshot, which is all that other threads read
+    private AtomicReference<DrivetrainState> snapshot = new AtomicReference<>();
+
+    // Current limits
+    private ThermalManager thermalManager;
+    private PowerAllocator powerAllocator;
+    private double[] appliedDriveLimits;
+    private double[] appliedSteerLimits;
+    private double[] appliedDriveSupplyLimits;
+    private double[] appliedSteerSupplyLimits;
+
+    // Control loop
+    // Commands only publish setpoints, the control loop is the only thing that sends them to the modules.
+    private Notifier controlNotifier;
+    private SwerveDriveKinematics controlKinematics;
+    private AtomicReference<ChassisSpeeds> desiredSpeeds = new AtomicReference<>(new ChassisSpeeds());
+    private volatile boolean xStatesRequested = false;
+    private volatile ChassisSpeeds setpointSpeeds = new ChassisSpeeds();
+    private volatile SwerveModuleState[] setpointStates;
+    private volatile double controlPeriod = DriveConstants.controlLoopPeriod.in(Seconds);
+    private boolean inlineControl;
+    private Thread syncControlThread;
+    private SampleBuffer controlLatencies = new SampleBuffer(DriveConstants.controlLatencyBufferSize);
+    private volatile int syncTimeouts = 0;
+    private double lastControlTimestamp = -1;
+    private double headingIntegral = 0;
+    private boolean priorityRaised = false;
 
     /**
      * Creates a new Drivetrain subsystem.
@@ -93,99 +156,40 @@ public class Drivetrain extends SubsystemBase {
      * @param modules The module IOs to drive on.
     */
     public Drivetrain(Gyro gyro, Vision vision, ModuleIO... modules) {
-        SwerveDrivetrainConstants dConst = new SwerveDrivetrainConstants();
-    
-        dConst.Pigeon2Configs = new Pigeon2Configuration();
-        dConst.Pigeon2Id = RobotMap.GYRO_Pigeon2Id; // Same as default...  Should I leave it?
-        
-        SwerveModuleConstants<TalonFXConfiguration,TalonFXConfiguration,CANcoderConfiguration> mConst = new SwerveModuleConstants<TalonFXConfiguration,TalonFXConfiguration,CANcoderConfiguration>();
-
-        int moduleId = 0;
-        
-        Slot0Configs driveSlot0 = new Slot0Configs();
-        driveSlot0.kP = DriveConstants.kPDriveDefault;
-        driveSlot0.kI = DriveConstants.kIDriveDefault;
-        driveSlot0.kD = DriveConstants.kDDriveDefault;
-        driveSlot0.kS = DriveConstants.kSDriveDefault;
-        driveSlot0.kV = DriveConstants.kVDriveDefault;
-        driveSlot0.kA = DriveConstants.kADriveDefault;
-
-        Slot0Configs steerSlot0 = new Slot0Configs();
-        steerSlot0.kP = DriveConstants.kPSteerDefault;
-        steerSlot0.kI = DriveConstants.kISteerDefault;
-        steerSlot0.kD = DriveConstants.kDSteerDefault;
-        steerSlot0.kS = DriveConstants.kSSteerDefault;
-        steerSlot0.kV = DriveConstants.kVSteerDefault;
-        steerSlot0.kA = DriveConstants.kASteerDefault;
-
-        TalonFXConfiguration driveConfig = new TalonFXConfiguration();
-        driveConfig.Audio.AllowMusicDurDisable = false;
-        driveConfig.Audio.BeepOnBoot = true;
-        driveConfig.Audio.BeepOnConfig = true;
-        driveConfig.ClosedLoopGeneral.ContinuousWrap = true;
-        driveConfig.ClosedLoopRamps.DutyCycleClosedLoopRampPeriod = 0;
-        driveConfig.ClosedLoopRamps.VoltageClosedLoopRampPeriod = 0;
-        driveConfig.CurrentLimits.StatorCurrentLimit = DriveConstants.driveCurrentLimit.in(Amps);
-        driveConfig.CurrentLimits.StatorCurrentLimitEnable = true;
-        driveConfig.DifferentialConstants.PeakDifferentialDutyCycle = 1;
-        driveConfig.DifferentialConstants.PeakDifferentialVoltage = 12;
-        driveConfig.DifferentialSensors.DifferentialRemoteSensorID = (int) DriveConstants.moduleConfigs[moduleId][2];
-        driveConfig.DifferentialSensors.DifferentialSensorSource = DifferentialSensorSourceValue.RemoteCANcoder;
-        driveConfig.Feedback.FeedbackRemoteSensorID = (int) DriveConstants.moduleConfigs[moduleId][2];
-        // driveConfig.Feedback.FeedbackRotorOffset; // Not sure if this needs to be set... The offset will be set in the CANcoder config
-        driveConfig.Feedback.FeedbackSensorSource = FeedbackSensorSourceValue.RemoteCANcoder;
-        driveConfig.MotorOutput.Inverted = InvertedValue.Clockwise_Positive;
-        driveConfig.MotorOutput.NeutralMode;
-        driveConfig.MotorOutput.PeakForwardDutyCycle;
-        driveConfig.MotorOutput.PeakReverseDutyCycle;
-        driveConfig.OpenLoopRamps.DutyCycleOpenLoopRampPeriod;
-        driveConfig.OpenLoopRamps.VoltageOpenLoopRampPeriod;
-        driveConfig.SoftwareLimitSwitch.ForwardSoftLimitEnable;
-        driveConfig.SoftwareLimitSwitch.ForwardSoftLimitThreshold;
-        driveConfig.SoftwareLimitSwitch.ReverseSoftLimitEnable;
-        driveConfig.SoftwareLimitSwitch.ReverseSoftLimitThreshold;
-        driveConfig.Voltage.PeakForwardVoltage;
-        driveConfig.Voltage.PeakReverseVoltage;
-        driveConfig.Voltage.SupplyVoltageTimeConstant;
-
-        TalonFXConfiguration steerConfig = new TalonFXConfiguration();
-        CANcoderConfiguration encoderConfig = new CANcoderConfiguration();
-
-        mConst.CouplingGearRatio = 0; //?
-        mConst.DriveFrictionVoltage = 0.25; //?
-        mConst.DriveInertia = DriveConstants.driveMOI;
-        mConst.DriveMotorClosedLoopOutput = ClosedLoopOutputType.Voltage;
-        mConst.DriveMotorGains = driveSlot0;
-        mConst.DriveMotorGearRatio = DriveConstants.driveGearRatio;
-        mConst.DriveMotorId = (int) DriveConstants.moduleConfigs[moduleId][0];
-        mConst.DriveMotorInitialConfigs = new TalonFXConfiguration(); //?
-        mConst.DriveMotorInverted = true;
-        mConst.DriveMotorType = DriveMotorArrangement.TalonFX_Integrated;
-        mConst.EncoderId = (int) DriveConstants.moduleConfigs[moduleId][2];
-        mConst.EncoderInitialConfigs = new CANcoderConfiguration(); //?
-        mConst.EncoderInverted = false;
-        mConst.EncoderOffset = DriveConstants.moduleConfigs[moduleId][3];
-        mConst.FeedbackSource = SteerFeedbackType.RemoteCANcoder;
-        mConst.LocationX = DriveConstants.flModuleOffset.getX();
-        mConst.LocationY = DriveConstants.flModuleOffset.getY();
-        mConst.SlipCurrent = 120; //?
-        mConst.SpeedAt12Volts = DriveConstants.maxLinearVelocity.in(MetersPerSecond);
-        mConst.SteerFrictionVoltage = 0.25; //?
-        mConst.SteerInertia = DriveConstants.steerMOI;
-        mConst.SteerMotorClosedLoopOutput = ClosedLoopOutputType.Voltage;
-        mConst.SteerMotorGains = steerSlot0;
-        mConst.SteerMotorGearRatio = DriveConstants.steerGearRatio;
-        mConst.SteerMotorId = (int) DriveConstants.moduleConfigs[moduleId][1];
-        mConst.SteerMotorInitialConfigs = new TalonFXConfiguration(); //?
-        mConst.SteerMotorInverted = false;
-        mConst.SteerMotorType = SteerMotorArrangement.TalonFX_Integrated;
-        mConst.WheelRadius = DriveConstants.wheelRadius.in(Meters);
-
-
-
-        SwerveDrivetrain<TalonFX,TalonFX,CANcoder> dt = new SwerveDrivetrain<TalonFX,TalonFX,CANcoder>(TalonFX::new, TalonFX::new, CANcoder::new, dConst, mConst);
-        // SwerveModule<TalonFX,TalonFX,CANcoder> module = new SwerveModule<TalonFX,TalonFX,CANcoder>(TalonFX::new, TalonFX::new, CANcoder::new, consts, "rio", 1, 0);
-        System.out.println("Drivetrain initialized");
+        this(gyro, vision, new DrivetrainIOModules(modules));
+    }
+
+    /**
+     * Creates a new Drivetrain subsystem.
+     * 
+     * @param gyro The gyro instance to get heading from.
+     * @param vision The vision instance to get pose estimates from.
+     * @param io The drivetrain backend to drive on.
+    */
+    public Drivetrain(Gyro gyro, Vision vision, DrivetrainIO io) {
+        this(gyro, vision, io, null);
+    }
+
+    /**
+     * Creates a new Drivetrain subsystem.
+     * 
+     * A named drivetrain is an extra robot in a multi-robot simulation.
+     * It logs under its own key, doesn't configure Pathplanner's AutoBuilder, doesn't follow AdjustableValues,
+     * and runs its control loop inline with {@link #periodic()} instead of on its own thread.
+     * 
+     * @param gyro The gyro instance to get heading from.
+     * @param vision The vision instance to get pose estimates from.
+     * @param io The drivetrain backend to drive on.
+     * @param name The name of the simulated robot, or null for the robot's own drivetrain.
+    */
+    public Drivetrain(Gyro gyro, Vision vision, DrivetrainIO io, String name) {
+        System.out.println(name == null ? "Drivetrain initialized" : "Drivetrain initialized for " + name);
+
+        this.robotName = name;
+        this.key = getLogKey(name);
+        this.watchdog = new LoopWatchdog(key);
+
+        StartupProfiler.Phase constructorPhase = StartupProfiler.phase("Drivetrain/Constructor");
 
         xController.setTolerance(0.01);
         yController.setTolerance(0.01);
@@ -195,7 +199,9 @@ public class Drivetrain extends SubsystemBase {
         this.gyro = gyro;
         this.vision = vision;
 
-        this.modules = modules;
+        this.io = io;
+        this.replay = io.isReplay();
+        this.modules = io.getModules();
         this.states = new SwerveModuleState[modules.length];
         this.positions = new SwerveModulePosition[modules.length];
 
@@ -204,6 +210,20 @@ public class Drivetrain extends SubsystemBase {
             positions[i] = modules[i].getPosition();
         }
 
+        thermalManager = new ThermalManager(modules.length);
+        powerAllocator = new PowerAllocator(modules.length);
+        appliedDriveLimits = new double[modules.length];
+        appliedSteerLimits = new double[modules.length];
+        appliedDriveSupplyLimits = new double[modules.length];
+        appliedSteerSupplyLimits = new double[modules.length];
+
+        for (int i = 0; i < modules.length; i++) {
+            appliedDriveLimits[i] = DriveConstants.driveStatorCurrentLimit.in(Amps);
+            appliedSteerLimits[i] = DriveConstants.steerStatorCurrentLimit.in(Amps);
+            appliedDriveSupplyLimits[i] = DriveConstants.driveCurrentLimit.in(Amps);
+            appliedSteerSupplyLimits[i] = DriveConstants.steerCurrentLimit.in(Amps);
+        }
+
         /*
          *  BL | FL 
          *     |    
@@ -213,34 +233,130 @@ public class Drivetrain extends SubsystemBase {
          */
 
         kinematics = new SwerveDriveKinematics(DriveConstants.translations);
+        controlKinematics = new SwerveDriveKinematics(DriveConstants.translations);
+
+        setpointStates = states.clone();
+
+        updateYaw();
+
+        try (StartupProfiler.Phase phase = StartupProfiler.phase("Drivetrain/PoseEstimator")) {
+            poseEstimator = new SwerveDrivePoseEstimator(kinematics, getHeadingAt(Timer.getFPGATimestamp()), positions, new Pose2d());
+            odometry = new SwerveDriveOdometry(kinematics, getHeadingAt(Timer.getFPGATimestamp()), positions);
+        }
 
-        poseEstimator = new SwerveDrivePoseEstimator(kinematics, getHeading(), positions, new Pose2d());
-
-        // Configuring SysID
-        new SysIdRoutine(new SysIdRoutine.Config(),
-            new SysIdRoutine.Mechanism(this::driveVolts, this::sysIdLog, this, "SwerveDrive"));
-
-        // Configuring Pathplanner
-        AutoBuilder.configure(this::getPose, this::resetPose, this::getSpeeds, this::drive,
-            new PPHolonomicDriveController(
-                new PIDConstants(DriveConstants.kPDriveDefault, DriveConstants.kIDriveDefault, DriveConstants.kDDriveDefault),
-                new PIDConstants(DriveConstants.kPSteerDefault, DriveConstants.kISteerDefault, DriveConstants.kDSteerDefault)
-            ),
-            new RobotConfig(
-                DriveConstants.robotMass, DriveConstants.robotMOI,
-                new ModuleConfig(DriveConstants.wheelRadius, DriveConstants.maxLinearVelocity, 1, DCMotor.getKrakenX60(1).withReduction(DriveConstants.driveGearRatio), DriveConstants.driveCurrentLimit, 2), 
-                DriveConstants.translations),
-            () -> (DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get().equals(Alliance.Red)),
-            this);
+        publishState();
+
+        // Starting the control loop
+        inlineControl = !io.isRealTime() || name != null;
+
+        if (!inlineControl && DriveConstants.synchronizedControl && io.canWaitForInputs()) {
+            syncControlThread = new Thread(this::runSynchronizedControl, "DrivetrainSyncControl");
+            syncControlThread.setDaemon(true);
+            syncControlThread.start();
+            io.registerControlFrames(DriveConstants.odometrySignalFrequency);
+        } else if (!inlineControl) {
+            controlNotifier = new Notifier(this::runControlLoop);
+            controlNotifier.setName("DrivetrainControl");
+            controlNotifier.startPeriodic(DriveConstants.controlLoopPeriod.in(Seconds));
+            io.registerControlFrames(DriveConstants.controlLoopPeriod.asFrequency());
+        }
+
+        // Mapping the cost-to-go table
+        if (replay) {
+            costToGoStatus = "Skipped in replay";
+        } else {
+            try (StartupProfiler.Phase phase = StartupProfiler.phase("Drivetrain/CostToGoMap")) {
+                costToGoMap = new CostToGoMap(Filesystem.getDeployDirectory().toPath().resolve(DriveConstants.costToGoFile));
+            } catch (NoSuchFileException e) {
+                // The generator hasn't been run yet, so straight-line distance is used
+                costToGoStatus = "Missing";
+            } catch (IOException e) {
+                costToGoStatus = "Invalid: " + e.getMessage();
+                DriverStation.reportWarning("Cost-to-go map not loaded, falling back to straight-line distance: " + e.getMessage(), false);
+            }
+        }
+
+        // Parsing every deployed trajectory in the background so autos don't wait on them
+        if (!replay) TrajectoryLibrary.preload();
+
+        // Configuring Pathplanner on this thread, so it is ready before any auto is built and its errors aren't lost
+        // AutoBuilder can only drive one robot, so it's left to the robot's own drivetrain, and a replay doesn't drive one at all
+        if (name == null && !replay) configureAutoBuilder();
 
         // Configuring Choreo
         thetaController.enableContinuousInput(-Math.PI, Math.PI);
+
+        constructorPhase.close();
+    }
+
+    /** Configures Pathplanner's AutoBuilder. */
+    private void configureAutoBuilder() {
+        try (StartupProfiler.Phase phase = StartupProfiler.phase("Drivetrain/AutoBuilder")) {
+            AutoBuilder.configure(this::getPose, this::resetPose, this::getSpeeds, this::drive,
+                new PPHolonomicDriveController(
+                    new PIDConstants(DriveConstants.kPDriveDefault, DriveConstants.kIDriveDefault, DriveConstants.kDDriveDefault),
+                    new PIDConstants(DriveConstants.kPSteerDefault, DriveConstants.kISteerDefault, DriveConstants.kDSteerDefault)
+                ),
+                new RobotConfig(
+                    DriveConstants.robotMass, DriveConstants.robotMOI,
+                    new ModuleConfig(DriveConstants.wheelRadius, DriveConstants.maxLinearVelocity, DriveConstants.wheelCOF, DCMotor.getKrakenX60(1).withReduction(DriveConstants.driveGearRatio), DriveConstants.driveCurrentLimit, 2), 
+                    DriveConstants.translations),
+                () -> (DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get().equals(Alliance.Red)),
+                this);
+        }
+    }
+
+    /**
+     * Gets the key a drivetrain logs under.
+     * 
+     * @param name The name of a simulated robot, or null for the robot's own drivetrain.
+     */
+    public static String getLogKey(String name) {
+        return name == null ? "/Subsystems/Drivetrain" : "/Sim/" + name + "/Drivetrain";
     }
 
-    /** Gets the point on the reef that is closest to the robot's current pose. */
+    /** Gets the key this drivetrain logs under. */
+    public String getLogKey() {
+        return key;
+    }
+
+    /** Gets the name of this simulated robot, or null if this is the robot's own drivetrain. */
+    public String getRobotName() {
+        return robotName;
+    }
+
+    /**
+     * Holds the loop watchdog at a recorded shed level instead of the one this run's timing gives, for replay.
+     * 
+     * @param level The recorded level, or null to go back to measuring.
+     */
+    public void replayShedLevel(LoopWatchdog.ShedLevel level) {
+        watchdog.setReplayedLevel(level);
+    }
+
+    /** Gets the SysId routine for the drive motors, creating it on first use. */
+    public SysIdRoutine getSysIdRoutine() {
+        if (sysIdRoutine == null) {
+            sysIdRoutine = new SysIdRoutine(new SysIdRoutine.Config(),
+                new SysIdRoutine.Mechanism(this::driveVolts, this::sysIdLog, this, "SwerveDrive"));
+        }
+
+        return sysIdRoutine;
+    }
+
+    /**
+     * Gets the point on the reef that is closest to the robot's current pose.
+     * 
+     * Closest means quickest to reach around the reef when the cost-to-go map is loaded, and straight-line distance otherwise.
+     */
     public Pose2d getClosestReefPoint() {
         Pose2d curPose = getPose();
 
+        if (costToGoMap != null) {
+            int best = costToGoMap.getBestGoal(curPose);
+            if (best >= 0) return costToGoMap.getGoal(best);
+        }
+
         double[] distances = new double[12];
 
         distances[0]  = Constants.Poses.REEF_Side1Left.getTranslation().getDistance(curPose.getTranslation());
@@ -277,6 +393,43 @@ public class Drivetrain extends SubsystemBase {
         }
     }
 
+    /**
+     * Gets the goal that is quickest to reach from the robot's current pose.
+     * 
+     * Goals that aren't in the cost-to-go map, or every goal if the map isn't loaded, are compared by straight-line distance.
+     * 
+     * @param goals The goals to choose from.
+     */
+    public Pose2d getBestGoal(List<Pose2d> goals) {
+        Pose2d curPose = getPose();
+
+        if (costToGoMap == null) return curPose.nearest(goals);
+
+        Pose2d best = null;
+        double bestTime = Double.POSITIVE_INFINITY;
+
+        for (Pose2d goal : goals) {
+            double time = costToGoMap.getTime(curPose, goal);
+            if (Double.isNaN(time)) return curPose.nearest(goals);
+
+            if (best == null || time < bestTime) {
+                best = goal;
+                bestTime = time;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Gets the estimated time to reach a goal from the robot's current pose.
+     * 
+     * Returns NaN if the goal isn't in the cost-to-go map or the map isn't loaded.
+     */
+    public double getTimeToGoal(Pose2d goal) {
+        return costToGoMap == null ? Double.NaN : costToGoMap.getTime(getPose(), goal);
+    }
+
     /**
      * DO NOT USE FOR ANYTHING OTHER THAN SYSID!!!
      * THIS FUNCTION DOES NOT CONTROL THE TURN MOTOR
@@ -319,6 +472,173 @@ public class Drivetrain extends SubsystemBase {
      */
     @Override
     public void periodic() {
+        StartupProfiler.log();
+        watchdog.startCycle();
+
+        // AdjustableValues keys are shared, so extra simulated drivetrains keep the gains they were created with
+        // A replay keeps them too, since the live values depend on the machine and aren't in the log
+        if (robotName == null && !replay && !watchdog.isShed(LoopWatchdog.ShedLevel.GAIN_CHECKS)) updateGains();
+
+        io.updateInputs();
+        updateYaw();
+
+        for (int i = 0; i < modules.length; i++) {
+            states[i] = modules[i].getState();
+        }
+
+        // Applying every odometry sample the backend collected since the last cycle
+        double[] sampleTimestamps = io.getOdometryTimestamps();
+        SwerveModulePosition[][] samplePositions = io.getOdometryPositions();
+        Rotation2d[] sampleHeadings = io.getOdometryHeadings();
+        Rotation2d[] usedHeadings = new Rotation2d[sampleTimestamps.length];
+
+        for (int s = 0; s < sampleTimestamps.length; s++) {
+            SwerveModulePosition[] oldPositions = positions;
+            positions = samplePositions[s];
+
+            Rotation2d heading;
+
+            if (s < sampleHeadings.length) {
+                heading = sampleHeadings[s];
+
+                if (gyro == null) {
+                    // The estimators were created before the backend's first heading, so they're moved onto its frame without moving the pose
+                    if (!sampledHeadingSeeded) {
+                        poseEstimator.resetPosition(heading, oldPositions, poseEstimator.getEstimatedPosition());
+                        odometry.resetPosition(heading, oldPositions, odometry.getPoseMeters());
+                        sampledHeadingSeeded = true;
+                    } else if (lastSampleTimestamp > 0 && sampleTimestamps[s] > lastSampleTimestamp) {
+                        yawRate = heading.minus(estimatedHeading).getRadians() / (sampleTimestamps[s] - lastSampleTimestamp);
+                    }
+
+                    estimatedHeading = heading;
+                }
+            } else if (gyro == null) {
+                SwerveModulePosition[] deltas = new SwerveModulePosition[positions.length];
+
+                for (int i = 0; i < positions.length; i++) {
+                    deltas[i] = new SwerveModulePosition(positions[i].distanceMeters - oldPositions[i].distanceMeters, positions[i].angle);
+                }
+
+                Twist2d twist = kinematics.toTwist2d(deltas);
+
+                estimatedHeading = estimatedHeading.plus(new Rotation2d(twist.dtheta));
+                heading = estimatedHeading;
+
+                if (lastSampleTimestamp > 0 && sampleTimestamps[s] > lastSampleTimestamp) {
+                    yawRate = twist.dtheta / (sampleTimestamps[s] - lastSampleTimestamp);
+                }
+            } else {
+                heading = getHeadingAt(sampleTimestamps[s]);
+            }
+
+            poseEstimator.updateWithTime(sampleTimestamps[s], heading, positions);
+            odometryHistory.addSample(sampleTimestamps[s], odometry.update(heading, positions));
+            lastSampleTimestamp = sampleTimestamps[s];
+            usedHeadings[s] = heading;
+        }
+
+        // Every sample's yaw, so a replay can integrate each sample with the heading it had; never shed since replay needs it
+        Logger.recordOutput(key + "/Gyro/SampleYaws", usedHeadings);
+
+        thermalManager.update(modules);
+        powerAllocator.update(modules);
+        updateCurrentLimits();
+
+        // Vision results stay queued in the vision subsystem while they're deferred
+        if (vision != null && !watchdog.isShed(LoopWatchdog.ShedLevel.VISION)) {
+            for (VisionResult result : vision.getUnreadResults()) {
+                poseEstimator.addVisionMeasurement(result.getPose2d(), result.getTimestamp());
+
+                if (result.getTimestamp() > latestVisionTimestamp) {
+                    latestVisionPose = result.getPose2d();
+                    latestVisionTimestamp = result.getTimestamp();
+                }
+            }
+        }
+
+        updateVisualPose();
+
+        publishState();
+
+        // Backends that aren't real time, and extra simulated drivetrains, step the control loop on their own clock
+        if (inlineControl && lastSampleTimestamp > 0) {
+            controlLoop(lastSampleTimestamp);
+        }
+
+        if (watchdog.shouldLogTelemetry()) {
+            Logger.recordOutput(key + "/HeadingLocked", headingLocked);
+            Logger.recordOutput(key + "/HeadingSetpoint", lockedAngle);
+
+            Logger.recordOutput(key + "/States/Actual", states);
+            Logger.recordOutput(key + "/States/Setpoint", setpointStates);
+            Logger.recordOutput(key + "/Speeds/Setpoint", setpointSpeeds);
+            Logger.recordOutput(key + "/Speeds/Desired", desiredSpeeds.get());
+            Logger.recordOutput(key + "/Control/XStates", xStatesRequested);
+            Logger.recordOutput(key + "/Control/Period", controlPeriod);
+            if (syncControlThread != null) logControlLatency();
+            Logger.recordOutput(key + "/Positions/Actual", positions);
+
+            Logger.recordOutput(key + "/RobotPose", poseEstimator.getEstimatedPosition());
+            Logger.recordOutput(key + "/VisualPose", visualPose == null ? new Pose2d[0] : new Pose2d[] { visualPose });
+
+            Logger.recordOutput(key + "/Gyro/Yaw", gyro == null ? estimatedHeading : yaw);
+            Logger.recordOutput(key + "/Gyro/YawRate", yawRate);
+            Logger.recordOutput(key + "/Gyro/Timestamp", gyro == null ? lastSampleTimestamp : yawTimestamp);
+
+            Logger.recordOutput(key + "/CostToGoMap/Status", costToGoStatus);
+        }
+
+        // Diagnostics log under fixed keys, so only the robot's own drivetrain runs them
+        if (robotName == null && !watchdog.isShed(LoopWatchdog.ShedLevel.DIAGNOSTICS)) {
+            SignalBudget.log();
+            thermalManager.log();
+            powerAllocator.log();
+            TrajectoryLibrary.log();
+
+            // Warming up the JIT while nothing is being driven
+            if (DriverStation.isDisabled() && io.isRealTime()) warmup.run();
+            warmup.log();
+        }
+
+        watchdog.endCycle();
+        if (robotName == null) watchdog.log();
+    }
+
+    /**
+     * Carries the newest vision frame forward to the latest odometry sample.
+     * 
+     * The pose estimator only moves part of the way toward each frame, so near a target it lags behind vision and then steps as corrections pile up.
+     * This pose follows every frame completely and adds only the odometry since that frame was captured,
+     * so between frames it is as smooth as odometry, and it only moves by the frame-to-frame vision noise when a new frame arrives.
+     * It is null when there is no frame newer than {@link DriveConstants#visualServoMaxAge}.
+     */
+    private void updateVisualPose() {
+        if (latestVisionPose == null || lastSampleTimestamp - latestVisionTimestamp > DriveConstants.visualServoMaxAge.in(Seconds)) {
+            visualPose = null;
+            return;
+        }
+
+        Optional<Pose2d> odometryAtFrame = odometryHistory.getSample(latestVisionTimestamp);
+        if (odometryAtFrame.isEmpty()) {
+            visualPose = null;
+            return;
+        }
+
+        visualPose = latestVisionPose.transformBy(new Transform2d(odometryAtFrame.get(), odometry.getPoseMeters()));
+    }
+
+    /**
+     * Gets the newest vision frame carried forward by odometry, for closing the loop near a vision target.
+     * 
+     * Returns null if vision hasn't seen a target recently.
+     */
+    public Pose2d getVisualPose() {
+        return visualPose;
+    }
+
+    /** Applies any gains that were changed in AdjustableValues to the pose controllers and modules. */
+    private void updateGains() {
         if (AdjustableValues.hasChanged("X_kP")) xController.setP(AdjustableValues.getNumber("X_kP"));
         if (AdjustableValues.hasChanged("X_kI")) xController.setI(AdjustableValues.getNumber("X_kI"));
         if (AdjustableValues.hasChanged("X_kD")) xController.setD(AdjustableValues.getNumber("X_kD"));
@@ -331,44 +651,93 @@ public class Drivetrain extends SubsystemBase {
         if (AdjustableValues.hasChanged("Theta_kI")) thetaController.setI(AdjustableValues.getNumber("Theta_kI"));
         if (AdjustableValues.hasChanged("Theta_kD")) thetaController.setD(AdjustableValues.getNumber("Theta_kD"));
 
-        SwerveModulePosition[] oldPositions = positions.clone();
+        for (ModuleIO module : modules) {
+            module.updateGains();
+        }
+    }
+
+    /**
+     * Sends new current limits to any module whose limits moved more than {@link DriveConstants#currentLimitHysteresis}.
+     * 
+     * The thermal limits are stator limits, since heat comes from the current in the windings,
+     * while the power allocator's limits are supply limits, since the battery only sees supply current.
+     * The hysteresis keeps slowly changing limits from flooding the bus with config frames.
+     */
+    private void updateCurrentLimits() {
+        double hysteresis = DriveConstants.currentLimitHysteresis.in(Amps);
 
         for (int i = 0; i < modules.length; i++) {
-            modules[i].updateInputs();
-            states[i] = modules[i].getState();
-            positions[i] = modules[i].getPosition();
-        }
+            double driveLimit = thermalManager.getDriveLimit(i);
+            double steerLimit = thermalManager.getSteerLimit(i);
 
-        if (gyro == null) {
-            SwerveModulePosition[] deltas = new SwerveModulePosition[4];
+            if (Math.abs(driveLimit - appliedDriveLimits[i]) > hysteresis || Math.abs(steerLimit - appliedSteerLimits[i]) > hysteresis) {
+                modules[i].setCurrentLimits(Amps.of(driveLimit), Amps.of(steerLimit));
 
-            for (int i = 0; i < 4; i++) {
-                deltas[i] = new SwerveModulePosition(positions[i].distanceMeters - oldPositions[i].distanceMeters, positions[i].angle);
+                appliedDriveLimits[i] = driveLimit;
+                appliedSteerLimits[i] = steerLimit;
             }
 
-            Twist2d twist = kinematics.toTwist2d(deltas);
+            double driveSupplyLimit = powerAllocator.getDriveLimit(i);
+            double steerSupplyLimit = powerAllocator.getSteerLimit(i);
 
-            estimatedHeading = estimatedHeading.plus(new Rotation2d(twist.dtheta));
+            if (Math.abs(driveSupplyLimit - appliedDriveSupplyLimits[i]) > hysteresis || Math.abs(steerSupplyLimit - appliedSteerSupplyLimits[i]) > hysteresis) {
+                modules[i].setSupplyCurrentLimits(Amps.of(driveSupplyLimit), Amps.of(steerSupplyLimit));
+
+                appliedDriveSupplyLimits[i] = driveSupplyLimit;
+                appliedSteerSupplyLimits[i] = steerSupplyLimit;
+            }
         }
 
-        poseEstimator.update(getHeading(), positions);
+        Logger.recordOutput(key + "/CurrentLimits/Drive", appliedDriveLimits);
+        Logger.recordOutput(key + "/CurrentLimits/Steer", appliedSteerLimits);
+        Logger.recordOutput(key + "/CurrentLimits/DriveSupply", appliedDriveSupplyLimits);
+        Logger.recordOutput(key + "/CurrentLimits/SteerSupply", appliedSteerSupplyLimits);
+    }
 
-        for (VisionResult result : vision.getUnreadResults()) {
-            poseEstimator.addVisionMeasurement(result.getPose2d(), result.getTimestamp());
-        }
+    /**
+     * Gets how long the hottest drivetrain motor could run at its full current limit before it has to be derated, in seconds.
+     * 
+     * Returns positive infinity if the motors can run at full current indefinitely.
+     */
+    public double getThermalHeadroom() {
+        return thermalManager.getHeadroom();
+    }
 
-        Logger.recordOutput("/Subsystems/Drivetrain/HeadingLocked", headingLocked);
-        Logger.recordOutput("/Subsystems/Drivetrain/HeadingSetpoint", lockedAngle);
+    /**
+     * Publishes a snapshot of the current pose, speeds, module states, and heading.
+     * 
+     * Only the thread that runs {@link #periodic()} calls this.
+     */
+    private void publishState() {
+        boolean hasGyro = gyro != null;
+
+        snapshot.set(new DrivetrainState(
+            poseEstimator.getEstimatedPosition(),
+            kinematics.toChassisSpeeds(states),
+            states,
+            hasGyro ? yaw : estimatedHeading,
+            hasGyro ? yawTimestamp : lastSampleTimestamp,
+            yawRate,
+            Timer.getFPGATimestamp()));
+    }
 
-        Logger.recordOutput("/Subsystems/Drivetrain/States/Actual", states);
-        Logger.recordOutput("/Subsystems/Drivetrain/Positions/Actual", positions);
+    /**
+     * Gets the latest snapshot of the drivetrain.
+     * 
+     * This is safe to call from any thread, and everything in it is from the same cycle.
+     */
+    public DrivetrainState getState() {
+        return snapshot.get();
+    }
 
-        Logger.recordOutput("/Subsystems/Drivetrain/RobotPose", poseEstimator.getEstimatedPosition());
+    /** Gets whether the JIT warm-up has finished, so the hot paths run at steady-state speed. */
+    public boolean isWarm() {
+        return warmup.isComplete();
     }
 
     /** Gets the current pose. */
     public Pose2d getPose() {
-        return poseEstimator.getEstimatedPosition();
+        return snapshot.get().getPose();
     }
 
     /**
@@ -377,45 +746,248 @@ public class Drivetrain extends SubsystemBase {
      * @param newPose The new pose to go to.
      */
     public void resetPose(Pose2d newPose) {
-        poseEstimator.resetPosition(getHeading(), positions, newPose);
+        poseEstimator.resetPosition(getHeadingAt(Timer.getFPGATimestamp()), positions, newPose);
+        odometry.resetPosition(getHeadingAt(Timer.getFPGATimestamp()), positions, newPose);
+
+        // Frames from before the reset can't be carried across it
+        odometryHistory.clear();
+        latestVisionPose = null;
+        visualPose = null;
+        io.resetPose(newPose);
+
+        publishState();
+    }
+
+    /**
+     * Reads the gyro and stamps the reading with when it was measured.
+     * 
+     * The gyro doesn't report its own timestamps, so the reading is assumed to be {@link DriveConstants#gyroLatency} old.
+     * The yaw rate is found from the change between readings.
+     */
+    private void updateYaw() {
+        if (gyro == null) return;
+
+        Rotation2d newYaw = new Rotation2d(gyro.getYaw());
+        double newTimestamp = Timer.getFPGATimestamp() - DriveConstants.gyroLatency.in(Seconds);
+
+        if (yawTimestamp > 0 && newTimestamp > yawTimestamp) {
+            yawRate = newYaw.minus(yaw).getRadians() / (newTimestamp - yawTimestamp);
+        }
+
+        yaw = newYaw;
+        yawTimestamp = newTimestamp;
+    }
+
+    /**
+     * Gets the heading extrapolated to a sample time.
+     * 
+     * Without a gyro this is the latest heading the estimators were updated with, so resetting to it doesn't turn the pose.
+     * 
+     * @param timestamp The FPGA time to extrapolate to, in seconds.
+     */
+    private Rotation2d getHeadingAt(double timestamp) {
+        if (gyro == null) return estimatedHeading;
+
+        double age = MathUtil.clamp(timestamp - yawTimestamp, 0, DriveConstants.maxLatencyCompensation.in(Seconds));
+
+        return yaw.plus(new Rotation2d(yawRate * age));
     }
 
     /** Gets the current heading. */
     public Rotation2d getHeading() {
-        if (gyro == null) return estimatedHeading;
+        return snapshot.get().getHeadingAt(Timer.getFPGATimestamp());
+    }
 
-        return new Rotation2d(gyro.getYaw());
+    /** Gets the current yaw rate in radians per second. */
+    public double getYawRate() {
+        return snapshot.get().getYawRate();
     }
 
     /** Gets the current wheel speeds. */
     public ChassisSpeeds getSpeeds() {
-        return kinematics.toChassisSpeeds(states);
+        return snapshot.get().getSpeeds();
+    }
+
+    /** Gets the current module states. */
+    public SwerveModuleState[] getStates() {
+        return snapshot.get().getModuleStates();
     }
 
     /**
      * Drives the robot according to some ChassisSpeeds.
      * 
+     * The speeds are handed to the control loop, which sends them to the modules on its next run.
      * If the heading is locked, omega is ignored.
      */
     public void drive(ChassisSpeeds speeds) {
+        desiredSpeeds.set(new ChassisSpeeds(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, speeds.omegaRadiansPerSecond));
+        xStatesRequested = false;
+    }
+
+    /** Runs the control loop from the notifier thread. */
+    private void runControlLoop() {
+        if (!priorityRaised) {
+            Threads.setCurrentThreadPriority(true, DriveConstants.controlThreadPriority);
+            priorityRaised = true;
+        }
+
+        controlLoop(Timer.getFPGATimestamp());
+    }
+
+    /**
+     * Runs the control loop on its own thread every time the modules send a new set of signals.
+     * 
+     * Outputs go out as soon as the data they're based on arrives, instead of at whatever phase the notifier is at,
+     * so the loop runs at the modules' signal rate rather than {@link DriveConstants#controlLoopFrequency}.
+     * The module angles and yaw rate come from the signals that were waited on, not the main loop's snapshot,
+     * and the gyro heading (which can't be waited on) is extrapolated to when they arrived.
+     * If the signals stop arriving, the loop still runs once per timeout from the snapshot so setpoints keep going out.
+     */
+    private void runSynchronizedControl() {
+        Threads.setCurrentThreadPriority(true, DriveConstants.controlThreadPriority);
+
+        double timeout = DriveConstants.syncWaitTimeout.in(Seconds);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            double waitStart = Timer.getFPGATimestamp();
+            double inputTimestamp = io.waitForInputs(timeout);
+
+            if (Double.isNaN(inputTimestamp)) {
+                controlLoop(Timer.getFPGATimestamp());
+            } else {
+                SwerveModuleState[] measured = io.getSyncStates();
+                Rotation2d[] moduleAngles = new Rotation2d[measured.length];
+
+                for (int i = 0; i < measured.length; i++) {
+                    moduleAngles[i] = measured[i].angle;
+                }
+
+                DrivetrainState state = snapshot.get();
+                double yawRate = controlKinematics.toChassisSpeeds(measured).omegaRadiansPerSecond;
+                double age = MathUtil.clamp(inputTimestamp - state.getHeadingTimestamp(), 0, DriveConstants.maxLatencyCompensation.in(Seconds));
+
+                controlLoop(Timer.getFPGATimestamp(), moduleAngles, state.getHeading().plus(new Rotation2d(yawRate * age)), yawRate);
+            }
+
+            double outputTimestamp = Timer.getFPGATimestamp();
+
+            if (Double.isNaN(inputTimestamp)) {
+                syncTimeouts++;
+
+                // A wait that fails straight away (like a disconnected bus) would otherwise spin
+                double waited = outputTimestamp - waitStart;
+                if (waited < DriveConstants.controlLoopPeriod.in(Seconds)) Timer.delay(DriveConstants.controlLoopPeriod.in(Seconds) - waited);
+            } else {
+                synchronized (controlLatencies) {
+                    controlLatencies.add(outputTimestamp - inputTimestamp, outputTimestamp);
+                }
+            }
+        }
+    }
+
+    /** Logs the time from each synchronized control cycle's waited signals arriving to its setpoints going out, for every cycle since the last call. */
+    private void logControlLatency() {
+        double[] latencies;
+
+        synchronized (controlLatencies) {
+            latencies = new double[controlLatencies.size()];
+
+            // Oldest first
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = controlLatencies.getValue(latencies.length - 1 - i);
+            }
+
+            controlLatencies.clear();
+        }
+
+        Logger.recordOutput(key + "/Control/Latency", latencies);
+        Logger.recordOutput(key + "/Control/SyncTimeouts", syncTimeouts);
+    }
+
+    /**
+     * Turns the latest desired speeds into module setpoints and sends them.
+     * 
+     * Every step uses the measured time since the last run instead of a fixed period.
+     * The measurements come from the main loop's latest snapshot.
+     * 
+     * @param timestamp The time of this run in seconds.
+     */
+    private void controlLoop(double timestamp) {
+        DrivetrainState state = snapshot.get();
+        Rotation2d[] moduleAngles = new Rotation2d[modules.length];
+
+        for (int i = 0; i < modules.length; i++) {
+            moduleAngles[i] = state.getModuleAngle(i);
+        }
+
+        controlLoop(timestamp, moduleAngles, state.getHeadingAt(timestamp), state.getYawRate());
+    }
+
+    /**
+     * Turns the latest desired speeds into module setpoints and sends them.
+     * 
+     * @param timestamp The time of this run in seconds.
+     * @param moduleAngles The measured angle of each module.
+     * @param heading The measured heading at the time of this run.
+     * @param yawRate The measured yaw rate in radians per second.
+     */
+    private void controlLoop(double timestamp, Rotation2d[] moduleAngles, Rotation2d heading, double yawRate) {
+        double dt = timestamp - lastControlTimestamp;
+        if (lastControlTimestamp < 0 || dt <= 0) dt = DriveConstants.controlLoopPeriod.in(Seconds);
+
+        lastControlTimestamp = timestamp;
+        controlPeriod = dt;
+
+        if (xStatesRequested) {
+            io.setStates(DriveConstants.xStates);
+
+            setpointSpeeds = new ChassisSpeeds();
+            setpointStates = DriveConstants.xStates;
+            return;
+        }
+
+        ChassisSpeeds desired = desiredSpeeds.get();
+        double omega = desired.omegaRadiansPerSecond;
+
+        // The heading lock is a PID on the heading, with the derivative taken from the measured yaw rate so it doesn't depend on the period
         if (headingLocked) {
-            Rotation2d angle = (lockedAngle == null) ? getHeading() : lockedAngle;
-            speeds.omegaRadiansPerSecond = thetaController.calculate(getHeading().getRadians(), angle.getRadians());
+            Rotation2d angle = (lockedAngle == null) ? heading : lockedAngle;
+            double error = MathUtil.angleModulus(angle.getRadians() - heading.getRadians());
+
+            headingIntegral += error * dt;
+            omega = thetaController.getP() * error + thetaController.getI() * headingIntegral - thetaController.getD() * yawRate;
+        } else {
+            headingIntegral = 0;
         }
 
-        speeds = ChassisSpeeds.discretize(speeds, 0.02);
-        SwerveModuleState[] desiredStates = kinematics.toSwerveModuleStates(speeds);
+        ChassisSpeeds speeds = ChassisSpeeds.discretize(desired.vxMetersPerSecond, desired.vyMetersPerSecond, omega, dt);
+        SwerveModuleState[] desiredStates = controlKinematics.toSwerveModuleStates(speeds);
         SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, DriveConstants.maxLinearVelocity);
 
         for (int i = 0; i < modules.length; i++) {
-            desiredStates[i].optimize(modules[i].getAngle());
-            desiredStates[i].cosineScale(modules[i].getAngle());
-
-            modules[i].setState(desiredStates[i]);
+            desiredStates[i].optimize(moduleAngles[i]);
+            desiredStates[i].cosineScale(moduleAngles[i]);
         }
 
-        Logger.recordOutput("/Subsystems/Drivetrain/States/Setpoint", desiredStates);
-        Logger.recordOutput("/Subsystems/Drivetrain/Speeds/Setpoint", speeds);
+        io.setStates(desiredStates);
+
+        setpointSpeeds = speeds;
+        setpointStates = desiredStates;
+    }
+
+    /** Gets the module setpoints from the last control loop run. */
+    public SwerveModuleState[] getSetpointStates() {
+        return setpointStates;
+    }
+
+    /** Gets the robot relative speeds from the last control loop run, after the heading lock and discretization. */
+    public ChassisSpeeds getSetpointSpeeds() {
+        return setpointSpeeds;
+    }
+
+    /** Gets the measured period of the last control loop run in seconds. */
+    public double getControlPeriod() {
+        return controlPeriod;
     }
 
     /** Locks the heading */
@@ -452,6 +1024,13 @@ public class Drivetrain extends SubsystemBase {
         lockedAngle = angle;
     }
 
+    /** Gets the pathfinder that plans paths around the field's obstacles. */
+    public Pathfinder getPathfinder() {
+        if (pathfinder == null) pathfinder = new Pathfinder();
+
+        return pathfinder;
+    }
+
     /** Gets the kinematics of the robot. */
     public SwerveDriveKinematics getKinematics() {
         return kinematics;
@@ -462,10 +1041,19 @@ public class Drivetrain extends SubsystemBase {
         drive(ChassisSpeeds.fromFieldRelativeSpeeds(sample.getChassisSpeeds(), getHeading()));
     }
 
+    /**
+     * Follows a preloaded trajectory.
+     * 
+     * @param trajectory The trajectory from the {@link TrajectoryLibrary}.
+     * @param time The time since the trajectory started in seconds.
+     */
+    public void followTrajectory(CompactTrajectory trajectory, double time) {
+        SwerveSample sample = trajectory.sampleAt(time);
+        if (sample != null) followTrajectory(sample);
+    }
+
     /** Sets the states of each module to an "X" pattern. */
     public void xStates() {
-        for (int i = 0; i < modules.length; i++) {
-            modules[i].setState(DriveConstants.xStates[i]);
-        }
+        xStatesRequested = true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.units.measure.Frequency;
+import edu.wpi.first.units.measure.Time;
+import org.littletonrobotics.junction.AutoLog;
+
+/**
+ * A drivetrain-level IO layer.
+ *
+ * It owns every module on the robot and is responsible for sending module setpoints and collecting odometry samples.
+ * Odometry samples are buffered by the backend and drained once per robot cycle, so a backend can sample faster than the main loop.
+ */
+public interface DrivetrainIO {
+    @AutoLog
+    public class DrivetrainIOInputs {
+        SwerveModuleState[] moduleStates = new SwerveModuleState[0];
+        SwerveModuleState[] moduleTargets = new SwerveModuleState[0];
+        SwerveModulePosition[] modulePositions = new SwerveModulePosition[0];
+
+        Pose2d odometryPose = new Pose2d();
+        Time odometryPeriod = Seconds.zero();
+
+        double[] odometryTimestamps = new double[0];
+        // Every module's position in each sample, one sample after another, so the samples can be replayed
+        SwerveModulePosition[] odometryPositions = new SwerveModulePosition[0];
+        Rotation2d[] odometryHeadings = new Rotation2d[0];
+
+        int successfulDaqs = 0;
+        int failedDaqs = 0;
+    }
+
+    /** Updates every module and drains the odometry samples collected since the last call. */
+    public void updateInputs();
+
+    /** Gets the modules driven by this backend, in the same order as {@link DriveConstants#translations}. */
+    public ModuleIO[] getModules();
+
+    /** Sends a setpoint to every module. */
+    public void setStates(SwerveModuleState[] states);
+
+    /** Resets any pose that the backend tracks internally. */
+    public void resetPose(Pose2d pose);
+
+    /** Gets the FPGA timestamps (in seconds) of the odometry samples drained by the last {@link #updateInputs()}. */
+    public double[] getOdometryTimestamps();
+
+    /** Gets the module positions of each drained odometry sample. */
+    public SwerveModulePosition[][] getOdometryPositions();
+
+    /**
+     * Gets the heading of each drained odometry sample.
+     *
+     * Returns an empty array if the backend does not own a gyro.
+     */
+    public Rotation2d[] getOdometryHeadings();
+
+    /**
+     * Flattens odometry samples into one array for logging, one sample after another.
+     *
+     * @param samples The module positions of each sample.
+     * @param moduleCount The number of modules in every sample.
+     */
+    public static SwerveModulePosition[] flattenPositions(SwerveModulePosition[][] samples, int moduleCount) {
+        SwerveModulePosition[] flat = new SwerveModulePosition[samples.length * moduleCount];
+
+        for (int i = 0; i < samples.length; i++) {
+            System.arraycopy(samples[i], 0, flat, i * moduleCount, moduleCount);
+        }
+
+        return flat;
+    }
+
+    /**
+     * Splits logged odometry positions back into samples.
+     *
+     * @param flat The positions from {@link #flattenPositions(SwerveModulePosition[][], int)}.
+     * @param moduleCount The number of modules in every sample.
+     */
+    public static SwerveModulePosition[][] unflattenPositions(SwerveModulePosition[] flat, int moduleCount) {
+        SwerveModulePosition[][] samples = new SwerveModulePosition[moduleCount == 0 ? 0 : flat.length / moduleCount][moduleCount];
+
+        for (int i = 0; i < samples.length; i++) {
+            System.arraycopy(flat, i * moduleCount, samples[i], 0, moduleCount);
+        }
+
+        return samples;
+    }
+
+    /**
+     * Gets whether {@link #waitForInputs(double)} can block until new module data arrives.
+     */
+    public default boolean canWaitForInputs() {
+        return false;
+    }
+
+    /**
+     * Blocks until every module has sent a new set of signals, for {@link DriveConstants#synchronizedControl}.
+     * 
+     * Called from the control thread.
+     * 
+     * @param timeout The longest to wait in seconds.
+     * @return The FPGA time the oldest signal in the set was measured at, or NaN if it timed out or the backend can't wait.
+     */
+    public default double waitForInputs(double timeout) {
+        return Double.NaN;
+    }
+
+    /**
+     * Gets every module's state from the signals {@link #waitForInputs(double)} last waited on.
+     * 
+     * Called from the control thread right after the wait returns.
+     */
+    public default SwerveModuleState[] getSyncStates() {
+        ModuleIO[] modules = getModules();
+        SwerveModuleState[] states = new SwerveModuleState[modules.length];
+
+        for (int i = 0; i < modules.length; i++) {
+            states[i] = modules[i].getSyncState();
+        }
+
+        return states;
+    }
+
+    /**
+     * Gets whether this backend runs in real time.
+     *
+     * Backends that don't (like replay and simulation) have the control loop run inline with {@link Drivetrain#periodic()} instead of on its own thread,
+     * which also keeps their modules from being set from one thread while they are updated on another.
+     */
+    public default boolean isRealTime() {
+        return true;
+    }
+
+    /**
+     * Gets whether this backend replays a recorded log.
+     *
+     * A replayed drivetrain skips the robot-wide setup (AutoBuilder, the trajectory and cost-to-go files) and keeps its default gains,
+     * so its outputs only depend on the log and not on the machine it runs on.
+     */
+    public default boolean isReplay() {
+        return false;
+    }
+
+    /**
+     * Adds the control frames this backend sends to the {@link SignalBudget}.
+     *
+     * @param frequency The rate the control loop sets the module states at.
+     */
+    public default void registerControlFrames(Frequency frequency) {}
+}
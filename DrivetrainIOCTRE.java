@@ -0,0 +1,279 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.Utils;
+import com.ctre.phoenix6.configs.CANcoderConfiguration;
+import com.ctre.phoenix6.configs.Pigeon2Configuration;
+import com.ctre.phoenix6.configs.Slot0Configs;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.ctre.phoenix6.hardware.TalonFX;
+import com.ctre.phoenix6.signals.NeutralModeValue;
+import com.ctre.phoenix6.swerve.SwerveDrivetrain;
+import com.ctre.phoenix6.swerve.SwerveDrivetrain.SwerveDriveState;
+import com.ctre.phoenix6.swerve.SwerveDrivetrainConstants;
+import com.ctre.phoenix6.swerve.SwerveModule;
+import com.ctre.phoenix6.swerve.SwerveModule.DriveRequestType;
+import com.ctre.phoenix6.swerve.SwerveModule.ModuleRequest;
+import com.ctre.phoenix6.swerve.SwerveModule.SteerRequestType;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.ClosedLoopOutputType;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.DriveMotorArrangement;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.SteerFeedbackType;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants.SteerMotorArrangement;
+import com.ctre.phoenix6.swerve.SwerveRequest;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.RobotMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * A DrivetrainIO backed by CTRE's SwerveDrivetrain.
+ *
+ * CTRE runs odometry and module control on its own thread at {@link DriveConstants#odometryFrequency}.
+ * Every odometry update is queued here and drained by the main loop, so the pose estimator sees every sample.
+ */
+public class DrivetrainIOCTRE implements DrivetrainIO {
+    /** A single odometry update copied off of the CTRE odometry thread. */
+    private static class OdometrySample {
+        double timestamp;
+        Rotation2d heading;
+        SwerveModulePosition[] positions;
+    }
+
+    /** A request that applies the latest module setpoints on every iteration of the control thread. */
+    private static class ModuleStatesRequest implements SwerveRequest {
+        private volatile SwerveModuleState[] states;
+
+        private ModuleRequest request = new ModuleRequest()
+            .withDriveRequest(DriveRequestType.Velocity)
+            .withSteerRequest(SteerRequestType.Position);
+
+        @Override
+        public StatusCode apply(SwerveDrivetrain.SwerveControlParameters parameters, SwerveModule<?, ?, ?>... modulesToApply) {
+            SwerveModuleState[] states = this.states;
+            if (states == null) return StatusCode.OK;
+
+            for (int i = 0; i < modulesToApply.length; i++) {
+                modulesToApply[i].apply(request.withState(states[i]));
+            }
+
+            return StatusCode.OK;
+        }
+    }
+
+    private SwerveDrivetrain<TalonFX, TalonFX, CANcoder> drivetrain;
+    private ModuleIO[] modules;
+
+    private ModuleStatesRequest request = new ModuleStatesRequest();
+
+    private ArrayBlockingQueue<OdometrySample> sampleQueue = new ArrayBlockingQueue<>(DriveConstants.odometryQueueSize);
+    private List<OdometrySample> drainedSamples = new ArrayList<>(DriveConstants.odometryQueueSize);
+
+    private SwerveModulePosition[][] odometryPositions = new SwerveModulePosition[0][];
+    private Rotation2d[] odometryHeadings = new Rotation2d[0];
+
+    private volatile SwerveDriveState latestState;
+
+    private DrivetrainIOInputsAutoLogged inputs;
+
+    /** Creates a new DrivetrainIO that runs all four modules on CTRE's swerve API. */
+    public DrivetrainIOCTRE() {
+        SwerveDrivetrainConstants dConst = new SwerveDrivetrainConstants();
+
+        dConst.Pigeon2Configs = new Pigeon2Configuration();
+        dConst.Pigeon2Id = RobotMap.GYRO_Pigeon2Id;
+
+        Slot0Configs driveSlot0 = new Slot0Configs();
+        driveSlot0.kP = DriveConstants.kPDriveDefault;
+        driveSlot0.kI = DriveConstants.kIDriveDefault;
+        driveSlot0.kD = DriveConstants.kDDriveDefault;
+        driveSlot0.kS = DriveConstants.kSDriveDefault;
+        driveSlot0.kV = DriveConstants.kVDriveDefault;
+        driveSlot0.kA = DriveConstants.kADriveDefault;
+
+        Slot0Configs steerSlot0 = new Slot0Configs();
+        steerSlot0.kP = DriveConstants.kPSteerDefault;
+        steerSlot0.kI = DriveConstants.kISteerDefault;
+        steerSlot0.kD = DriveConstants.kDSteerDefault;
+        steerSlot0.kS = DriveConstants.kSSteerDefault;
+        steerSlot0.kV = DriveConstants.kVSteerDefault;
+        steerSlot0.kA = DriveConstants.kASteerDefault;
+
+        TalonFXConfiguration driveConfig = new TalonFXConfiguration();
+        driveConfig.CurrentLimits.SupplyCurrentLimit = DriveConstants.driveCurrentLimit.in(Amps);
+        driveConfig.CurrentLimits.SupplyCurrentLimitEnable = true;
+        driveConfig.CurrentLimits.StatorCurrentLimit = DriveConstants.driveStatorCurrentLimit.in(Amps);
+        driveConfig.CurrentLimits.StatorCurrentLimitEnable = true;
+        driveConfig.MotorOutput.NeutralMode = NeutralModeValue.Brake;
+
+        TalonFXConfiguration steerConfig = new TalonFXConfiguration();
+        steerConfig.CurrentLimits.SupplyCurrentLimit = DriveConstants.steerCurrentLimit.in(Amps);
+        steerConfig.CurrentLimits.SupplyCurrentLimitEnable = true;
+        steerConfig.CurrentLimits.StatorCurrentLimit = DriveConstants.steerStatorCurrentLimit.in(Amps);
+        steerConfig.CurrentLimits.StatorCurrentLimitEnable = true;
+        steerConfig.MotorOutput.NeutralMode = NeutralModeValue.Coast;
+
+        @SuppressWarnings("unchecked")
+        SwerveModuleConstants<TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>[] mConsts = new SwerveModuleConstants[DriveConstants.moduleConfigs.length];
+
+        for (int moduleId = 0; moduleId < mConsts.length; moduleId++) {
+            SwerveModuleConstants<TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration> mConst = new SwerveModuleConstants<>();
+
+            mConst.CouplingGearRatio = 0;
+            mConst.DriveFrictionVoltage = 0.25;
+            mConst.DriveInertia = DriveConstants.driveMOI;
+            mConst.DriveMotorClosedLoopOutput = ClosedLoopOutputType.Voltage;
+            mConst.DriveMotorGains = driveSlot0;
+            mConst.DriveMotorGearRatio = DriveConstants.driveGearRatio;
+            mConst.DriveMotorId = (int) DriveConstants.moduleConfigs[moduleId][0];
+            mConst.DriveMotorInitialConfigs = driveConfig;
+            mConst.DriveMotorInverted = true;
+            mConst.DriveMotorType = DriveMotorArrangement.TalonFX_Integrated;
+            mConst.EncoderId = (int) DriveConstants.moduleConfigs[moduleId][2];
+            mConst.EncoderInitialConfigs = new CANcoderConfiguration();
+            mConst.EncoderInverted = false;
+            // The ModuleIOs subtract the offset, the CANcoder adds its magnet offset.
+            mConst.EncoderOffset = -DriveConstants.moduleConfigs[moduleId][3];
+            mConst.FeedbackSource = SteerFeedbackType.RemoteCANcoder;
+            mConst.LocationX = DriveConstants.translations[moduleId].getX();
+            mConst.LocationY = DriveConstants.translations[moduleId].getY();
+            mConst.SlipCurrent = 120;
+            mConst.SpeedAt12Volts = DriveConstants.maxLinearVelocity.in(MetersPerSecond);
+            mConst.SteerFrictionVoltage = 0.25;
+            mConst.SteerInertia = DriveConstants.steerMOI;
+            mConst.SteerMotorClosedLoopOutput = ClosedLoopOutputType.Voltage;
+            mConst.SteerMotorGains = steerSlot0;
+            mConst.SteerMotorGearRatio = DriveConstants.steerGearRatio;
+            mConst.SteerMotorId = (int) DriveConstants.moduleConfigs[moduleId][1];
+            mConst.SteerMotorInitialConfigs = steerConfig;
+            mConst.SteerMotorInverted = false;
+            mConst.SteerMotorType = SteerMotorArrangement.TalonFX_Integrated;
+            mConst.WheelRadius = DriveConstants.wheelRadius.in(Meters);
+
+            mConsts[moduleId] = mConst;
+        }
+
+        try (StartupProfiler.Phase phase = StartupProfiler.phase("DrivetrainIOCTRE/SwerveDrivetrain")) {
+            drivetrain = new SwerveDrivetrain<TalonFX, TalonFX, CANcoder>(TalonFX::new, TalonFX::new, CANcoder::new, dConst, DriveConstants.odometryFrequency.in(Hertz), mConsts);
+        }
+
+        modules = new ModuleIO[mConsts.length];
+        for (int i = 0; i < modules.length; i++) {
+            modules[i] = new ModuleIOCTRE(i, drivetrain.getModule(i));
+        }
+
+        // Runs on the odometry thread after every odometry update.
+        drivetrain.registerTelemetry(this::recordSample);
+        drivetrain.setControl(request);
+
+        // The odometry thread applies the latest request to every motor each update, whatever rate it is set at
+        for (int i = 0; i < modules.length; i++) {
+            SignalBudget.registerControl(String.format("CTRE/Module%d/Drive", i), DriveConstants.odometryFrequency);
+            SignalBudget.registerControl(String.format("CTRE/Module%d/Steer", i), DriveConstants.odometryFrequency);
+        }
+
+        inputs = new DrivetrainIOInputsAutoLogged();
+    }
+
+    /**
+     * Copies an odometry update into the sample queue.
+     *
+     * The state object is reused by CTRE, so nothing from it can be kept by reference.
+     * If the main loop falls behind, the oldest sample is dropped.
+     */
+    private void recordSample(SwerveDriveState state) {
+        OdometrySample sample = new OdometrySample();
+        sample.timestamp = Utils.currentTimeToFPGATime(state.Timestamp);
+        sample.heading = state.RawHeading;
+        sample.positions = new SwerveModulePosition[state.ModulePositions.length];
+
+        for (int i = 0; i < sample.positions.length; i++) {
+            sample.positions[i] = new SwerveModulePosition(state.ModulePositions[i].distanceMeters, state.ModulePositions[i].angle);
+        }
+
+        while (!sampleQueue.offer(sample)) {
+            sampleQueue.poll();
+        }
+
+        latestState = state.clone();
+    }
+
+    @Override
+    public void updateInputs() {
+        for (ModuleIO module : modules) {
+            module.updateInputs();
+        }
+
+        drainedSamples.clear();
+        sampleQueue.drainTo(drainedSamples);
+
+        double[] timestamps = new double[drainedSamples.size()];
+        SwerveModulePosition[][] positions = new SwerveModulePosition[drainedSamples.size()][];
+        Rotation2d[] headings = new Rotation2d[drainedSamples.size()];
+
+        for (int i = 0; i < drainedSamples.size(); i++) {
+            timestamps[i] = drainedSamples.get(i).timestamp;
+            positions[i] = drainedSamples.get(i).positions;
+            headings[i] = drainedSamples.get(i).heading;
+        }
+
+        SwerveDriveState state = latestState;
+        if (state != null) {
+            inputs.moduleStates = state.ModuleStates;
+            inputs.moduleTargets = state.ModuleTargets;
+            inputs.modulePositions = state.ModulePositions;
+            inputs.odometryPose = state.Pose;
+            inputs.odometryPeriod = Seconds.of(state.OdometryPeriod);
+            inputs.successfulDaqs = state.SuccessfulDaqs;
+            inputs.failedDaqs = state.FailedDaqs;
+        }
+
+        inputs.odometryTimestamps = timestamps;
+        inputs.odometryPositions = DrivetrainIO.flattenPositions(positions, modules.length);
+        inputs.odometryHeadings = headings;
+
+        Logger.processInputs("/RealOutputs/Subsystems/Drivetrain/CTRE", inputs);
+
+        // Read back from the inputs, so a replayed log drives odometry with the samples it recorded
+        odometryPositions = DrivetrainIO.unflattenPositions(inputs.odometryPositions, modules.length);
+        odometryHeadings = inputs.odometryHeadings;
+    }
+
+    @Override
+    public ModuleIO[] getModules() {
+        return modules;
+    }
+
+    @Override
+    public void setStates(SwerveModuleState[] states) {
+        request.states = states.clone();
+    }
+
+    @Override
+    public void resetPose(Pose2d pose) {
+        drivetrain.resetPose(pose);
+    }
+
+    @Override
+    public double[] getOdometryTimestamps() {
+        return inputs.odometryTimestamps;
+    }
+
+    @Override
+    public SwerveModulePosition[][] getOdometryPositions() {
+        return odometryPositions;
+    }
+
+    @Override
+    public Rotation2d[] getOdometryHeadings() {
+        return odometryHeadings;
+    }
+}
@@ -0,0 +1,225 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.Utils;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.units.measure.Frequency;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.subsystems.drivetrain.SparkOdometryThread.OdometrySample;
+import java.util.ArrayList;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+public class DrivetrainIOModules implements DrivetrainIO {
+    private String key;
+    private ModuleIO[] modules;
+
+    private SwerveModuleState[] targets;
+    private SwerveModulePosition[][] odometryPositions = new SwerveModulePosition[0][];
+
+    // Only used when every module can be sampled from a background thread
+    private SparkOdometryThread odometryThread;
+    private List<OdometrySample> drainedSamples = new ArrayList<>(DriveConstants.odometryQueueSize);
+
+    // Every module's sync signals, or null if any module can't be waited on
+    private BaseStatusSignal[] syncSignals;
+
+    private double lastTimestamp = -1;
+
+    private DrivetrainIOInputsAutoLogged inputs;
+
+    /**
+     * Creates a DrivetrainIO that drives each module through its own ModuleIO.
+     *
+     * If every module is a {@link SparkOdometryThread.Source}, their positions are sampled on a background thread
+     * at {@link DriveConstants#sparkOdometryFrequency}. Otherwise it produces one odometry sample per robot cycle.
+     *
+     * @param modules The module IOs to drive on.
+     */
+    public DrivetrainIOModules(ModuleIO... modules) {
+        this(Drivetrain.getLogKey(null), modules);
+    }
+
+    /**
+     * Creates a DrivetrainIO that drives each module through its own ModuleIO and logs under a drivetrain's key.
+     *
+     * @param key The key of the drivetrain, from {@link Drivetrain#getLogKey(String)}.
+     * @param modules The module IOs to drive on.
+     */
+    public DrivetrainIOModules(String key, ModuleIO... modules) {
+        this.key = key;
+        this.modules = modules;
+        this.targets = new SwerveModuleState[modules.length];
+
+        for (int i = 0; i < modules.length; i++) {
+            targets[i] = new SwerveModuleState();
+        }
+
+        SparkOdometryThread.Source[] sources = new SparkOdometryThread.Source[modules.length];
+        for (int i = 0; i < modules.length; i++) {
+            if (!(modules[i] instanceof SparkOdometryThread.Source source)) {
+                sources = null;
+                break;
+            }
+
+            sources[i] = source;
+        }
+
+        if (sources != null && modules.length > 0) {
+            odometryThread = new SparkOdometryThread(sources);
+            odometryThread.start();
+        }
+
+        List<BaseStatusSignal> signals = new ArrayList<>();
+        for (ModuleIO module : modules) {
+            BaseStatusSignal[] moduleSignals = module.getSyncSignals();
+            if (moduleSignals.length == 0) {
+                signals = null;
+                break;
+            }
+
+            signals.addAll(List.of(moduleSignals));
+        }
+
+        if (signals != null && !signals.isEmpty()) syncSignals = signals.toArray(new BaseStatusSignal[0]);
+
+        inputs = new DrivetrainIOInputsAutoLogged();
+    }
+
+    @Override
+    public void updateInputs() {
+        SwerveModuleState[] states = new SwerveModuleState[modules.length];
+        SwerveModulePosition[] positions = new SwerveModulePosition[modules.length];
+
+        for (int i = 0; i < modules.length; i++) {
+            modules[i].updateInputs();
+        }
+
+        // Every module is extrapolated to the same sample time so the odometry sample is consistent
+        double timestamp = Timer.getFPGATimestamp();
+
+        for (int i = 0; i < modules.length; i++) {
+            states[i] = modules[i].getState();
+            positions[i] = modules[i].getPosition(timestamp);
+        }
+
+        inputs.moduleStates = states;
+        inputs.moduleTargets = targets.clone();
+        inputs.modulePositions = positions;
+
+        if (odometryThread == null) {
+            odometryPositions = new SwerveModulePosition[][] { positions };
+            inputs.odometryTimestamps = new double[] { timestamp };
+
+            inputs.odometryPeriod = Seconds.of(lastTimestamp < 0 ? 0.02 : timestamp - lastTimestamp);
+            inputs.successfulDaqs++;
+
+            lastTimestamp = timestamp;
+        } else {
+            // No samples means nothing has moved since the last one, so the pose estimator has nothing to add
+            drainedSamples.clear();
+            odometryThread.drain(drainedSamples);
+
+            odometryPositions = new SwerveModulePosition[drainedSamples.size()][];
+            inputs.odometryTimestamps = new double[drainedSamples.size()];
+
+            for (int i = 0; i < drainedSamples.size(); i++) {
+                odometryPositions[i] = drainedSamples.get(i).positions;
+                inputs.odometryTimestamps[i] = drainedSamples.get(i).timestamp;
+            }
+
+            if (!drainedSamples.isEmpty()) {
+                double newest = inputs.odometryTimestamps[drainedSamples.size() - 1];
+
+                inputs.odometryPeriod = Seconds.of(lastTimestamp < 0 ? DriveConstants.sparkOdometryFrequency.asPeriod().in(Seconds) : (newest - lastTimestamp) / drainedSamples.size());
+                lastTimestamp = newest;
+            }
+
+            inputs.successfulDaqs = odometryThread.getSamples();
+            inputs.failedDaqs = odometryThread.getDropped();
+
+            Logger.recordOutput(key + "/SparkOdometry/Duplicates", odometryThread.getDuplicates());
+            Logger.recordOutput(key + "/SparkOdometry/SamplesPerCycle", drainedSamples.size());
+        }
+
+        inputs.odometryPositions = DrivetrainIO.flattenPositions(odometryPositions, modules.length);
+
+        Logger.processInputs("/RealOutputs" + key + "/Modules", inputs);
+
+        // Read back from the inputs so every sample can be replayed
+        odometryPositions = DrivetrainIO.unflattenPositions(inputs.odometryPositions, modules.length);
+    }
+
+    @Override
+    public boolean canWaitForInputs() {
+        return syncSignals != null;
+    }
+
+    @Override
+    public boolean isRealTime() {
+        // Simulated modules are stepped by updateInputs, so they have to be set on the same thread
+        for (ModuleIO module : modules) {
+            if (module instanceof ModuleIOSim) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void registerControlFrames(Frequency frequency) {
+        for (int i = 0; i < modules.length; i++) {
+            SignalBudget.registerControl(String.format("Module%d/Drive", i), frequency);
+            SignalBudget.registerControl(String.format("Module%d/Steer", i), frequency);
+        }
+    }
+
+    @Override
+    public double waitForInputs(double timeout) {
+        if (syncSignals == null || !BaseStatusSignal.waitForAll(timeout, syncSignals).isOK()) return Double.NaN;
+
+        double oldest = Double.POSITIVE_INFINITY;
+        for (BaseStatusSignal signal : syncSignals) {
+            oldest = Math.min(oldest, Utils.currentTimeToFPGATime(signal.getTimestamp().getTime()));
+        }
+
+        return oldest;
+    }
+
+    @Override
+    public ModuleIO[] getModules() {
+        return modules;
+    }
+
+    @Override
+    public void setStates(SwerveModuleState[] states) {
+        for (int i = 0; i < modules.length; i++) {
+            modules[i].setState(states[i]);
+            targets[i] = states[i];
+        }
+    }
+
+    @Override
+    public void resetPose(Pose2d pose) {
+        // The modules don't track a pose of their own.
+    }
+
+    @Override
+    public double[] getOdometryTimestamps() {
+        return inputs.odometryTimestamps;
+    }
+
+    @Override
+    public SwerveModulePosition[][] getOdometryPositions() {
+        return odometryPositions;
+    }
+
+    @Override
+    public Rotation2d[] getOdometryHeadings() {
+        return new Rotation2d[0];
+    }
+}
@@ -0,0 +1,142 @@
+package frc.robot.subsystems.drivetrain;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.subsystems.drivetrain.replay.LogCycleReader;
+
+/**
+ * A DrivetrainIO that plays back a recorded log.
+ *
+ * The backend's logged odometry samples are replayed one by one, so a backend that sampled faster than the main loop
+ * is integrated at the rate it ran at on the robot. Logs without them get one sample per cycle,
+ * stamped with the log's cycle timestamp and extrapolated from the module inputs.
+ */
+public class DrivetrainIOReplay implements DrivetrainIO {
+    private static final String[] backendKeys = { "/RealOutputs/Subsystems/Drivetrain/Modules", "/RealOutputs/Subsystems/Drivetrain/CTRE" };
+
+    private LogCycleReader log;
+    private String headingKey;
+
+    private ModuleIOReplay[] modules;
+
+    private double[] odometryTimestamps = new double[1];
+    private SwerveModulePosition[][] odometryPositions = new SwerveModulePosition[1][];
+    private Rotation2d[] odometryHeadings = new Rotation2d[0];
+
+    /**
+     * Creates a new replayed DrivetrainIO.
+     *
+     * @param log The log being replayed.
+     * @param headingKey The key of a logged Rotation2d or radian heading to replay, or null to estimate heading from the modules.
+     * @param modules The replayed modules.
+     */
+    public DrivetrainIOReplay(LogCycleReader log, String headingKey, ModuleIOReplay... modules) {
+        this.log = log;
+        this.headingKey = headingKey;
+        this.modules = modules;
+    }
+
+    @Override
+    public void updateInputs() {
+        for (int i = 0; i < modules.length; i++) {
+            modules[i].updateInputs();
+        }
+
+        String backendKey = findBackendKey();
+
+        if (backendKey != null) {
+            odometryTimestamps = log.getDoubleArray(backendKey + "/OdometryTimestamps");
+            odometryPositions = DrivetrainIO.unflattenPositions(log.getStructArray(backendKey + "/OdometryPositions", SwerveModulePosition.struct), modules.length);
+
+            // A backend that owns the gyro logged a heading with every sample
+            Rotation2d[] backendHeadings = log.getStructArray(backendKey + "/OdometryHeadings", Rotation2d.struct);
+            odometryHeadings = backendHeadings != null && backendHeadings.length == odometryTimestamps.length ? backendHeadings : getRecordedHeadings(odometryTimestamps.length);
+        } else {
+            SwerveModulePosition[] positions = new SwerveModulePosition[modules.length];
+
+            for (int i = 0; i < modules.length; i++) {
+                positions[i] = modules[i].getPosition(log.getTimestamp());
+            }
+
+            odometryTimestamps = new double[] { log.getTimestamp() };
+            odometryPositions = new SwerveModulePosition[][] { positions };
+            odometryHeadings = getRecordedHeadings(1);
+        }
+    }
+
+    /** Finds the backend whose odometry samples were logged this cycle, or null if none were. */
+    private String findBackendKey() {
+        for (String key : backendKeys) {
+            double[] timestamps = log.getDoubleArray(key + "/OdometryTimestamps");
+            SwerveModulePosition[] positions = log.getStructArray(key + "/OdometryPositions", SwerveModulePosition.struct);
+
+            // Older logs only have the timestamps, so those fall back to one sample per cycle
+            if (timestamps != null && positions != null && positions.length == timestamps.length * modules.length) return key;
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the heading from the heading key for each sample.
+     *
+     * A Rotation2d array with one heading per sample (like the drivetrain's Gyro/SampleYaws) is replayed sample by sample.
+     * A single heading only fits a cycle with one sample. With more, the heading is estimated from the modules.
+     */
+    private Rotation2d[] getRecordedHeadings(int samples) {
+        if (headingKey == null || !log.has(headingKey) || samples == 0) return new Rotation2d[0];
+
+        String type = log.getType(headingKey);
+
+        if ("struct:Rotation2d[]".equals(type)) {
+            Rotation2d[] headings = log.getStructArray(headingKey, Rotation2d.struct);
+            return headings.length == samples ? headings : new Rotation2d[0];
+        }
+
+        Rotation2d heading = "struct:Rotation2d".equals(type) ? log.getStruct(headingKey, Rotation2d.struct) : new Rotation2d(log.getDouble(headingKey, 0));
+
+        return samples == 1 ? new Rotation2d[] { heading } : new Rotation2d[0];
+    }
+
+    @Override
+    public ModuleIO[] getModules() {
+        return modules;
+    }
+
+    @Override
+    public void setStates(SwerveModuleState[] states) {
+        for (int i = 0; i < modules.length; i++) {
+            modules[i].setState(states[i]);
+        }
+    }
+
+    @Override
+    public void resetPose(Pose2d pose) {}
+
+    @Override
+    public boolean isRealTime() {
+        return false;
+    }
+
+    @Override
+    public boolean isReplay() {
+        return true;
+    }
+
+    @Override
+    public double[] getOdometryTimestamps() {
+        return odometryTimestamps;
+    }
+
+    @Override
+    public SwerveModulePosition[][] getOdometryPositions() {
+        return odometryPositions;
+    }
+
+    @Override
+    public Rotation2d[] getOdometryHeadings() {
+        return odometryHeadings;
+    }
+}
@@ -0,0 +1,111 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * An immutable snapshot of the drivetrain, published once per cycle.
+ *
+ * Everything in a snapshot was computed in the same cycle, so readers on any thread see a consistent view without locking.
+ */
+public final class DrivetrainState {
+    private final Pose2d pose;
+    private final ChassisSpeeds speeds;
+    private final SwerveModuleState[] moduleStates;
+    private final Rotation2d heading;
+    private final double headingTimestamp;
+    private final double yawRate;
+    private final double timestamp;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param pose The estimated pose.
+     * @param speeds The robot relative speeds measured by the modules.
+     * @param moduleStates The measured module states. The array is copied.
+     * @param heading The latest heading.
+     * @param headingTimestamp The FPGA time the heading was measured at, in seconds.
+     * @param yawRate The yaw rate in radians per second.
+     * @param timestamp The FPGA time the snapshot was taken at, in seconds.
+     */
+    public DrivetrainState(Pose2d pose, ChassisSpeeds speeds, SwerveModuleState[] moduleStates, Rotation2d heading, double headingTimestamp, double yawRate, double timestamp) {
+        this.pose = pose;
+        this.speeds = new ChassisSpeeds(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, speeds.omegaRadiansPerSecond);
+        this.moduleStates = new SwerveModuleState[moduleStates.length];
+        this.heading = heading;
+        this.headingTimestamp = headingTimestamp;
+        this.yawRate = yawRate;
+        this.timestamp = timestamp;
+
+        for (int i = 0; i < moduleStates.length; i++) {
+            this.moduleStates[i] = new SwerveModuleState(moduleStates[i].speedMetersPerSecond, moduleStates[i].angle);
+        }
+    }
+
+    /** Gets the estimated pose. */
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    /** Gets the robot relative speeds measured by the modules. */
+    public ChassisSpeeds getSpeeds() {
+        return new ChassisSpeeds(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, speeds.omegaRadiansPerSecond);
+    }
+
+    /** Gets the speed of a single module. */
+    public double getModuleSpeed(int moduleId) {
+        return moduleStates[moduleId].speedMetersPerSecond;
+    }
+
+    /** Gets the angle of a single module. */
+    public Rotation2d getModuleAngle(int moduleId) {
+        return moduleStates[moduleId].angle;
+    }
+
+    /** Gets a copy of the measured module states. */
+    public SwerveModuleState[] getModuleStates() {
+        SwerveModuleState[] copy = new SwerveModuleState[moduleStates.length];
+
+        for (int i = 0; i < moduleStates.length; i++) {
+            copy[i] = new SwerveModuleState(moduleStates[i].speedMetersPerSecond, moduleStates[i].angle);
+        }
+
+        return copy;
+    }
+
+    /** Gets the heading as it was measured. */
+    public Rotation2d getHeading() {
+        return heading;
+    }
+
+    /**
+     * Gets the heading extrapolated to a time with the yaw rate.
+     *
+     * @param timestamp The FPGA time to extrapolate to, in seconds.
+     */
+    public Rotation2d getHeadingAt(double timestamp) {
+        double age = MathUtil.clamp(timestamp - headingTimestamp, 0, DriveConstants.maxLatencyCompensation.in(Seconds));
+
+        return heading.plus(new Rotation2d(yawRate * age));
+    }
+
+    /** Gets the FPGA time the heading was measured at in seconds. */
+    public double getHeadingTimestamp() {
+        return headingTimestamp;
+    }
+
+    /** Gets the yaw rate in radians per second. */
+    public double getYawRate() {
+        return yawRate;
+    }
+
+    /** Gets the FPGA time the snapshot was taken at in seconds. */
+    public double getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,171 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.subsystems.drivetrain.trajectory.CompactTrajectory;
+import frc.robot.subsystems.drivetrain.trajectory.TrajectoryLibrary;
+import java.util.ArrayList;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Runs the drivetrain's hot paths with synthetic inputs while the robot is disabled, so the JIT has compiled them before the first enabled cycle.
+ *
+ * Everything runs on objects owned by the warm-up, so nothing here touches the real pose estimate or commands hardware.
+ * The JIT compiles methods rather than objects, so warming these copies warms the real ones too.
+ * Work is spread over many cycles with a time budget per cycle so the warm-up itself doesn't cause overruns.
+ */
+public class DrivetrainWarmup {
+    private SwerveDriveKinematics kinematics;
+    private SwerveDrivePoseEstimator poseEstimator;
+    private PIDController xController = new PIDController(1, 0, 0);
+    private PIDController yController = new PIDController(1, 0, 0);
+    private PIDController thetaController = new PIDController(1, 0, 0);
+    private ThermalModel thermalModel;
+
+    private SwerveModulePosition[] positions;
+    private List<CompactTrajectory> trajectories;
+
+    private int iterations = 0;
+    private double time = 0;
+    private double elapsed = 0;
+    private boolean complete = false;
+
+    // Keeps the results live so the JIT can't skip the work
+    private double sink;
+
+    /** Creates a new DrivetrainWarmup. */
+    public DrivetrainWarmup() {
+        kinematics = new SwerveDriveKinematics(DriveConstants.translations);
+
+        positions = new SwerveModulePosition[DriveConstants.translations.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new SwerveModulePosition();
+        }
+
+        poseEstimator = new SwerveDrivePoseEstimator(kinematics, new Rotation2d(), positions, new Pose2d());
+        thetaController.enableContinuousInput(-Math.PI, Math.PI);
+
+        thermalModel = new ThermalModel(
+            DriveConstants.krakenX60.rOhms,
+            DriveConstants.driveThermalResistance,
+            DriveConstants.driveThermalCapacitance,
+            DriveConstants.ambientTemperature.in(Celsius),
+            DriveConstants.motorTemperatureLimit.in(Celsius),
+            DriveConstants.thermalCorrectionRate);
+    }
+
+    /**
+     * Runs warm-up iterations until this cycle's budget is spent.
+     *
+     * Does nothing once the warm-up is complete.
+     */
+    public void run() {
+        if (complete) return;
+
+        // Waiting for the trajectories so their sampling gets warmed too
+        if (trajectories == null) {
+            if (!TrajectoryLibrary.isLoaded()) return;
+
+            trajectories = new ArrayList<>();
+            for (String name : TrajectoryLibrary.getNames()) {
+                CompactTrajectory trajectory = TrajectoryLibrary.get(name);
+                if (trajectory != null) trajectories.add(trajectory);
+            }
+        }
+
+        long start = System.nanoTime();
+        long budget = (long) (DriveConstants.warmupBudget.in(Seconds) * 1e9);
+
+        while (iterations < DriveConstants.warmupIterations && System.nanoTime() - start < budget) {
+            iterate();
+            iterations++;
+        }
+
+        elapsed += (System.nanoTime() - start) / 1e9;
+
+        // The iterations and time it took are logged by log()
+        if (iterations >= DriveConstants.warmupIterations) complete = true;
+    }
+
+    /** Runs one pass over every hot path with inputs that change each time. */
+    private void iterate() {
+        double dt = DriveConstants.controlLoopPeriod.in(Seconds);
+        time += dt;
+
+        double phase = iterations * 0.01;
+        Rotation2d heading = new Rotation2d(phase);
+
+        // Driver input shaping
+        double x = InputShaper.shape(Math.sin(phase), DriveConstants.joystickDeadband, DriveConstants.translationExpo);
+        double y = InputShaper.shape(Math.cos(phase * 1.3), DriveConstants.joystickDeadband, DriveConstants.translationExpo);
+
+        // Control loop
+        ChassisSpeeds speeds = ChassisSpeeds.fromFieldRelativeSpeeds(x * 4, y * 4, Math.sin(phase * 0.7) * 3, heading);
+        speeds = ChassisSpeeds.discretize(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, speeds.omegaRadiansPerSecond, dt);
+
+        SwerveModuleState[] states = kinematics.toSwerveModuleStates(speeds);
+        SwerveDriveKinematics.desaturateWheelSpeeds(states, DriveConstants.maxLinearVelocity);
+
+        for (int i = 0; i < states.length; i++) {
+            Rotation2d current = positions[i].angle;
+
+            states[i].optimize(current);
+            states[i].cosineScale(current);
+
+            positions[i] = new SwerveModulePosition(positions[i].distanceMeters + states[i].speedMetersPerSecond * dt, states[i].angle);
+        }
+
+        // Pose estimation and vision fusion
+        poseEstimator.updateWithTime(time, heading, positions);
+
+        if (iterations % 10 == 0) {
+            Pose2d pose = poseEstimator.getEstimatedPosition();
+            poseEstimator.addVisionMeasurement(new Pose2d(pose.getX() + 0.01, pose.getY() - 0.01, pose.getRotation()), time - 0.05);
+        }
+
+        Pose2d pose = poseEstimator.getEstimatedPosition();
+        ChassisSpeeds measured = kinematics.toChassisSpeeds(states);
+
+        DrivetrainState snapshot = new DrivetrainState(pose, measured, states, heading, time, speeds.omegaRadiansPerSecond, time);
+        sink += snapshot.getHeadingAt(time + dt).getRadians();
+
+        // Pose following
+        sink += xController.calculate(pose.getX(), Math.sin(phase));
+        sink += yController.calculate(pose.getY(), Math.cos(phase));
+        sink += thetaController.calculate(pose.getRotation().getRadians(), phase);
+
+        // Trajectory sampling
+        if (!trajectories.isEmpty()) {
+            CompactTrajectory trajectory = trajectories.get(iterations % trajectories.size());
+            double sampleTime = (phase * 10) % Math.max(trajectory.getTotalTime(), 1e-3);
+
+            sink += trajectory.sampleAt(sampleTime).getChassisSpeeds().vxMetersPerSecond;
+        }
+
+        // Current limiting
+        thermalModel.update(Math.abs(states[0].speedMetersPerSecond) * 10, DriveConstants.ambientTemperature.in(Celsius), dt);
+        sink += thermalModel.getSustainableCurrent(DriveConstants.thermalHorizon.in(Seconds));
+    }
+
+    /** Gets whether the warm-up is done. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /** Logs the warm-up progress. */
+    public void log() {
+        Logger.recordOutput("/Subsystems/Drivetrain/Warmup/Complete", complete);
+        Logger.recordOutput("/Subsystems/Drivetrain/Warmup/Iterations", iterations);
+        Logger.recordOutput("/Subsystems/Drivetrain/Warmup/Elapsed", elapsed);
+        Logger.recordOutput("/Subsystems/Drivetrain/Warmup/Sink", sink);
+    }
+}
@@ -0,0 +1,58 @@
+package frc.robot.subsystems.drivetrain;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.SlewRateLimiter;
+
+/**
+ * Shapes a single driver input.
+ *
+ * The input goes through a deadband that is rescaled so the output is continuous, then an expo curve, then a slew limit.
+ */
+public class InputShaper {
+    private double deadband;
+    private double exponent;
+    private SlewRateLimiter limiter;
+
+    /**
+     * Creates a new InputShaper.
+     *
+     * @param deadband The size of the deadband [0, 1).
+     * @param exponent The exponent of the expo curve. 1 is linear, higher values give finer control near the center.
+     * @param slewRate The max rate of change of the output in units per second.
+     */
+    public InputShaper(double deadband, double exponent, double slewRate) {
+        this.deadband = deadband;
+        this.exponent = exponent;
+        this.limiter = new SlewRateLimiter(slewRate);
+    }
+
+    /**
+     * Shapes an input without slew limiting it.
+     *
+     * The output is 0 inside the deadband, rises continuously from 0 at its edge, and reaches ±1 at full input.
+     *
+     * @param value The input [-1, 1].
+     * @param deadband The size of the deadband [0, 1).
+     * @param exponent The exponent of the expo curve.
+     */
+    public static double shape(double value, double deadband, double exponent) {
+        double rescaled = MathUtil.applyDeadband(MathUtil.clamp(value, -1, 1), deadband);
+
+        return Math.copySign(Math.pow(Math.abs(rescaled), exponent), rescaled);
+    }
+
+    /** Shapes and slew limits an input. */
+    public double calculate(double value) {
+        return limiter.calculate(shape(value, deadband, exponent));
+    }
+
+    /** Slew limits an input that was already shaped. */
+    public double limit(double value) {
+        return limiter.calculate(value);
+    }
+
+    /** Resets the slew limiter to a value. */
+    public void reset(double value) {
+        limiter.reset(value);
+    }
+}
@@ -0,0 +1,192 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import java.util.Arrays;
+import org.littletonrobotics.junction.AutoLog;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Watches the main loop for overruns and sheds the drivetrain's non-critical work when they keep happening.
+ *
+ * The time between cycle starts can't show headroom, since TimedRobot holds it at the loop period until the loop actually runs over.
+ * So a level is shed when cycles really overrun, or when the drivetrain's own work (from the start of periodic() to the end) takes most of the budget.
+ * A level is only restored once the loop has gone {@link DriveConstants#loopRestoreCycles} cycles without an overrun
+ * while the drivetrain's work leaves headroom.
+ *
+ * Work is shed one level at a time, least important first, and restored one level at a time.
+ * Odometry, current limiting, and the control loop are never shed.
+ *
+ * The measured timing and the level are logged as inputs, so a replay runs at the level the robot ran at instead of the one its own timing would give.
+ */
+public class LoopWatchdog {
+    /** What is shed at each level. Each level also sheds everything below it. */
+    public enum ShedLevel {
+        /** Everything runs. */
+        NONE,
+        /** Drivetrain outputs are only logged every few cycles. Inputs are always logged so replay still works. */
+        TELEMETRY,
+        /** Diagnostics (CAN budget, thermal, power, trajectory memory, warm-up) are skipped. */
+        DIAGNOSTICS,
+        /** Checks for changed gains are skipped. */
+        GAIN_CHECKS,
+        /** Vision measurements are left queued until a later cycle. */
+        VISION
+    }
+
+    @AutoLog
+    public static class LoopWatchdogInputs {
+        double period = 0; // Since the last cycle started, in seconds
+        double workTime = 0; // Of the last cycle, in seconds
+        String level = ShedLevel.NONE.name();
+    }
+
+    private String key;
+
+    private double[] workTimes;
+    private boolean[] overruns;
+    private int index = 0;
+    private int count = 0;
+    private double totalWorkTime = 0;
+    private int overrunCount = 0;
+
+    private long lastCycleStart = -1;
+    private long cycleStart;
+    private double workTime;
+
+    private ShedLevel level = ShedLevel.NONE;
+    private ShedLevel replayedLevel = null;
+    private int cyclesWithHeadroom = 0;
+    private int cycle = 0;
+    private int totalOverruns = 0;
+
+    private String lastDecision = "";
+
+    private LoopWatchdogInputsAutoLogged inputs = new LoopWatchdogInputsAutoLogged();
+
+    /**
+     * Creates a new LoopWatchdog.
+     *
+     * @param key The key of the drivetrain it watches, from {@link Drivetrain#getLogKey(String)}.
+     */
+    public LoopWatchdog(String key) {
+        this.key = key;
+
+        workTimes = new double[DriveConstants.loopWatchdogWindow];
+        overruns = new boolean[DriveConstants.loopWatchdogWindow];
+    }
+
+    /**
+     * Marks the start of a cycle and decides whether to shed or restore. Call this first thing in periodic().
+     *
+     * The decision is made from the last full cycle, since this one's work isn't done yet.
+     */
+    public void startCycle() {
+        cycleStart = System.nanoTime();
+
+        inputs.period = lastCycleStart > 0 ? (cycleStart - lastCycleStart) / 1e9 : 0;
+        inputs.workTime = workTime;
+
+        if (replayedLevel != null) {
+            level = replayedLevel;
+        } else if (lastCycleStart > 0) {
+            decide(inputs.period > DriveConstants.loopBudget.in(Seconds) * DriveConstants.loopOverrunThreshold, inputs.workTime);
+        }
+
+        inputs.level = level.name();
+
+        Logger.processInputs("/RealOutputs" + key + "/Watchdog", inputs);
+
+        level = ShedLevel.valueOf(inputs.level);
+
+        lastCycleStart = cycleStart;
+        cycle++;
+    }
+
+    /** Marks the end of the drivetrain's work for this cycle. */
+    public void endCycle() {
+        workTime = (System.nanoTime() - cycleStart) / 1e9;
+    }
+
+    /**
+     * Holds the level at one read from a log instead of deciding it from this run's timing, for replay.
+     *
+     * @param level The recorded level, or null to go back to deciding it.
+     */
+    public void setReplayedLevel(ShedLevel level) {
+        replayedLevel = level;
+    }
+
+    private void decide(boolean overran, double cycleWorkTime) {
+        add(overran, cycleWorkTime);
+
+        if (overran) totalOverruns++;
+        if (count < workTimes.length) return;
+
+        double budget = DriveConstants.loopBudget.in(Seconds);
+        double averageWorkTime = getAverageWorkTime();
+
+        if ((overrunCount >= DriveConstants.loopShedOverruns || averageWorkTime > budget * DriveConstants.loopShedThreshold) && level != ShedLevel.VISION) {
+            setLevel(ShedLevel.values()[level.ordinal() + 1]);
+            cyclesWithHeadroom = 0;
+        } else if (overrunCount == 0 && averageWorkTime < budget * DriveConstants.loopRestoreThreshold && level != ShedLevel.NONE) {
+            if (++cyclesWithHeadroom >= DriveConstants.loopRestoreCycles) {
+                setLevel(ShedLevel.values()[level.ordinal() - 1]);
+                cyclesWithHeadroom = 0;
+            }
+        } else {
+            cyclesWithHeadroom = 0;
+        }
+    }
+
+    private void add(boolean overran, double cycleWorkTime) {
+        totalWorkTime += cycleWorkTime - workTimes[index];
+        overrunCount += (overran ? 1 : 0) - (overruns[index] ? 1 : 0);
+
+        workTimes[index] = cycleWorkTime;
+        overruns[index] = overran;
+
+        index = (index + 1) % workTimes.length;
+        count = Math.min(count + 1, workTimes.length);
+    }
+
+    private void setLevel(ShedLevel newLevel) {
+        lastDecision = String.format("%s %s -> %s (%d overruns, average work %.1f ms)", newLevel.ordinal() > level.ordinal() ? "Shed" : "Restore", level, newLevel, overrunCount, getAverageWorkTime() * 1000);
+        level = newLevel;
+
+        // The window is cleared so the next decision only sees cycles run at the new level
+        Arrays.fill(workTimes, 0);
+        Arrays.fill(overruns, false);
+        totalWorkTime = 0;
+        overrunCount = 0;
+        count = 0;
+    }
+
+    /** Gets whether some work is being shed right now. */
+    public boolean isShed(ShedLevel work) {
+        return level.ordinal() >= work.ordinal();
+    }
+
+    /** Gets whether drivetrain outputs should be logged this cycle. */
+    public boolean shouldLogTelemetry() {
+        return !isShed(ShedLevel.TELEMETRY) || cycle % DriveConstants.telemetryDownsample == 0;
+    }
+
+    /** Gets the average time the drivetrain's work took over the window in seconds. */
+    public double getAverageWorkTime() {
+        return count == 0 ? 0 : totalWorkTime / count;
+    }
+
+    /** Gets the current shed level. */
+    public ShedLevel getLevel() {
+        return level;
+    }
+
+    /** Logs the decisions and overruns. The timing and level are logged as inputs every cycle. */
+    public void log() {
+        Logger.recordOutput(key + "/Watchdog/Decision", lastDecision);
+        Logger.recordOutput(key + "/Watchdog/AverageWorkTime", getAverageWorkTime());
+        Logger.recordOutput(key + "/Watchdog/WindowOverruns", overrunCount);
+        Logger.recordOutput(key + "/Watchdog/TotalOverruns", totalOverruns);
+    }
+}
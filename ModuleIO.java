@@ -2,6 +2,8 @@ package frc.robot.subsystems.drivetrain;
 
 import static edu.wpi.first.units.Units.*;
 
+import com.ctre.phoenix6.BaseStatusSignal;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
@@ -39,16 +41,80 @@ public interface ModuleIO {
 
         Temperature driveTemperature = Celsius.zero();
         Temperature steerTemperature = Celsius.zero();
+
+        double timestamp = 0;
     }
 
     public void updateInputs();
 
+    /**
+     * Applies any gains that were changed in AdjustableValues.
+     * 
+     * This is kept out of {@link #updateInputs()} so it can be skipped when the loop is overloaded.
+     */
+    public default void updateGains() {}
+
     public void setState(SwerveModuleState state);
     public void resetPosition(SwerveModulePosition position);
 
+    /**
+     * Sets the stator current limits of the drive and steer motors.
+     * 
+     * These start at the stator limits configured at startup and are only ever lowered from there.
+     * This is called whenever the limits are derated, so it must not block.
+     */
+    public void setCurrentLimits(Current driveLimit, Current steerLimit);
+
+    /**
+     * Sets the supply current limits of the drive and steer motors, from the battery's current budget.
+     * 
+     * Motor controllers without a supply limit turn it into a stator limit with their duty cycle.
+     * This is called whenever the budget moves, so it must not block.
+     */
+    public default void setSupplyCurrentLimits(Current driveLimit, Current steerLimit) {}
+
     public SwerveModuleState getState();
     public SwerveModulePosition getPosition();
 
+    /**
+     * Gets signals the control loop can block on until they arrive, for {@link DriveConstants#synchronizedControl}.
+     * 
+     * These are the control thread's own copies, so waiting on them doesn't touch the signals read by {@link #updateInputs()}.
+     * Returns an empty array if the module can't be waited on.
+     */
+    public default BaseStatusSignal[] getSyncSignals() {
+        return new BaseStatusSignal[0];
+    }
+
+    /**
+     * Gets the module state from the latest values of the signals from {@link #getSyncSignals()}.
+     * 
+     * Called from the control thread right after waiting on them, so the control loop runs on the data it waited for.
+     * Modules that can't be waited on return their last state.
+     */
+    public default SwerveModuleState getSyncState() {
+        return getState();
+    }
+
+    /**
+     * Gets the module position extrapolated to a sample time.
+     * 
+     * The distance and angle are carried forward from when they were measured using their velocity and acceleration.
+     * 
+     * @param timestamp The FPGA time to extrapolate to, in seconds.
+     */
+    public default SwerveModulePosition getPosition(double timestamp) {
+        double age = MathUtil.clamp(timestamp - getTimestamp(), 0, DriveConstants.maxLatencyCompensation.in(Seconds));
+
+        double distance = getDistance().in(Meters) + getDriveVelocity().in(MetersPerSecond) * age + 0.5 * getDriveAcceleration().in(MetersPerSecondPerSecond) * age * age;
+        double angle = getAngle().getRadians() + getSteerVelocity().in(RadiansPerSecond) * age + 0.5 * getSteerAcceleration().in(RadiansPerSecondPerSecond) * age * age;
+
+        return new SwerveModulePosition(distance, new Rotation2d(angle));
+    }
+
+    /** Gets the FPGA time (in seconds) that the latest readings were measured at. */
+    public double getTimestamp();
+
     public Rotation2d getAbsoluteAngle();
 
     public Rotation2d getAngle();
@@ -0,0 +1,250 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import com.ctre.phoenix6.Utils;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
+import com.ctre.phoenix6.configs.Slot0Configs;
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.ctre.phoenix6.hardware.TalonFX;
+import com.ctre.phoenix6.swerve.SwerveModule;
+import com.ctre.phoenix6.swerve.SwerveModule.DriveRequestType;
+import com.ctre.phoenix6.swerve.SwerveModule.ModuleRequest;
+import com.ctre.phoenix6.swerve.SwerveModule.SteerRequestType;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.units.measure.AngularAcceleration;
+import edu.wpi.first.units.measure.AngularVelocity;
+import edu.wpi.first.units.measure.Current;
+import edu.wpi.first.units.measure.Distance;
+import edu.wpi.first.units.measure.LinearAcceleration;
+import edu.wpi.first.units.measure.LinearVelocity;
+import edu.wpi.first.units.measure.Temperature;
+import edu.wpi.first.units.measure.Voltage;
+import frc.robot.subsystems.util.AdjustableValues;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * A ModuleIO that wraps a module owned by a CTRE SwerveDrivetrain.
+ *
+ * The drivetrain's control thread is the one that normally commands these modules, see {@link DrivetrainIOCTRE}.
+ */
+public class ModuleIOCTRE implements ModuleIO {
+    private int moduleId;
+
+    private SwerveModule<TalonFX, TalonFX, CANcoder> module;
+
+    private TalonFX driveMotor;
+    private TalonFX steerMotor;
+    private CANcoder absEncoder;
+
+    private ModuleRequest request = new ModuleRequest()
+        .withDriveRequest(DriveRequestType.Velocity)
+        .withSteerRequest(SteerRequestType.Position);
+
+    // The thermal stator limits and the battery's supply limits, starting where DrivetrainIOCTRE configured them
+    private CurrentLimitsConfigs driveLimits = new CurrentLimitsConfigs()
+        .withSupplyCurrentLimit(DriveConstants.driveCurrentLimit).withSupplyCurrentLimitEnable(true)
+        .withStatorCurrentLimit(DriveConstants.driveStatorCurrentLimit).withStatorCurrentLimitEnable(true);
+    private CurrentLimitsConfigs steerLimits = new CurrentLimitsConfigs()
+        .withSupplyCurrentLimit(DriveConstants.steerCurrentLimit).withSupplyCurrentLimitEnable(true)
+        .withStatorCurrentLimit(DriveConstants.steerStatorCurrentLimit).withStatorCurrentLimitEnable(true);
+
+    private ModuleIOInputsAutoLogged inputs;
+
+    /**
+     * Creates a new ModuleIO from a module of a CTRE SwerveDrivetrain.
+     *
+     * @param moduleId The module id used for logging and getting configs.
+     * @param module The module to wrap.
+     */
+    public ModuleIOCTRE(int moduleId, SwerveModule<TalonFX, TalonFX, CANcoder> module) {
+        this.moduleId = moduleId;
+        this.module = module;
+
+        driveMotor = module.getDriveMotor();
+        steerMotor = module.getSteerMotor();
+        absEncoder = module.getEncoder();
+
+        // CTRE already runs the odometry signals at the odometry rate, the rest only need to be fast enough to log
+        String name = "Module" + moduleId;
+        SignalBudget.registerPhoenix(name, DriveConstants.odometryFrequency, driveMotor.getPosition(), driveMotor.getVelocity(), steerMotor.getPosition(), steerMotor.getVelocity(), absEncoder.getPosition(), absEncoder.getVelocity());
+        SignalBudget.registerPhoenix(name, DriveConstants.controlSignalFrequency, driveMotor.getAcceleration(), driveMotor.getMotorVoltage(), driveMotor.getStatorCurrent(), steerMotor.getAcceleration(), steerMotor.getMotorVoltage(), steerMotor.getStatorCurrent(), absEncoder.getAbsolutePosition());
+        SignalBudget.registerPhoenix(name, DriveConstants.thermalSignalFrequency, driveMotor.getDeviceTemp(), steerMotor.getDeviceTemp());
+        SignalBudget.optimize(driveMotor, steerMotor, absEncoder);
+
+        inputs = new ModuleIOInputsAutoLogged();
+    }
+
+    @Override
+    public void updateGains() {
+        if (AdjustableValues.hasChanged("Drive_kP_" + moduleId) || AdjustableValues.hasChanged("Drive_kI_" + moduleId) || AdjustableValues.hasChanged("Drive_kD_" + moduleId) ||
+            AdjustableValues.hasChanged("Drive_kS_" + moduleId) || AdjustableValues.hasChanged("Drive_kV_" + moduleId) || AdjustableValues.hasChanged("Drive_kA_" + moduleId)) {
+            Slot0Configs drivePIDConfig = new Slot0Configs();
+            drivePIDConfig.kP = AdjustableValues.getNumber("Drive_kP_" + moduleId);
+            drivePIDConfig.kI = AdjustableValues.getNumber("Drive_kI_" + moduleId);
+            drivePIDConfig.kD = AdjustableValues.getNumber("Drive_kD_" + moduleId);
+            drivePIDConfig.kS = AdjustableValues.getNumber("Drive_kS_" + moduleId);
+            drivePIDConfig.kV = AdjustableValues.getNumber("Drive_kV_" + moduleId);
+            drivePIDConfig.kA = AdjustableValues.getNumber("Drive_kA_" + moduleId);
+
+            driveMotor.getConfigurator().apply(drivePIDConfig);
+        }
+
+        if (AdjustableValues.hasChanged("Steer_kP_" + moduleId) || AdjustableValues.hasChanged("Steer_kI_" + moduleId) || AdjustableValues.hasChanged("Steer_kD_" + moduleId) ||
+            AdjustableValues.hasChanged("Steer_kS_" + moduleId) || AdjustableValues.hasChanged("Steer_kV_" + moduleId) || AdjustableValues.hasChanged("Steer_kA_" + moduleId)) {
+            Slot0Configs steerPIDConfig = new Slot0Configs();
+            steerPIDConfig.kP = AdjustableValues.getNumber("Steer_kP_" + moduleId);
+            steerPIDConfig.kI = AdjustableValues.getNumber("Steer_kI_" + moduleId);
+            steerPIDConfig.kD = AdjustableValues.getNumber("Steer_kD_" + moduleId);
+            steerPIDConfig.kS = AdjustableValues.getNumber("Steer_kS_" + moduleId);
+            steerPIDConfig.kV = AdjustableValues.getNumber("Steer_kV_" + moduleId);
+            steerPIDConfig.kA = AdjustableValues.getNumber("Steer_kA_" + moduleId);
+
+            steerMotor.getConfigurator().apply(steerPIDConfig);
+        }
+    }
+
+    @Override
+    public void updateInputs() {
+        inputs.modulePosition = getPosition();
+        inputs.moduleState = getState();
+
+        inputs.steerAbsAngle = getAbsoluteAngle();
+
+        inputs.steerAngle = getAngle();
+        inputs.steerVelocity = getSteerVelocity();
+        inputs.steerAcceleration = getSteerAcceleration();
+
+        inputs.driveDistance = getDistance();
+        inputs.driveVelocity = getDriveVelocity();
+        inputs.driveAcceleration = getDriveAcceleration();
+
+        inputs.driveVoltage = getDriveVoltage();
+        inputs.steerVoltage = getSteerVoltage();
+
+        inputs.driveCurrent = getDriveCurrent();
+        inputs.steerCurrent = getSteerCurrent();
+
+        inputs.driveTemperature = getDriveTemperature();
+        inputs.steerTemperature = getSteerTemperature();
+
+        inputs.timestamp = getTimestamp();
+
+        Logger.processInputs(String.format("/RealOutputs/Subsystems/Drivetrain/Module%d_CTRE", moduleId), inputs);
+    }
+
+    @Override
+    public void setState(SwerveModuleState state) {
+        module.apply(request.withState(state));
+    }
+
+    @Override
+    public void setCurrentLimits(Current driveLimit, Current steerLimit) {
+        driveLimits.StatorCurrentLimit = driveLimit.in(Amps);
+        steerLimits.StatorCurrentLimit = steerLimit.in(Amps);
+
+        applyCurrentLimits();
+    }
+
+    @Override
+    public void setSupplyCurrentLimits(Current driveLimit, Current steerLimit) {
+        driveLimits.SupplyCurrentLimit = driveLimit.in(Amps);
+        steerLimits.SupplyCurrentLimit = steerLimit.in(Amps);
+
+        applyCurrentLimits();
+    }
+
+    /** Sends the current limits, which go as one group so the supply and stator limits are always sent together. */
+    private void applyCurrentLimits() {
+        // A timeout of 0 sends the config without waiting for a response
+        driveMotor.getConfigurator().apply(driveLimits, 0);
+        steerMotor.getConfigurator().apply(steerLimits, 0);
+    }
+
+    @Override
+    public void resetPosition(SwerveModulePosition position) {
+        driveMotor.setPosition(position.distanceMeters / (2 * Math.PI * DriveConstants.wheelRadius.in(Meters)) * DriveConstants.driveGearRatio);
+    }
+
+    @Override
+    public SwerveModuleState getState() {
+        return module.getCurrentState();
+    }
+
+    @Override
+    public SwerveModulePosition getPosition() {
+        return module.getCachedPosition();
+    }
+
+    @Override
+    public double getTimestamp() {
+        return Utils.currentTimeToFPGATime(driveMotor.getPosition().getTimestamp().getTime());
+    }
+
+    @Override
+    public Rotation2d getAbsoluteAngle() {
+        return new Rotation2d(absEncoder.getAbsolutePosition().getValue());
+    }
+
+    @Override
+    public Rotation2d getAngle() {
+        return module.getCurrentState().angle;
+    }
+
+    @Override
+    public AngularVelocity getSteerVelocity() {
+        return steerMotor.getVelocity().getValue();
+    }
+
+    @Override
+    public AngularAcceleration getSteerAcceleration() {
+        return steerMotor.getAcceleration().getValue();
+    }
+
+    @Override
+    public Distance getDistance() {
+        return Meters.of(module.getCachedPosition().distanceMeters);
+    }
+
+    @Override
+    public LinearVelocity getDriveVelocity() {
+        return MetersPerSecond.of(module.getCurrentState().speedMetersPerSecond);
+    }
+
+    @Override
+    public LinearAcceleration getDriveAcceleration() {
+        return MetersPerSecondPerSecond.of(driveMotor.getAcceleration().getValue().in(RadiansPerSecondPerSecond) / DriveConstants.driveGearRatio * DriveConstants.wheelRadius.in(Meters));
+    }
+
+    @Override
+    public Voltage getDriveVoltage() {
+        return driveMotor.getMotorVoltage().getValue();
+    }
+
+    @Override
+    public Voltage getSteerVoltage() {
+        return steerMotor.getMotorVoltage().getValue();
+    }
+
+    @Override
+    public Current getDriveCurrent() {
+        return driveMotor.getStatorCurrent().getValue();
+    }
+
+    @Override
+    public Current getSteerCurrent() {
+        return steerMotor.getStatorCurrent().getValue();
+    }
+
+    @Override
+    public Temperature getDriveTemperature() {
+        return driveMotor.getDeviceTemp().getValue();
+    }
+
+    @Override
+    public Temperature getSteerTemperature() {
+        return steerMotor.getDeviceTemp().getValue();
+    }
+}
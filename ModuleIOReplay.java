@@ -0,0 +1,185 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.units.measure.AngularAcceleration;
+import edu.wpi.first.units.measure.AngularVelocity;
+import edu.wpi.first.units.measure.Current;
+import edu.wpi.first.units.measure.Distance;
+import edu.wpi.first.units.measure.LinearAcceleration;
+import edu.wpi.first.units.measure.LinearVelocity;
+import edu.wpi.first.units.measure.Temperature;
+import edu.wpi.first.units.measure.Voltage;
+import frc.robot.subsystems.drivetrain.replay.LogCycleReader;
+
+/**
+ * A ModuleIO that plays back the inputs another ModuleIO recorded.
+ *
+ * Measures are logged by AdvantageKit in their base units, which is how they are read back here.
+ */
+public class ModuleIOReplay implements ModuleIO {
+    private LogCycleReader log;
+    private String key;
+
+    private Rotation2d steerAbsAngle = new Rotation2d();
+    private Rotation2d steerAngle = new Rotation2d();
+    private double steerVelocity;
+    private double steerAcceleration;
+
+    private double driveDistance;
+    private double driveVelocity;
+    private double driveAcceleration;
+
+    private double driveVoltage;
+    private double steerVoltage;
+
+    private double driveCurrent;
+    private double steerCurrent;
+
+    private double driveTemperature;
+    private double steerTemperature;
+
+    private double timestamp;
+
+    private SwerveModuleState setpoint = new SwerveModuleState();
+
+    /**
+     * Creates a new replayed ModuleIO.
+     *
+     * @param log The log being replayed.
+     * @param key The key the original ModuleIO logged its inputs under.
+     */
+    public ModuleIOReplay(LogCycleReader log, String key) {
+        this.log = log;
+        this.key = key;
+    }
+
+    @Override
+    public void updateInputs() {
+        Rotation2d absAngle = log.getStruct(key + "/SteerAbsAngle", Rotation2d.struct);
+        if (absAngle != null) steerAbsAngle = absAngle;
+
+        Rotation2d angle = log.getStruct(key + "/SteerAngle", Rotation2d.struct);
+        if (angle != null) steerAngle = angle;
+
+        steerVelocity = log.getDouble(key + "/SteerVelocity", steerVelocity);
+        steerAcceleration = log.getDouble(key + "/SteerAcceleration", steerAcceleration);
+
+        driveDistance = log.getDouble(key + "/DriveDistance", driveDistance);
+        driveVelocity = log.getDouble(key + "/DriveVelocity", driveVelocity);
+        driveAcceleration = log.getDouble(key + "/DriveAcceleration", driveAcceleration);
+
+        driveVoltage = log.getDouble(key + "/DriveVoltage", driveVoltage);
+        steerVoltage = log.getDouble(key + "/SteerVoltage", steerVoltage);
+
+        driveCurrent = log.getDouble(key + "/DriveCurrent", driveCurrent);
+        steerCurrent = log.getDouble(key + "/SteerCurrent", steerCurrent);
+
+        driveTemperature = log.getDouble(key + "/DriveTemperature", driveTemperature);
+        steerTemperature = log.getDouble(key + "/SteerTemperature", steerTemperature);
+
+        timestamp = log.getDouble(key + "/Timestamp", log.getTimestamp());
+    }
+
+    @Override
+    public void setState(SwerveModuleState state) {
+        setpoint = state;
+    }
+
+    @Override
+    public void setCurrentLimits(Current driveLimit, Current steerLimit) {}
+
+    @Override
+    public void resetPosition(SwerveModulePosition position) {
+        driveDistance = position.distanceMeters;
+        steerAngle = position.angle;
+    }
+
+    /** Gets the last setpoint that was sent to this module. */
+    public SwerveModuleState getSetpoint() {
+        return setpoint;
+    }
+
+    @Override
+    public SwerveModuleState getState() {
+        return new SwerveModuleState(getDriveVelocity(), getAngle());
+    }
+
+    @Override
+    public SwerveModulePosition getPosition() {
+        return new SwerveModulePosition(getDistance(), getAngle());
+    }
+
+    @Override
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public Rotation2d getAbsoluteAngle() {
+        return steerAbsAngle;
+    }
+
+    @Override
+    public Rotation2d getAngle() {
+        return steerAngle;
+    }
+
+    @Override
+    public AngularVelocity getSteerVelocity() {
+        return RadiansPerSecond.of(steerVelocity);
+    }
+
+    @Override
+    public AngularAcceleration getSteerAcceleration() {
+        return RadiansPerSecondPerSecond.of(steerAcceleration);
+    }
+
+    @Override
+    public Distance getDistance() {
+        return Meters.of(driveDistance);
+    }
+
+    @Override
+    public LinearVelocity getDriveVelocity() {
+        return MetersPerSecond.of(driveVelocity);
+    }
+
+    @Override
+    public LinearAcceleration getDriveAcceleration() {
+        return MetersPerSecondPerSecond.of(driveAcceleration);
+    }
+
+    @Override
+    public Voltage getDriveVoltage() {
+        return Volts.of(driveVoltage);
+    }
+
+    @Override
+    public Voltage getSteerVoltage() {
+        return Volts.of(steerVoltage);
+    }
+
+    @Override
+    public Current getDriveCurrent() {
+        return Amps.of(driveCurrent);
+    }
+
+    @Override
+    public Current getSteerCurrent() {
+        return Amps.of(steerCurrent);
+    }
+
+    @Override
+    public Temperature getDriveTemperature() {
+        return Kelvin.of(driveTemperature);
+    }
+
+    @Override
+    public Temperature getSteerTemperature() {
+        return Kelvin.of(steerTemperature);
+    }
+}
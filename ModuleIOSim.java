@@ -10,6 +10,7 @@ import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.units.measure.AngularAcceleration;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
@@ -18,7 +19,12 @@ import edu.wpi.first.units.measure.LinearAcceleration;
 import edu.wpi.first.units.measure.LinearVelocity;
 import edu.wpi.first.units.measure.Temperature;
 import edu.wpi.first.units.measure.Voltage;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.subsystems.drivetrain.filter.FiniteDifference;
+import frc.robot.subsystems.drivetrain.sim.ChassisSimulator;
+import frc.robot.subsystems.drivetrain.sim.SensorModel;
+import frc.robot.subsystems.drivetrain.sim.SimBattery;
 import frc.robot.subsystems.util.AdjustableValues;
 import org.littletonrobotics.junction.Logger;
 
@@ -36,6 +42,42 @@ public class ModuleIOSim implements ModuleIO {
 
     private SwerveModuleState setpoint = new SwerveModuleState();
 
+    private FiniteDifference steerSetpointRate = new FiniteDifference(1);
+    private double lastSteerSetpoint = Double.NaN;
+    private double unwrappedSteerSetpoint = 0;
+
+    // Stands in for Motion Magic and MAXMotion when steering is profiled, null until the first update
+    private TrapezoidProfile steerProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(SteerProfile.getMaxVelocity(), SteerProfile.getMaxAcceleration()));
+    private TrapezoidProfile.State steerProfileState = null;
+    private SteerProfile steerSettle = new SteerProfile();
+
+    private double driveCurrentLimit = DriveConstants.driveStatorCurrentLimit.in(Amps);
+    private double steerCurrentLimit = DriveConstants.steerStatorCurrentLimit.in(Amps);
+    private double driveSupplyLimit = DriveConstants.driveCurrentLimit.in(Amps);
+    private double steerSupplyLimit = DriveConstants.steerCurrentLimit.in(Amps);
+
+    private double timestamp = -1;
+
+    // Null when the module is simulated on its own
+    private ChassisSimulator chassis;
+
+    // Null for the robot's own modules, or the name of an extra simulated robot
+    private String robotName;
+    private String inputsKey;
+    private String simKey;
+
+    private double appliedDriveVolts = 0;
+    private double driveCurrent = 0;
+
+    // What robot code reads over CAN, as opposed to the true state in the motor sims
+    private SensorModel drivePositionSensor;
+    private SensorModel driveVelocitySensor;
+    private SensorModel driveCurrentSensor;
+    private SensorModel steerPositionSensor;
+    private SensorModel steerVelocitySensor;
+    private SensorModel steerCurrentSensor;
+    private SensorModel absEncoderSensor;
+
     private ModuleIOInputsAutoLogged inputs;
 
     /**
@@ -44,12 +86,44 @@ public class ModuleIOSim implements ModuleIO {
      * @param moduleId The module id used for logging and getting configs.
      */
     public ModuleIOSim(int moduleId) {
+        this(moduleId, null);
+    }
+
+    /**
+     * Creates a simulated ModuleIO that drives a shared chassis.
+     * 
+     * The module's wheel pushes the chassis, and the chassis pushes back on the drive motor.
+     * Every module on the robot should share the same chassis.
+     * 
+     * @param moduleId The module id used for logging and getting configs. Also the module's index in {@link DriveConstants#translations}.
+     * @param chassis The chassis to drive, or null to simulate the module on its own.
+     */
+    public ModuleIOSim(int moduleId, ChassisSimulator chassis) {
+        this(moduleId, chassis, null);
+    }
+
+    /**
+     * Creates a simulated ModuleIO for one of several simulated robots.
+     * 
+     * Modules of an extra robot log under that robot's key and run off a full battery,
+     * since {@link SimBattery} is the battery of the robot's own drivetrain.
+     * 
+     * @param moduleId The module id used for logging and getting configs. Also the module's index in {@link DriveConstants#translations}.
+     * @param chassis The chassis to drive, or null to simulate the module on its own.
+     * @param robotName The name of the simulated robot, or null for the robot's own modules.
+     */
+    public ModuleIOSim(int moduleId, ChassisSimulator chassis, String robotName) {
         this.moduleId = moduleId;
+        this.chassis = chassis;
+        this.robotName = robotName;
+
+        inputsKey = String.format("/RealOutputs%s/Module%d_Sim", Drivetrain.getLogKey(robotName), moduleId);
+        simKey = robotName == null ? "/Sim" : "/Sim/" + robotName;
 
         driveFFController = new SimpleMotorFeedforward(AdjustableValues.getNumber("Drive_kS_" + moduleId), AdjustableValues.getNumber("Drive_kV_" + moduleId), AdjustableValues.getNumber("Drive_kA_" + moduleId));
         steerFFController = new SimpleMotorFeedforward(AdjustableValues.getNumber("Steer_kS_" + moduleId), AdjustableValues.getNumber("Steer_kV_" + moduleId), AdjustableValues.getNumber("Steer_kA_" + moduleId));
 
-        driveMotor = new DCMotorSim(LinearSystemId.createDCMotorSystem(DCMotor.getKrakenX60(1), DriveConstants.driveMOI, DriveConstants.driveGearRatio), DCMotor.getKrakenX60(1));
+        driveMotor = new DCMotorSim(LinearSystemId.createDCMotorSystem(DriveConstants.krakenX60, DriveConstants.driveMOI, DriveConstants.driveGearRatio), DriveConstants.krakenX60);
         steerMotor = new DCMotorSim(LinearSystemId.createDCMotorSystem(DriveConstants.krakenX44, DriveConstants.steerMOI, DriveConstants.steerGearRatio), DriveConstants.krakenX44);
 
         driveController = new PIDController(AdjustableValues.getNumber("Drive_kP_" + moduleId), AdjustableValues.getNumber("Drive_kI_" + moduleId), AdjustableValues.getNumber("Drive_kD_" + moduleId));
@@ -57,11 +131,25 @@ public class ModuleIOSim implements ModuleIO {
 
         steerController.enableContinuousInput(Math.PI, -Math.PI);
 
+        long seed = DriveConstants.simSeed + 16L * moduleId;
+        double signalLatency = DriveConstants.simSignalLatency.in(Seconds);
+        double dropRate = DriveConstants.simFrameDropRate;
+        double driveQuantum = 2 * Math.PI * DriveConstants.wheelRadius.in(Meters) / (DriveConstants.simMotorCountsPerRev * DriveConstants.driveGearRatio);
+        double steerQuantum = 2 * Math.PI / (DriveConstants.simMotorCountsPerRev * DriveConstants.steerGearRatio);
+
+        drivePositionSensor = new SensorModel(signalLatency, driveQuantum, 0, dropRate, seed);
+        driveVelocitySensor = new SensorModel(signalLatency, 0, DriveConstants.simDriveVelocityNoise.in(MetersPerSecond), dropRate, seed + 1);
+        driveCurrentSensor = new SensorModel(signalLatency, 0, DriveConstants.simCurrentNoise.in(Amps), dropRate, seed + 2);
+        steerPositionSensor = new SensorModel(signalLatency, steerQuantum, 0, dropRate, seed + 3);
+        steerVelocitySensor = new SensorModel(signalLatency, 0, DriveConstants.simSteerVelocityNoise.in(RadiansPerSecond), dropRate, seed + 4);
+        steerCurrentSensor = new SensorModel(signalLatency, 0, DriveConstants.simCurrentNoise.in(Amps), dropRate, seed + 5);
+        absEncoderSensor = new SensorModel(DriveConstants.simAbsEncoderLatency.in(Seconds), 2 * Math.PI / DriveConstants.simAbsEncoderCountsPerRev, DriveConstants.simAbsEncoderNoise.in(Radians), dropRate, seed + 6);
+
         inputs = new ModuleIOInputsAutoLogged();
     }
 
     @Override
-    public void updateInputs() {
+    public void updateGains() {
         if (AdjustableValues.hasChanged("Drive_kP_" + moduleId)) driveController.setP(AdjustableValues.getNumber("Drive_kP_" + moduleId));
         if (AdjustableValues.hasChanged("Drive_kI_" + moduleId)) driveController.setI(AdjustableValues.getNumber("Drive_kI_" + moduleId));
         if (AdjustableValues.hasChanged("Drive_kD_" + moduleId)) driveController.setD(AdjustableValues.getNumber("Drive_kD_" + moduleId));
@@ -77,15 +165,80 @@ public class ModuleIOSim implements ModuleIO {
         if (AdjustableValues.hasChanged("Steer_kS_" + moduleId)) steerFFController.setKs(AdjustableValues.getNumber("Steer_kS_" + moduleId));
         if (AdjustableValues.hasChanged("Steer_kV_" + moduleId)) steerFFController.setKv(AdjustableValues.getNumber("Steer_kV_" + moduleId));
         if (AdjustableValues.hasChanged("Steer_kA_" + moduleId)) steerFFController.setKa(AdjustableValues.getNumber("Steer_kA_" + moduleId));
+    }
+
+    @Override
+    public void updateInputs() {
+        // Stepping the sim by the real time since the last update
+        double now = Timer.getFPGATimestamp();
+        double dt = timestamp < 0 ? DriveConstants.controlLoopPeriod.in(Seconds) : Math.max(now - timestamp, 1e-3);
+
+        // A shared chassis steps once for every module, with the voltages they sent last cycle, unless an AllianceSimulation steps it
+        if (chassis != null && !chassis.isSteppedExternally()) chassis.update(now);
 
-        double driveVolts = MathUtil.clamp(driveController.calculate(getDriveVelocity().in(MetersPerSecond)) + driveMotor.getInputVoltage() + driveFFController.calculate(setpoint.speedMetersPerSecond), -12, 12);
-        double steerVolts = MathUtil.clamp(steerController.calculate(getAngle().getRadians()) + steerFFController.calculate((setpoint.angle.minus(getAngle()).getRadians()) / 0.02), -12, 12);
+        // The motor controllers close their loops on their own sensors, so they see the true state with no CAN latency
+        // Extra simulated robots aren't on this robot's battery
+        double busVoltage = DriveConstants.nominalBatteryVoltage.in(Volts);
+        if (robotName == null) busVoltage = SimBattery.isBrownedOut() ? 0 : SimBattery.getVoltage();
 
-        driveMotor.setInputVoltage(driveVolts);
+        double driveVolts = MathUtil.clamp(driveController.calculate(getTrueDriveVelocity()) + appliedDriveVolts + driveFFController.calculate(setpoint.speedMetersPerSecond), -busVoltage, busVoltage);
+        double steerRate = steerSetpointRate.get();
+
+        if (DriveConstants.profiledSteer) {
+            // Like the motor controllers' profiles, this carries on from where it was and takes the short way to the setpoint
+            if (steerProfileState == null) steerProfileState = new TrapezoidProfile.State(steerMotor.getAngularPositionRad(), steerMotor.getAngularVelocityRadPerSec());
+
+            double goal = steerProfileState.position + MathUtil.angleModulus(setpoint.angle.getRadians() - steerProfileState.position);
+            steerProfileState = steerProfile.calculate(dt, steerProfileState, new TrapezoidProfile.State(goal, 0));
+
+            steerController.setSetpoint(steerProfileState.position);
+            steerRate = steerProfileState.velocity;
+        }
+
+        double steerVolts = MathUtil.clamp(steerController.calculate(steerMotor.getAngularPositionRad()) + steerFFController.calculate(steerRate), -busVoltage, busVoltage);
+
+        double driveLimit = getStatorLimit(driveCurrentLimit, driveSupplyLimit, driveVolts, busVoltage);
+        double steerLimit = getStatorLimit(steerCurrentLimit, steerSupplyLimit, steerVolts, busVoltage);
+
+        driveVolts = limitVoltage(DriveConstants.krakenX60, driveVolts, getTrueDriveVelocity() / DriveConstants.wheelRadius.in(Meters) * DriveConstants.driveGearRatio, driveLimit);
+        steerVolts = limitVoltage(DriveConstants.krakenX44, steerVolts, steerMotor.getAngularVelocityRadPerSec() * DriveConstants.steerGearRatio, steerLimit);
+
+        appliedDriveVolts = driveVolts;
         steerMotor.setInputVoltage(steerVolts);
+        steerMotor.update(dt);
+
+        // With a chassis, the wheel is spun up by the chassis sim so it can be loaded by its tire
+        if (chassis == null) {
+            driveCurrent = DriveConstants.krakenX60.getCurrent(driveMotor.getAngularVelocityRadPerSec() * DriveConstants.driveGearRatio, driveVolts);
+
+            driveMotor.setInputVoltage(driveVolts);
+            driveMotor.update(dt);
+        } else {
+            driveCurrent = chassis.getDriveCurrent(moduleId);
 
-        driveMotor.update(0.02);
-        steerMotor.update(0.02);
+            chassis.setModule(moduleId, steerMotor.getAngularPositionRad(), driveVolts, driveLimit);
+        }
+
+        timestamp = now;
+
+        // Supply current is stator current scaled by the duty cycle
+        double supplyCurrent = 0;
+        if (busVoltage > 0) supplyCurrent = Math.abs(driveCurrent * driveVolts / busVoltage) + Math.abs(steerMotor.getCurrentDrawAmps() * steerVolts / busVoltage);
+
+        if (robotName == null) SimBattery.reportCurrent("Module" + moduleId, supplyCurrent);
+
+        double trueDistance = getTrueDistance();
+        double trueAngle = steerMotor.getAngularPositionRad();
+
+        drivePositionSensor.update(trueDistance, now);
+        driveVelocitySensor.update(getTrueDriveVelocity(), now);
+        driveCurrentSensor.update(driveCurrent, now);
+        steerPositionSensor.update(trueAngle, now);
+        steerVelocitySensor.update(steerMotor.getAngularVelocityRadPerSec(), now);
+        steerCurrentSensor.update(steerMotor.getCurrentDrawAmps(), now);
+        absEncoderSensor.update(trueAngle, now);
+
+        if (chassis != null) chassis.log(simKey + "/Chassis");
 
         inputs.modulePosition = getPosition();
         inputs.moduleState = getState();
@@ -109,7 +262,30 @@ public class ModuleIOSim implements ModuleIO {
         inputs.driveTemperature = getDriveTemperature();
         inputs.steerTemperature = getSteerTemperature();
 
-        Logger.processInputs(String.format("/RealOutputs/Subsystems/Drivetrain/Module%d_Sim", moduleId), inputs);
+        inputs.timestamp = getTimestamp();
+
+        Logger.processInputs(inputsKey, inputs);
+
+        steerSettle.update(setpoint.angle.getRadians(), inputs.steerAngle.getRadians(), inputs.timestamp);
+        steerSettle.log(String.format("%s/Module%d_Sim", Drivetrain.getLogKey(robotName), moduleId));
+
+        // The true state, for comparing against what robot code saw
+        Logger.recordOutput(String.format("%s/Module%d/TruePosition", simKey, moduleId), new SwerveModulePosition(trueDistance, new Rotation2d(trueAngle)));
+        Logger.recordOutput(String.format("%s/Module%d/DroppedFrames", simKey, moduleId), drivePositionSensor.getDropped());
+        if (robotName == null) SimBattery.log();
+    }
+
+    // The motor sims already include the gearing, so their output is the wheel itself
+    private double getTrueDistance() {
+        if (chassis != null) return chassis.getWheelPosition(moduleId);
+
+        return driveMotor.getAngularPositionRad() * DriveConstants.wheelRadius.in(Meters);
+    }
+
+    private double getTrueDriveVelocity() {
+        if (chassis != null) return chassis.getWheelSpeed(moduleId);
+
+        return driveMotor.getAngularVelocityRadPerSec() * DriveConstants.wheelRadius.in(Meters);
     }
 
     @Override
@@ -118,12 +294,58 @@ public class ModuleIOSim implements ModuleIO {
 
         driveController.setSetpoint(state.speedMetersPerSecond);
         steerController.setSetpoint(state.angle.getRadians());
+
+        // The steer feedforward follows how fast the setpoint is turning, unwrapped so wrapping past a half turn isn't a spike
+        double angle = state.angle.getRadians();
+        unwrappedSteerSetpoint += Double.isNaN(lastSteerSetpoint) ? angle : MathUtil.angleModulus(angle - lastSteerSetpoint);
+        lastSteerSetpoint = angle;
+
+        steerSetpointRate.calculate(unwrappedSteerSetpoint, Timer.getFPGATimestamp());
+    }
+
+    /**
+     * Limits a voltage so that the motor doesn't draw more than its current limit, like a stator limit would.
+     * 
+     * @param motor The motor being driven.
+     * @param volts The requested voltage.
+     * @param speed The speed of the motor's rotor in radians per second.
+     * @param currentLimit The current limit in amps.
+     */
+    private static double limitVoltage(DCMotor motor, double volts, double speed, double currentLimit) {
+        double current = motor.getCurrent(speed, volts);
+        if (Math.abs(current) <= currentLimit) return volts;
+
+        return motor.getVoltage(motor.getTorque(Math.copySign(currentLimit, current)), speed);
+    }
+
+    /**
+     * Gets the stator limit that also keeps a motor under its supply limit.
+     * Supply current is stator current times the duty cycle, which is floored like the SparkMax's conversion.
+     */
+    private static double getStatorLimit(double statorLimit, double supplyLimit, double volts, double busVoltage) {
+        double dutyCycle = busVoltage > 0 ? Math.abs(volts) / busVoltage : 1;
+
+        return Math.min(statorLimit, supplyLimit / Math.max(dutyCycle, DriveConstants.minSupplyDutyCycle));
+    }
+
+    @Override
+    public void setCurrentLimits(Current driveLimit, Current steerLimit) {
+        driveCurrentLimit = driveLimit.in(Amps);
+        steerCurrentLimit = steerLimit.in(Amps);
+    }
+
+    @Override
+    public void setSupplyCurrentLimits(Current driveLimit, Current steerLimit) {
+        driveSupplyLimit = driveLimit.in(Amps);
+        steerSupplyLimit = steerLimit.in(Amps);
     }
 
     @Override
     public void resetPosition(SwerveModulePosition position) {
         driveMotor.setAngle(position.distanceMeters / DriveConstants.wheelRadius.in(Meters));
+        if (chassis != null) chassis.setWheelPosition(moduleId, position.distanceMeters);
         steerMotor.setAngle(position.angle.getRadians());
+        steerProfileState = null;
     }
 
     @Override
@@ -136,19 +358,24 @@ public class ModuleIOSim implements ModuleIO {
         return new SwerveModulePosition(getDistance(), getAbsoluteAngle());
     }
 
+    @Override
+    public double getTimestamp() {
+        return drivePositionSensor.getTimestamp();
+    }
+
     @Override
     public Rotation2d getAbsoluteAngle() {
-        return new Rotation2d(steerMotor.getAngularPosition());
+        return new Rotation2d(absEncoderSensor.get());
     }
 
     @Override
     public Rotation2d getAngle() {
-        return new Rotation2d(steerMotor.getAngularPositionRad());
+        return new Rotation2d(steerPositionSensor.get());
     }
 
     @Override
     public AngularVelocity getSteerVelocity() {
-        return RadiansPerSecond.of(steerMotor.getAngularVelocityRadPerSec());
+        return RadiansPerSecond.of(steerVelocitySensor.get());
     }
 
     @Override
@@ -158,22 +385,24 @@ public class ModuleIOSim implements ModuleIO {
 
     @Override
     public Distance getDistance() {
-        return Meters.of(driveMotor.getAngularPositionRad() * DriveConstants.driveGearRatio * DriveConstants.wheelRadius.in(Meters));
+        return Meters.of(drivePositionSensor.get());
     }
 
     @Override
     public LinearVelocity getDriveVelocity() {
-        return MetersPerSecond.of(driveMotor.getAngularVelocityRadPerSec() * DriveConstants.driveGearRatio * DriveConstants.wheelRadius.in(Meters));
+        return MetersPerSecond.of(driveVelocitySensor.get());
     }
 
     @Override
     public LinearAcceleration getDriveAcceleration() {
-        return MetersPerSecondPerSecond.of(driveMotor.getAngularAccelerationRadPerSecSq() * DriveConstants.driveGearRatio * DriveConstants.wheelRadius.in(Meters));
+        if (chassis != null) return MetersPerSecondPerSecond.of(chassis.getWheelAcceleration(moduleId));
+
+        return MetersPerSecondPerSecond.of(driveMotor.getAngularAccelerationRadPerSecSq() * DriveConstants.wheelRadius.in(Meters));
     }
 
     @Override
     public Voltage getDriveVoltage() {
-        return Volts.of(driveMotor.getInputVoltage());
+        return Volts.of(appliedDriveVolts);
     }
 
     @Override
@@ -183,21 +412,21 @@ public class ModuleIOSim implements ModuleIO {
 
     @Override
     public Current getDriveCurrent() {
-        return Amps.of(driveMotor.getCurrentDrawAmps());
+        return Amps.of(driveCurrentSensor.get());
     }
 
     @Override
     public Current getSteerCurrent() {
-        return Amps.of(steerMotor.getCurrentDrawAmps());
+        return Amps.of(steerCurrentSensor.get());
     }
 
     @Override
     public Temperature getDriveTemperature() {
-        return Celsius.zero();
+        return DriveConstants.ambientTemperature;
     }
 
     @Override
     public Temperature getSteerTemperature() {
-        return Celsius.zero();
+        return DriveConstants.ambientTemperature;
     }
 }
\ No newline at end of file
@@ -2,7 +2,10 @@ package frc.robot.subsystems.drivetrain;
 
 import static edu.wpi.first.units.Units.*;
 
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.Utils;
 import com.ctre.phoenix6.hardware.CANcoder;
+import com.revrobotics.REVLibError;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.spark.ClosedLoopSlot;
 import com.revrobotics.spark.SparkClosedLoopController;
@@ -13,10 +16,13 @@ import com.revrobotics.spark.SparkBase.ResetMode;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import com.revrobotics.spark.config.SparkBaseConfig.IdleMode;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularAcceleration;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
@@ -25,11 +31,16 @@ import edu.wpi.first.units.measure.LinearAcceleration;
 import edu.wpi.first.units.measure.LinearVelocity;
 import edu.wpi.first.units.measure.Temperature;
 import edu.wpi.first.units.measure.Voltage;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.subsystems.drivetrain.filter.FiniteDifference;
+import frc.robot.subsystems.drivetrain.filter.SavitzkyGolayFilter;
 import frc.robot.subsystems.util.AdjustableValues;
 
 import org.littletonrobotics.junction.Logger;
 
-public class ModuleIOSparkMax implements ModuleIO {
+public class ModuleIOSparkMax implements ModuleIO, SparkOdometryThread.Source {
+    private static final int unusedFramePeriodMs = 500;
+
     private int moduleId;
 
     private SparkMax driveMotor;
@@ -41,11 +52,32 @@ public class ModuleIOSparkMax implements ModuleIO {
     private SparkClosedLoopController steerController;
 
     private CANcoder absEncoder;
+    private StatusSignal<Angle> absPosition;
     private double encoderOffset;
+    private SteerEstimator steerEstimator;
 
     private SimpleMotorFeedforward driveFFController;
     private SimpleMotorFeedforward steerFFController;
 
+    private double timestamp;
+
+    private SavitzkyGolayFilter driveAccelerationFilter = new SavitzkyGolayFilter(DriveConstants.accelerationFilterWindow, true);
+    private SavitzkyGolayFilter steerAccelerationFilter = new SavitzkyGolayFilter(DriveConstants.accelerationFilterWindow, true);
+    private FiniteDifference steerSetpointRate = new FiniteDifference(1);
+    private double lastSteerSetpoint = Double.NaN;
+    private double unwrappedSteerSetpoint = 0;
+
+    private SteerProfile steerProfile = new SteerProfile();
+    private volatile double steerTarget = Double.NaN; // Written by the control loop
+
+    // The SparkMax only has a stator limit, so the supply limits are turned into one from the duty cycle each cycle
+    private double driveStatorLimit = DriveConstants.driveCurrentLimit.in(Amps);
+    private double steerStatorLimit = DriveConstants.steerCurrentLimit.in(Amps);
+    private double driveSupplyLimit = DriveConstants.driveCurrentLimit.in(Amps);
+    private double steerSupplyLimit = DriveConstants.steerCurrentLimit.in(Amps);
+    private double appliedDriveLimit = DriveConstants.driveCurrentLimit.in(Amps);
+    private double appliedSteerLimit = DriveConstants.steerCurrentLimit.in(Amps);
+
     private ModuleIOInputsAutoLogged inputs;
 
     /**
@@ -58,6 +90,7 @@ public class ModuleIOSparkMax implements ModuleIO {
 
         absEncoder = new CANcoder((int) DriveConstants.moduleConfigs[moduleId][2]);
         encoderOffset = DriveConstants.moduleConfigs[moduleId][3];
+        steerEstimator = new SteerEstimator(DriveConstants.steerEstimatorGain, DriveConstants.steerReseedThreshold.in(Radians), DriveConstants.steerEstimatorMaxVelocity.in(RadiansPerSecond), false);
 
         driveMotor = new SparkMax((int) DriveConstants.moduleConfigs[moduleId][0], MotorType.kBrushless);
         steerMotor = new SparkMax((int) DriveConstants.moduleConfigs[moduleId][1], MotorType.kBrushless);
@@ -80,20 +113,69 @@ public class ModuleIOSparkMax implements ModuleIO {
         steerConfig.closedLoop.i(AdjustableValues.getNumber("Steer_kI_" + moduleId), ClosedLoopSlot.kSlot0);
         steerConfig.closedLoop.d(AdjustableValues.getNumber("Steer_kD_" + moduleId), ClosedLoopSlot.kSlot0);
         steerConfig.closedLoop.positionWrappingEnabled(true);
-        steerConfig.closedLoop.positionWrappingInputRange(-Math.PI, Math.PI);
+        steerConfig.closedLoop.positionWrappingInputRange(-0.5, 0.5); // Rotations, to match the conversion factor
+
+        // Slot 1 is MAXMotion, where kFF multiplies the profile's velocity instead of the position setpoint
+        steerConfig.closedLoop.p(AdjustableValues.getNumber("Steer_kP_" + moduleId), ClosedLoopSlot.kSlot1);
+        steerConfig.closedLoop.i(AdjustableValues.getNumber("Steer_kI_" + moduleId), ClosedLoopSlot.kSlot1);
+        steerConfig.closedLoop.d(AdjustableValues.getNumber("Steer_kD_" + moduleId), ClosedLoopSlot.kSlot1);
+        steerConfig.closedLoop.velocityFF(getSteerVelocityFF(), ClosedLoopSlot.kSlot1);
+        steerConfig.closedLoop.maxMotion.maxVelocity(Units.radiansPerSecondToRotationsPerMinute(SteerProfile.getMaxVelocity()), ClosedLoopSlot.kSlot1);
+        steerConfig.closedLoop.maxMotion.maxAcceleration(Units.radiansPerSecondToRotationsPerMinute(SteerProfile.getMaxAcceleration()), ClosedLoopSlot.kSlot1);
+        steerConfig.closedLoop.maxMotion.allowedClosedLoopError(DriveConstants.steerSettleTolerance.in(Rotations), ClosedLoopSlot.kSlot1);
         steerConfig.encoder.positionConversionFactor(1.0 / DriveConstants.steerGearRatio);
         steerConfig.encoder.velocityConversionFactor(1.0 / DriveConstants.steerGearRatio);
         steerConfig.inverted(false);
         steerConfig.idleMode(IdleMode.kCoast);
         steerConfig.smartCurrentLimit((int) DriveConstants.steerCurrentLimit.in(Amps));
 
-        driveMotor.configure(driveConfig, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
-        steerMotor.configure(steerConfig, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
+        // Status frames, unused frames are slowed down to free up the bus
+        // A frame goes out at the fastest rate of any signal in it, so signals that share a frame are given the same rate
+        int positionPeriodMs = (int) DriveConstants.sparkOdometryFrequency.asPeriod().in(Milliseconds);
+        int controlPeriodMs = (int) DriveConstants.controlSignalFrequency.asPeriod().in(Milliseconds);
+
+        for (SparkMaxConfig config : new SparkMaxConfig[] { driveConfig, steerConfig }) {
+            // Status 2
+            config.signals.primaryEncoderPositionPeriodMs(positionPeriodMs);
+            config.signals.primaryEncoderVelocityPeriodMs(positionPeriodMs);
+            // Status 0, which temperature shares with the output signals
+            config.signals.appliedOutputPeriodMs(controlPeriodMs);
+            config.signals.busVoltagePeriodMs(controlPeriodMs);
+            config.signals.outputCurrentPeriodMs(controlPeriodMs);
+            config.signals.motorTemperaturePeriodMs(controlPeriodMs);
+            // Status 1, 3, and 5
+            config.signals.faultsPeriodMs(unusedFramePeriodMs);
+            config.signals.analogVoltagePeriodMs(unusedFramePeriodMs);
+            config.signals.absoluteEncoderPositionPeriodMs(unusedFramePeriodMs);
+        }
+
+        for (String motor : new String[] { "Drive", "Steer" }) {
+            String name = String.format("Module%d/%s", moduleId, motor);
+            SignalBudget.registerSpark(name + "/Status0", Milliseconds.of(controlPeriodMs));
+            SignalBudget.registerSpark(name + "/Status1", Milliseconds.of(unusedFramePeriodMs));
+            SignalBudget.registerSpark(name + "/Status2", Milliseconds.of(positionPeriodMs));
+            SignalBudget.registerSpark(name + "/Status3", Milliseconds.of(unusedFramePeriodMs));
+            SignalBudget.registerSpark(name + "/Status5", Milliseconds.of(unusedFramePeriodMs));
+        }
+
+        absPosition = absEncoder.getAbsolutePosition();
+        SignalBudget.registerPhoenix("Module" + moduleId, DriveConstants.absEncoderSignalFrequency, absPosition);
+        SignalBudget.optimize(absEncoder);
+
+        String phaseName = String.format("Module%d_SparkMax", moduleId);
+
+        try (StartupProfiler.Phase phase = StartupProfiler.phase(phaseName + "/Config")) {
+            driveMotor.configure(driveConfig, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
+            steerMotor.configure(steerConfig, ResetMode.kResetSafeParameters, PersistMode.kPersistParameters);
+        }
 
         driveEncoder = driveMotor.getEncoder();
         steerEncoder = steerMotor.getEncoder();
 
-        steerEncoder.setPosition(getAbsoluteAngle().getRotations());
+        try (StartupProfiler.Phase phase = StartupProfiler.phase(phaseName + "/Seed")) {
+            absPosition.waitForUpdate(0.1);
+            steerEncoder.setPosition(getAbsoluteAngle().getRotations());
+        }
 
         driveController = driveMotor.getClosedLoopController();
         steerController = steerMotor.getClosedLoopController();
@@ -102,7 +184,7 @@ public class ModuleIOSparkMax implements ModuleIO {
     }
 
     @Override
-    public void updateInputs() {
+    public void updateGains() {
         if (AdjustableValues.hasChanged("Drive_kP_" + moduleId) || AdjustableValues.hasChanged("Drive_kI_" + moduleId) || AdjustableValues.hasChanged("Drive_kD_" + moduleId)) {
             SparkMaxConfig pidConfig = new SparkMaxConfig();
             pidConfig.closedLoop.p(AdjustableValues.getNumber("Drive_kP_" + moduleId));
@@ -117,6 +199,9 @@ public class ModuleIOSparkMax implements ModuleIO {
             pidConfig.closedLoop.p(AdjustableValues.getNumber("Steer_kP_" + moduleId));
             pidConfig.closedLoop.i(AdjustableValues.getNumber("Steer_kI_" + moduleId));
             pidConfig.closedLoop.d(AdjustableValues.getNumber("Steer_kD_" + moduleId));
+            pidConfig.closedLoop.p(AdjustableValues.getNumber("Steer_kP_" + moduleId), ClosedLoopSlot.kSlot1);
+            pidConfig.closedLoop.i(AdjustableValues.getNumber("Steer_kI_" + moduleId), ClosedLoopSlot.kSlot1);
+            pidConfig.closedLoop.d(AdjustableValues.getNumber("Steer_kD_" + moduleId), ClosedLoopSlot.kSlot1);
 
             steerMotor.configure(pidConfig, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
         }
@@ -131,6 +216,37 @@ public class ModuleIOSparkMax implements ModuleIO {
             steerFFController.setKs(AdjustableValues.getNumber("Steer_kS_" + moduleId));
             steerFFController.setKv(AdjustableValues.getNumber("Steer_kV_" + moduleId));
             steerFFController.setKa(AdjustableValues.getNumber("Steer_kA_" + moduleId));
+
+            SparkMaxConfig ffConfig = new SparkMaxConfig();
+            ffConfig.closedLoop.velocityFF(getSteerVelocityFF(), ClosedLoopSlot.kSlot1);
+
+            steerMotor.configure(ffConfig, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
+        }
+    }
+
+    @Override
+    public void updateInputs() {
+        absPosition.refresh();
+
+        // The SparkMax doesn't timestamp its frames, so they are assumed to be half a frame old on average
+        timestamp = Timer.getFPGATimestamp() - DriveConstants.sparkOdometryFrequency.asPeriod().in(Seconds) / 2;
+
+        // The SparkMax doesn't report acceleration, so it is fit from the velocity history
+        double steerVelocity = getSteerVelocity().in(RadiansPerSecond);
+        driveAccelerationFilter.calculate(getDriveVelocity().in(MetersPerSecond), timestamp);
+        steerAccelerationFilter.calculate(steerVelocity, timestamp);
+
+        // Pulling the motor encoder toward the CANcoder, and reseeding it once it has slipped too far
+        steerEstimator.update(getRelativeAngle(), timestamp, getAbsoluteAngle().getRadians(), Utils.currentTimeToFPGATime(absPosition.getTimestamp().getTime()), steerVelocity);
+
+        // The SparkMax keeps reporting the old position until its next frame, so the offset is kept until the reseed's jump shows up,
+        // and the reseed is tried again next cycle if it wasn't taken
+        if (steerEstimator.needsReseed()) {
+            double relative = getRelativeAngle();
+
+            if (steerEncoder.setPosition(Units.radiansToRotations(steerEstimator.getAngle(relative, timestamp))) == REVLibError.kOk) {
+                steerEstimator.reseeded(relative, Timer.getFPGATimestamp());
+            }
         }
 
         inputs.modulePosition = getPosition();
@@ -155,22 +271,117 @@ public class ModuleIOSparkMax implements ModuleIO {
         inputs.driveTemperature = getDriveTemperature();
         inputs.steerTemperature = getSteerTemperature();
 
+        inputs.timestamp = getTimestamp();
+
         Logger.processInputs(String.format("/RealOutputs/Subsystems/Drivetrain/Module%d_SparkMax", moduleId), inputs);
+
+        Logger.recordOutput(String.format("/Subsystems/Drivetrain/Module%d_SparkMax/SteerDrift", moduleId), steerEstimator.getDrift());
+        Logger.recordOutput(String.format("/Subsystems/Drivetrain/Module%d_SparkMax/SteerReseeds", moduleId), steerEstimator.getReseeds());
+
+        double target = steerTarget;
+        if (!Double.isNaN(target)) steerProfile.update(target, inputs.steerAngle.getRadians(), inputs.timestamp);
+        steerProfile.log(String.format("/Subsystems/Drivetrain/Module%d_SparkMax", moduleId));
+
+        applyCurrentLimits();
+    }
+
+    /**
+     * Sends the smart current limits if they have moved by more than the hysteresis.
+     *
+     * Supply current is stator current times the duty cycle, so a supply limit is the same as a stator limit of the supply limit over the duty cycle.
+     * The duty cycle is floored so the limit doesn't jump to the cap when the motor is nearly idle.
+     * The smart current limit is the SparkMax's only limit, so the result never goes above the one it was configured with.
+     */
+    private void applyCurrentLimits() {
+        double minDutyCycle = DriveConstants.minSupplyDutyCycle;
+
+        double driveLimit = Math.min(driveStatorLimit, driveSupplyLimit / Math.max(Math.abs(driveMotor.getAppliedOutput()), minDutyCycle));
+        double steerLimit = Math.min(steerStatorLimit, steerSupplyLimit / Math.max(Math.abs(steerMotor.getAppliedOutput()), minDutyCycle));
+
+        driveLimit = Math.min(driveLimit, DriveConstants.driveCurrentLimit.in(Amps));
+        steerLimit = Math.min(steerLimit, DriveConstants.steerCurrentLimit.in(Amps));
+
+        double hysteresis = DriveConstants.currentLimitHysteresis.in(Amps);
+
+        if (Math.abs(driveLimit - appliedDriveLimit) > hysteresis) {
+            SparkMaxConfig driveLimitConfig = new SparkMaxConfig();
+            driveLimitConfig.smartCurrentLimit((int) driveLimit);
+            driveMotor.configureAsync(driveLimitConfig, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
+
+            appliedDriveLimit = driveLimit;
+        }
+
+        if (Math.abs(steerLimit - appliedSteerLimit) > hysteresis) {
+            SparkMaxConfig steerLimitConfig = new SparkMaxConfig();
+            steerLimitConfig.smartCurrentLimit((int) steerLimit);
+            steerMotor.configureAsync(steerLimitConfig, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
+
+            appliedSteerLimit = steerLimit;
+        }
+
+        Logger.recordOutput(String.format("/Subsystems/Drivetrain/Module%d_SparkMax/SmartCurrentLimits", moduleId), new double[] {appliedDriveLimit, appliedSteerLimit});
+    }
+
+    /** Converts the steer kV from volts per rotation per second into the duty cycle per RPM that the SparkMax's kFF takes. */
+    private double getSteerVelocityFF() {
+        return AdjustableValues.getNumber("Steer_kV_" + moduleId) / 60 / DriveConstants.nominalBatteryVoltage.in(Volts);
     }
 
     @Override
     public void setState(SwerveModuleState state) {
+        // The steer feedforward follows how fast the setpoint is turning, unwrapped so wrapping past a half turn isn't a spike
+        double angle = state.angle.getRadians();
+        unwrappedSteerSetpoint += Double.isNaN(lastSteerSetpoint) ? angle : MathUtil.angleModulus(angle - lastSteerSetpoint);
+        lastSteerSetpoint = angle;
+
+        double steerRate = steerSetpointRate.calculate(unwrappedSteerSetpoint, Timer.getFPGATimestamp());
+
         double driveFFVolts = driveFFController.calculate(state.speedMetersPerSecond);
-        double steerFFVolts = steerFFController.calculate((state.angle.getRotations() - getAngle().getRotations()) / 0.02);
+        double steerFFVolts = steerFFController.calculate(Units.radiansToRotations(steerRate));
 
         driveController.setReference(state.speedMetersPerSecond, ControlType.kVelocity, ClosedLoopSlot.kSlot0, driveFFVolts);
-        steerController.setReference(state.angle.getRotations(), ControlType.kPosition, ClosedLoopSlot.kSlot0, steerFFVolts);
+        // The controller runs on the motor encoder, so the setpoint is moved into its frame
+        double steerSetpoint = Units.radiansToRotations(steerEstimator.toRelative(state.angle.getRadians()));
+
+        if (DriveConstants.profiledSteer) {
+            // MAXMotion doesn't wrap, so the target is the turn of the setpoint nearest to where the module is
+            double position = steerEncoder.getPosition();
+            double error = MathUtil.inputModulus(steerSetpoint - position, -0.5, 0.5);
+
+            // kFF covers the profile's velocity, so only kS is added, and only until the module is close enough not to chatter
+            double staticVolts = Math.abs(error) > DriveConstants.steerSettleTolerance.in(Rotations) ? Math.copySign(steerFFController.getKs(), error) : 0;
+
+            steerController.setReference(position + error, ControlType.kMAXMotionPositionControl, ClosedLoopSlot.kSlot1, staticVolts);
+        } else {
+            steerController.setReference(steerSetpoint, ControlType.kPosition, ClosedLoopSlot.kSlot0, steerFFVolts);
+        }
+
+        steerTarget = angle;
+    }
+
+    @Override
+    public void setCurrentLimits(Current driveLimit, Current steerLimit) {
+        // Sent with the supply limits on the next update
+        driveStatorLimit = driveLimit.in(Amps);
+        steerStatorLimit = steerLimit.in(Amps);
+    }
+
+    @Override
+    public void setSupplyCurrentLimits(Current driveLimit, Current steerLimit) {
+        driveSupplyLimit = driveLimit.in(Amps);
+        steerSupplyLimit = steerLimit.in(Amps);
     }
 
     @Override
     public void resetPosition(SwerveModulePosition position) {
         driveEncoder.setPosition(position.distanceMeters);
-        steerEncoder.setPosition(position.angle.getRotations());
+        steerEncoder.setPosition(Units.radiansToRotations(steerEstimator.toRelative(position.angle.getRadians())));
+    }
+
+    @Override
+    public void readOdometry(double[] sample, int offset) {
+        sample[offset] = driveEncoder.getPosition();
+        sample[offset + 1] = steerEstimator.getAngle(getRelativeAngle(), timestamp);
     }
 
     @Override
@@ -183,14 +394,24 @@ public class ModuleIOSparkMax implements ModuleIO {
         return new SwerveModulePosition(getDistance(), getAngle());
     }
 
+    @Override
+    public double getTimestamp() {
+        return timestamp;
+    }
+
     @Override
     public Rotation2d getAbsoluteAngle() {
-        return new Rotation2d(absEncoder.getAbsolutePosition().getValue()).minus(Rotation2d.fromRotations(encoderOffset));
+        return new Rotation2d(absPosition.getValue()).minus(Rotation2d.fromRotations(encoderOffset));
     }
 
     @Override
     public Rotation2d getAngle() {
-        return Rotation2d.fromRotations(steerEncoder.getPosition());
+        return new Rotation2d(steerEstimator.getAngle(getRelativeAngle(), timestamp));
+    }
+
+    /** Gets the steer motor encoder's angle in radians, before it is fused with the CANcoder. */
+    private double getRelativeAngle() {
+        return Units.rotationsToRadians(steerEncoder.getPosition());
     }
 
     @Override
@@ -200,7 +421,7 @@ public class ModuleIOSparkMax implements ModuleIO {
 
     @Override
     public AngularAcceleration getSteerAcceleration() {
-        return getSteerVelocity().div(Seconds.of(0.02));
+        return RadiansPerSecondPerSecond.of(steerAccelerationFilter.get());
     }
 
     @Override
@@ -215,7 +436,7 @@ public class ModuleIOSparkMax implements ModuleIO {
 
     @Override
     public LinearAcceleration getDriveAcceleration() {
-        return getDriveVelocity().div(Seconds.of(0.02));
+        return MetersPerSecondPerSecond.of(driveAccelerationFilter.get());
     }
 
     @Override
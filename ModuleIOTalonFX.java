@@ -2,17 +2,25 @@ package frc.robot.subsystems.drivetrain;
 
 import static edu.wpi.first.units.Units.*;
 
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.Utils;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
 import com.ctre.phoenix6.configs.Slot0Configs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.controls.MotionMagicVoltage;
 import com.ctre.phoenix6.controls.PositionVoltage;
 import com.ctre.phoenix6.controls.VelocityVoltage;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularAcceleration;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
@@ -21,6 +29,7 @@ import edu.wpi.first.units.measure.LinearAcceleration;
 import edu.wpi.first.units.measure.LinearVelocity;
 import edu.wpi.first.units.measure.Temperature;
 import edu.wpi.first.units.measure.Voltage;
+import edu.wpi.first.wpilibj.Timer;
 import frc.robot.subsystems.util.AdjustableValues;
 
 import org.littletonrobotics.junction.Logger;
@@ -37,7 +46,38 @@ public class ModuleIOTalonFX implements ModuleIO {
     private PositionVoltage steerControl;
     private VelocityVoltage driveControl;
 
+    // Status Signals
+    private StatusSignal<Angle> drivePosition;
+    private StatusSignal<AngularVelocity> driveVelocity;
+    private StatusSignal<AngularAcceleration> driveAcceleration;
+    private StatusSignal<Voltage> driveVoltage;
+    private StatusSignal<Current> driveCurrent;
+    private StatusSignal<Temperature> driveTemperature;
+
+    private StatusSignal<Angle> steerPosition;
+    private StatusSignal<AngularVelocity> steerVelocity;
+    private StatusSignal<AngularAcceleration> steerAcceleration;
+    private StatusSignal<Voltage> steerVoltage;
+    private StatusSignal<Current> steerCurrent;
+    private StatusSignal<Temperature> steerTemperature;
+
+    private StatusSignal<Angle> absPosition;
+
+    // The control thread's copies, created on first use
+    private BaseStatusSignal[] syncSignals;
+    private StatusSignal<AngularVelocity> syncDriveVelocity;
+    private StatusSignal<Angle> syncSteerPosition;
+
+    private BaseStatusSignal[] allSignals;
+
     private double encoderOffset;
+    private SteerEstimator steerEstimator;
+
+    // The thermal stator limits and the battery's supply limits
+    private CurrentLimitsConfigs driveLimits;
+    private CurrentLimitsConfigs steerLimits;
+    private SteerProfile steerProfile = new SteerProfile();
+    private volatile double steerSetpoint = Double.NaN; // Written by the control loop
     private ModuleIOInputsAutoLogged inputs;
 
     /**
@@ -50,6 +90,7 @@ public class ModuleIOTalonFX implements ModuleIO {
 
         absEncoder = new CANcoder((int) DriveConstants.moduleConfigs[moduleId][2]);
         encoderOffset = DriveConstants.moduleConfigs[moduleId][3];
+        steerEstimator = new SteerEstimator(DriveConstants.steerEstimatorGain, DriveConstants.steerReseedThreshold.in(Radians), DriveConstants.steerEstimatorMaxVelocity.in(RadiansPerSecond), true);
 
         driveMotor = new TalonFX((int) DriveConstants.moduleConfigs[moduleId][0]);
         steerMotor = new TalonFX((int) DriveConstants.moduleConfigs[moduleId][1]);
@@ -58,6 +99,8 @@ public class ModuleIOTalonFX implements ModuleIO {
 
         driveConfig.CurrentLimits.SupplyCurrentLimit = DriveConstants.driveCurrentLimit.in(Amps);
         driveConfig.CurrentLimits.SupplyCurrentLimitEnable = true;
+        driveConfig.CurrentLimits.StatorCurrentLimit = DriveConstants.driveStatorCurrentLimit.in(Amps);
+        driveConfig.CurrentLimits.StatorCurrentLimitEnable = true;
         driveConfig.Feedback.SensorToMechanismRatio = DriveConstants.driveGearRatio;
         driveConfig.MotorOutput.Inverted = InvertedValue.Clockwise_Positive;
         driveConfig.MotorOutput.NeutralMode = NeutralModeValue.Brake;
@@ -72,6 +115,8 @@ public class ModuleIOTalonFX implements ModuleIO {
 
         steerConfig.CurrentLimits.SupplyCurrentLimit = DriveConstants.steerCurrentLimit.in(Amps);
         steerConfig.CurrentLimits.SupplyCurrentLimitEnable = true;
+        steerConfig.CurrentLimits.StatorCurrentLimit = DriveConstants.steerStatorCurrentLimit.in(Amps);
+        steerConfig.CurrentLimits.StatorCurrentLimitEnable = true;
         steerConfig.Feedback.SensorToMechanismRatio = DriveConstants.steerGearRatio;
         steerConfig.MotorOutput.Inverted = InvertedValue.Clockwise_Positive;
         steerConfig.MotorOutput.NeutralMode = NeutralModeValue.Coast;
@@ -82,17 +127,62 @@ public class ModuleIOTalonFX implements ModuleIO {
         steerConfig.Slot0.kV = AdjustableValues.getNumber("Steer_kV_" + moduleId);
         steerConfig.Slot0.kA = AdjustableValues.getNumber("Steer_kA_" + moduleId);
         steerConfig.ClosedLoopGeneral.ContinuousWrap = true;
-
-        driveMotor.getConfigurator().apply(driveConfig);
-        steerMotor.getConfigurator().apply(steerConfig);
-
-        steerMotor.setPosition(getAbsoluteAngle().getRotations());
+        steerConfig.MotionMagic.MotionMagicCruiseVelocity = Units.radiansToRotations(SteerProfile.getMaxVelocity());
+        steerConfig.MotionMagic.MotionMagicAcceleration = Units.radiansToRotations(SteerProfile.getMaxAcceleration());
+
+        // Kept so later changes to one limit send the others unchanged
+        driveLimits = driveConfig.CurrentLimits;
+        steerLimits = steerConfig.CurrentLimits;
+
+        String phaseName = String.format("Module%d_TalonFX", moduleId);
+
+        try (StartupProfiler.Phase phase = StartupProfiler.phase(phaseName + "/Config")) {
+            driveMotor.getConfigurator().apply(driveConfig);
+            steerMotor.getConfigurator().apply(steerConfig);
+        }
+
+        drivePosition = driveMotor.getPosition();
+        driveVelocity = driveMotor.getVelocity();
+        driveAcceleration = driveMotor.getAcceleration();
+        driveVoltage = driveMotor.getMotorVoltage();
+        driveCurrent = driveMotor.getStatorCurrent();
+        driveTemperature = driveMotor.getDeviceTemp();
+
+        steerPosition = steerMotor.getPosition();
+        steerVelocity = steerMotor.getVelocity();
+        steerAcceleration = steerMotor.getAcceleration();
+        steerVoltage = steerMotor.getMotorVoltage();
+        steerCurrent = steerMotor.getStatorCurrent();
+        steerTemperature = steerMotor.getDeviceTemp();
+
+        absPosition = absEncoder.getAbsolutePosition();
+
+        allSignals = new BaseStatusSignal[] {
+            drivePosition, driveVelocity, driveAcceleration, driveVoltage, driveCurrent, driveTemperature,
+            steerPosition, steerVelocity, steerAcceleration, steerVoltage, steerCurrent, steerTemperature,
+            absPosition
+        };
+
+        // Only asking for what this module reads, at the rate it needs it
+        String name = "Module" + moduleId;
+        SignalBudget.registerPhoenix(name, DriveConstants.odometrySignalFrequency, drivePosition, driveVelocity, driveAcceleration, steerPosition, steerVelocity, steerAcceleration);
+        SignalBudget.registerPhoenix(name, DriveConstants.controlSignalFrequency, driveVoltage, driveCurrent, steerVoltage, steerCurrent);
+        SignalBudget.registerPhoenix(name, DriveConstants.absEncoderSignalFrequency, absPosition);
+        SignalBudget.registerPhoenix(name, DriveConstants.thermalSignalFrequency, driveTemperature, steerTemperature);
+        try (StartupProfiler.Phase phase = StartupProfiler.phase(phaseName + "/Signals")) {
+            SignalBudget.optimize(driveMotor, steerMotor, absEncoder);
+        }
+
+        try (StartupProfiler.Phase phase = StartupProfiler.phase(phaseName + "/Seed")) {
+            BaseStatusSignal.waitForAll(0.1, absPosition);
+            steerMotor.setPosition(getAbsoluteAngle().getRotations());
+        }
 
         inputs = new ModuleIOInputsAutoLogged();
     }
 
     @Override
-    public void updateInputs() {
+    public void updateGains() {
         // Updating PID values
 
         // What does refresh do vs apply?
@@ -114,6 +204,28 @@ public class ModuleIOTalonFX implements ModuleIO {
         if (AdjustableValues.hasChanged("Steer_kV_" + moduleId)) steerPIDConfig.kV = AdjustableValues.getNumber("Steer_kV_" + moduleId);
         if (AdjustableValues.hasChanged("Steer_kA_" + moduleId)) steerPIDConfig.kA = AdjustableValues.getNumber("Steer_kA_" + moduleId);
         if (!steerPIDConfig.equals(new Slot0Configs())) steerMotor.getConfigurator().refresh(steerPIDConfig);
+    }
+
+    @Override
+    public void updateInputs() {
+        BaseStatusSignal.refreshAll(allSignals);
+
+        // Pulling the motor encoder toward the CANcoder, and reseeding it once it has slipped too far
+        steerEstimator.update(
+            steerPosition.getValue().in(Radians),
+            Utils.currentTimeToFPGATime(steerPosition.getTimestamp().getTime()),
+            getAbsoluteAngle().getRadians(),
+            Utils.currentTimeToFPGATime(absPosition.getTimestamp().getTime()),
+            steerVelocity.getValue().in(RadiansPerSecond));
+
+        // The offset is kept until a frame from after the reseed arrives, and the reseed is tried again next cycle if it wasn't taken
+        if (steerEstimator.needsReseed()) {
+            double relative = steerPosition.getValue().in(Radians);
+
+            if (steerMotor.setPosition(getAngle().getMeasure(), DriveConstants.steerReseedTimeout.in(Seconds)).isOK()) {
+                steerEstimator.reseeded(relative, Timer.getFPGATimestamp());
+            }
+        }
 
         inputs.modulePosition = getPosition();
         inputs.moduleState = getState();
@@ -137,18 +249,80 @@ public class ModuleIOTalonFX implements ModuleIO {
         inputs.driveTemperature = getDriveTemperature();
         inputs.steerTemperature = getSteerTemperature();
 
+        inputs.timestamp = getTimestamp();
+
         Logger.processInputs(String.format("/RealOutputs/Subsystems/Drivetrain/Module%d_TalonFX", moduleId), inputs);
+
+        Logger.recordOutput(String.format("/Subsystems/Drivetrain/Module%d_TalonFX/SteerDrift", moduleId), steerEstimator.getDrift());
+        Logger.recordOutput(String.format("/Subsystems/Drivetrain/Module%d_TalonFX/SteerReseeds", moduleId), steerEstimator.getReseeds());
+
+        double setpoint = steerSetpoint;
+        if (!Double.isNaN(setpoint)) steerProfile.update(setpoint, inputs.steerAngle.getRadians(), inputs.timestamp);
+        steerProfile.log(String.format("/Subsystems/Drivetrain/Module%d_TalonFX", moduleId));
+    }
+
+    @Override
+    public BaseStatusSignal[] getSyncSignals() {
+        // Copies, since the originals are refreshed by the main loop
+        if (syncSignals == null) {
+            syncDriveVelocity = driveVelocity.clone();
+            syncSteerPosition = steerPosition.clone();
+            syncSignals = new BaseStatusSignal[] { drivePosition.clone(), syncDriveVelocity, syncSteerPosition, steerVelocity.clone() };
+        }
+
+        return syncSignals;
+    }
+
+    @Override
+    public SwerveModuleState getSyncState() {
+        if (syncSignals == null) return getState();
+
+        double speed = syncDriveVelocity.getValue().in(RadiansPerSecond) * DriveConstants.wheelRadius.in(Meters);
+
+        return new SwerveModuleState(speed, new Rotation2d(steerEstimator.getAngle(syncSteerPosition.getValue().in(Radians), Utils.currentTimeToFPGATime(syncSteerPosition.getTimestamp().getTime()))));
     }
 
     @Override
     public void setState(SwerveModuleState state) {
         driveMotor.setControl(new VelocityVoltage(RadiansPerSecond.of(state.speedMetersPerSecond / DriveConstants.wheelRadius.in(Meters))));
-        steerMotor.setControl(new PositionVoltage(state.angle.getMeasure()));
+        // The controller runs on the motor encoder, so the setpoint is moved into its frame
+        Angle steerTarget = Radians.of(steerEstimator.toRelative(state.angle.getRadians()));
+        if (DriveConstants.profiledSteer) {
+            // Motion Magic feeds the profile's velocity and acceleration through kS, kV, and kA, and takes the short way with ContinuousWrap
+            steerMotor.setControl(new MotionMagicVoltage(steerTarget));
+        } else {
+            steerMotor.setControl(new PositionVoltage(steerTarget));
+        }
+
+        steerSetpoint = state.angle.getRadians();
+    }
+
+    @Override
+    public void setCurrentLimits(Current driveLimit, Current steerLimit) {
+        driveLimits.StatorCurrentLimit = driveLimit.in(Amps);
+        steerLimits.StatorCurrentLimit = steerLimit.in(Amps);
+
+        applyCurrentLimits();
+    }
+
+    @Override
+    public void setSupplyCurrentLimits(Current driveLimit, Current steerLimit) {
+        driveLimits.SupplyCurrentLimit = driveLimit.in(Amps);
+        steerLimits.SupplyCurrentLimit = steerLimit.in(Amps);
+
+        applyCurrentLimits();
+    }
+
+    /** Sends the current limits, which go as one group so the supply and stator limits are always sent together. */
+    private void applyCurrentLimits() {
+        // A timeout of 0 sends the config without waiting for a response
+        driveMotor.getConfigurator().apply(driveLimits, 0);
+        steerMotor.getConfigurator().apply(steerLimits, 0);
     }
 
     @Override
     public void resetPosition(SwerveModulePosition position) {
-        steerMotor.setPosition(position.angle.getMeasure());
+        steerMotor.setPosition(Radians.of(steerEstimator.toRelative(position.angle.getRadians())));
         driveMotor.setPosition(Radians.of(position.distanceMeters / DriveConstants.wheelRadius.in(Meters)));
     }
 
@@ -162,68 +336,96 @@ public class ModuleIOTalonFX implements ModuleIO {
         return new SwerveModulePosition(getDistance(), getAngle());
     }
 
+    /**
+     * Gets the module position extrapolated to a sample time.
+     * 
+     * The drive and steer positions are each carried forward from their own hardware timestamp.
+     */
+    @Override
+    public SwerveModulePosition getPosition(double timestamp) {
+        double driveAge = getAge(drivePosition, timestamp);
+        double steerAge = getAge(steerPosition, timestamp);
+
+        double distance = getDistance().in(Meters) + getDriveVelocity().in(MetersPerSecond) * driveAge + 0.5 * getDriveAcceleration().in(MetersPerSecondPerSecond) * driveAge * driveAge;
+        double angle = getAngle().getRadians() + getSteerVelocity().in(RadiansPerSecond) * steerAge + 0.5 * getSteerAcceleration().in(RadiansPerSecondPerSecond) * steerAge * steerAge;
+
+        return new SwerveModulePosition(distance, new Rotation2d(angle));
+    }
+
+    /** Gets how old a signal is at a sample time, clamped to the max compensation window. */
+    private static double getAge(BaseStatusSignal signal, double timestamp) {
+        double age = timestamp - Utils.currentTimeToFPGATime(signal.getTimestamp().getTime());
+
+        return MathUtil.clamp(age, 0, DriveConstants.maxLatencyCompensation.in(Seconds));
+    }
+
+    @Override
+    public double getTimestamp() {
+        return Utils.currentTimeToFPGATime(drivePosition.getTimestamp().getTime());
+    }
+
     @Override
     public Rotation2d getAbsoluteAngle() {
-        return new Rotation2d(absEncoder.getAbsolutePosition().getValue()).minus(Rotation2d.fromRotations(encoderOffset));
+        return new Rotation2d(absPosition.getValue()).minus(Rotation2d.fromRotations(encoderOffset));
     }
 
     @Override
     public Distance getDistance() {
-        return Meters.of(driveMotor.getPosition().getValue().in(Radians) * DriveConstants.wheelRadius.in(Meters));
+        return Meters.of(drivePosition.getValue().in(Radians) * DriveConstants.wheelRadius.in(Meters));
     }
 
     @Override
     public LinearVelocity getDriveVelocity() {
-        return MetersPerSecond.of(driveMotor.getVelocity().getValue().in(RadiansPerSecond) * DriveConstants.wheelRadius.in(Meters));
+        return MetersPerSecond.of(driveVelocity.getValue().in(RadiansPerSecond) * DriveConstants.wheelRadius.in(Meters));
     }
 
     @Override
     public LinearAcceleration getDriveAcceleration() {
-        return MetersPerSecondPerSecond.of(driveMotor.getAcceleration().getValue().in(RadiansPerSecondPerSecond) * DriveConstants.wheelRadius.in(Meters));
+        return MetersPerSecondPerSecond.of(driveAcceleration.getValue().in(RadiansPerSecondPerSecond) * DriveConstants.wheelRadius.in(Meters));
     }
 
     @Override
     public Rotation2d getAngle() {
-        return new Rotation2d(steerMotor.getPosition().getValue());
+        return new Rotation2d(steerEstimator.getAngle(steerPosition.getValue().in(Radians), Utils.currentTimeToFPGATime(steerPosition.getTimestamp().getTime())));
     }
 
     @Override
     public AngularVelocity getSteerVelocity() {
-        return steerMotor.getVelocity().getValue();
+        return steerVelocity.getValue();
     }
 
     @Override
     public AngularAcceleration getSteerAcceleration() {
-        return steerMotor.getAcceleration().getValue();
+        return steerAcceleration.getValue();
     }
 
     @Override
     public Voltage getDriveVoltage() {
-        return driveMotor.getMotorVoltage().getValue();
+        return driveVoltage.getValue();
     }
 
     @Override
     public Voltage getSteerVoltage() {
-        return steerMotor.getMotorVoltage().getValue();
+        return steerVoltage.getValue();
     }
 
     @Override
     public Current getDriveCurrent() {
-        return driveMotor.getStatorCurrent().getValue();
+        return driveCurrent.getValue();
     }
 
     @Override
     public Current getSteerCurrent() {
-        return steerMotor.getStatorCurrent().getValue();
+        return steerCurrent.getValue();
     }
 
     @Override
     public Temperature getDriveTemperature() {
-        return driveMotor.getDeviceTemp().getValue();
+        return driveTemperature.getValue();
     }
 
     @Override
     public Temperature getSteerTemperature() {
-        return steerMotor.getDeviceTemp().getValue();
+        return steerTemperature.getValue();
     }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.RobotController;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Splits the current the battery can supply between the eight module motors.
+ *
+ * The battery is modeled as an open-circuit voltage behind a resistance (V = Voc - I * R).
+ * Both are fit online from the bus voltage and the drivetrain's supply current with recursive least squares.
+ * The allowed drivetrain current is whatever would pull the bus down to {@link DriveConstants#minBatteryVoltage} if every other load stayed the same.
+ * Steer motors are served first, since a module that can't point can't use any drive current, and the drive motors share what's left.
+ * Each steer motor reserves what it is drawing with {@link DriveConstants#steerReserveMargin} on top, not its whole limit,
+ * so the drive motors aren't starved by steer motors that are sitting still.
+ * Everything here is supply current, so the results are supply limits.
+ */
+public class PowerAllocator {
+    // Recursive least squares state for [Voc, R]
+    private double openCircuitVoltage = DriveConstants.nominalBatteryVoltage.in(Volts);
+    private double resistance = DriveConstants.batteryResistance;
+    private double p00 = 1, p01 = 0, p11 = 1e-4;
+
+    private double busVoltage;
+    private double drivetrainCurrent;
+    private double availableCurrent;
+
+    private double[] driveLimits;
+    private double[] steerLimits;
+    private double[] steerReserves;
+
+    /**
+     * Creates a new PowerAllocator.
+     *
+     * @param moduleCount The number of modules on the robot.
+     */
+    public PowerAllocator(int moduleCount) {
+        driveLimits = new double[moduleCount];
+        steerLimits = new double[moduleCount];
+        steerReserves = new double[moduleCount];
+    }
+
+    /**
+     * Updates the battery model and splits the available current between the modules.
+     *
+     * @param modules The modules to read from.
+     */
+    public void update(ModuleIO[] modules) {
+        busVoltage = RobotController.getBatteryVoltage();
+
+        double driveCap = DriveConstants.driveCurrentLimit.in(Amps);
+        double steerCap = DriveConstants.steerCurrentLimit.in(Amps);
+        double minSteer = DriveConstants.minSteerCurrentLimit.in(Amps);
+
+        // Supply current is stator current scaled by how much of the bus voltage the motor is applying
+        drivetrainCurrent = 0;
+        double steerReserve = 0;
+
+        for (int i = 0; i < modules.length; i++) {
+            double steerCurrent = getSupplyCurrent(modules[i].getSteerCurrent().in(Amps), modules[i].getSteerVoltage().in(Volts));
+
+            drivetrainCurrent += getSupplyCurrent(modules[i].getDriveCurrent().in(Amps), modules[i].getDriveVoltage().in(Volts));
+            drivetrainCurrent += steerCurrent;
+
+            steerReserves[i] = MathUtil.clamp(steerCurrent * DriveConstants.steerReserveMargin, minSteer, steerCap);
+            steerReserve += steerReserves[i];
+        }
+
+        updateBatteryModel(busVoltage, drivetrainCurrent);
+
+        // The drivetrain current that would bring the bus down to the minimum voltage
+        availableCurrent = Math.max(drivetrainCurrent + (busVoltage - DriveConstants.minBatteryVoltage.in(Volts)) / resistance, 0);
+
+        // Steer motors first, keeping their full limits unless even their reserves don't fit
+        double steerScale = steerReserve <= availableCurrent ? 1 : availableCurrent / steerReserve;
+        double remaining = Math.max(availableCurrent - steerReserve * steerScale, 0);
+
+        for (int i = 0; i < steerLimits.length; i++) {
+            steerLimits[i] = steerScale < 1 ? Math.max(steerReserves[i] * steerScale, minSteer) : steerCap;
+        }
+
+        // Drive motors share the rest evenly
+        double driveShare = remaining / driveLimits.length;
+
+        for (int i = 0; i < driveLimits.length; i++) {
+            driveLimits[i] = MathUtil.clamp(driveShare, DriveConstants.minDriveCurrentLimit.in(Amps), driveCap);
+        }
+    }
+
+    /** Gets a motor's supply current from its stator current and the voltage it is applying. */
+    private double getSupplyCurrent(double statorCurrent, double appliedVoltage) {
+        return Math.abs(statorCurrent * appliedVoltage) / Math.max(busVoltage, 1);
+    }
+
+    /**
+     * Fits the battery's open-circuit voltage and resistance to a new voltage and current reading.
+     *
+     * V = Voc - R * I is linear in [Voc, R] with the regressor [1, -I].
+     */
+    private void updateBatteryModel(double voltage, double current) {
+        double lambda = DriveConstants.batteryModelForgetting;
+
+        double phi0 = 1;
+        double phi1 = -current;
+
+        // P * phi
+        double pPhi0 = p00 * phi0 + p01 * phi1;
+        double pPhi1 = p01 * phi0 + p11 * phi1;
+
+        double denominator = lambda + phi0 * pPhi0 + phi1 * pPhi1;
+        double gain0 = pPhi0 / denominator;
+        double gain1 = pPhi1 / denominator;
+
+        double error = voltage - (openCircuitVoltage * phi0 + resistance * phi1);
+
+        openCircuitVoltage += gain0 * error;
+        resistance += gain1 * error;
+
+        p00 = (p00 - gain0 * pPhi0) / lambda;
+        p01 = (p01 - gain0 * pPhi1) / lambda;
+        p11 = (p11 - gain1 * pPhi1) / lambda;
+
+        resistance = MathUtil.clamp(resistance, DriveConstants.minBatteryResistance, DriveConstants.maxBatteryResistance);
+    }
+
+    /** Gets the supply current limit of a drive motor in amps. */
+    public double getDriveLimit(int moduleId) {
+        return driveLimits[moduleId];
+    }
+
+    /** Gets the supply current limit of a steer motor in amps. */
+    public double getSteerLimit(int moduleId) {
+        return steerLimits[moduleId];
+    }
+
+    /**
+     * Predicts the bus voltage if the drivetrain drew a given current.
+     *
+     * @param current The drivetrain's supply current in amps.
+     */
+    public double predictVoltage(double current) {
+        return busVoltage - (current - drivetrainCurrent) * resistance;
+    }
+
+    /** Logs the battery model and the current budget. */
+    public void log() {
+        Logger.recordOutput("/Subsystems/Drivetrain/Power/BusVoltage", busVoltage);
+        Logger.recordOutput("/Subsystems/Drivetrain/Power/DrivetrainCurrent", drivetrainCurrent);
+        Logger.recordOutput("/Subsystems/Drivetrain/Power/AvailableCurrent", availableCurrent);
+        Logger.recordOutput("/Subsystems/Drivetrain/Power/SteerReserves", steerReserves);
+        Logger.recordOutput("/Subsystems/Drivetrain/Power/OpenCircuitVoltage", openCircuitVoltage);
+        Logger.recordOutput("/Subsystems/Drivetrain/Power/BatteryResistance", resistance);
+    }
+}
@@ -0,0 +1,115 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import edu.wpi.first.units.measure.Frequency;
+import edu.wpi.first.units.measure.Time;
+import edu.wpi.first.wpilibj.RobotController;
+import java.util.ArrayList;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Keeps track of every CAN frame the drivetrain asks for and how often it is sent.
+ *
+ * The budget is counted in frames, since that's what takes up the bus, and a frame goes out at the fastest rate of any signal in it.
+ * Phoenix signals are given their rate when registered, and every device that registers is bus-optimized so that unused frames are turned off.
+ * Phoenix doesn't say which signals share a frame, so each one is counted as its own frame, which makes the Phoenix load an upper bound.
+ * SparkMax frames have to be set through the motor's config, so they are only registered here for the load estimate.
+ */
+public class SignalBudget {
+    // An extended CAN 2.0 frame with 8 data bytes is ~128 bits on the wire once bit stuffing is counted.
+    private static final double bitsPerFrame = 128;
+    private static final double busBitsPerSecond = 1e6;
+
+    private static class Frame {
+        String name;
+        double framesPerSecond;
+
+        Frame(String name, double framesPerSecond) {
+            this.name = name;
+            this.framesPerSecond = framesPerSecond;
+        }
+    }
+
+    private static List<Frame> frames = new ArrayList<>();
+
+    private SignalBudget() {}
+
+    /**
+     * Sets the update frequency of some Phoenix signals and adds them to the budget.
+     *
+     * @param name The name of the group of signals, used for logging.
+     * @param frequency The rate to update the signals at.
+     * @param statusSignals The signals to update.
+     */
+    public static void registerPhoenix(String name, Frequency frequency, BaseStatusSignal... statusSignals) {
+        BaseStatusSignal.setUpdateFrequencyForAll(frequency, statusSignals);
+
+        for (BaseStatusSignal signal : statusSignals) {
+            frames.add(new Frame(name + "/" + signal.getName(), frequency.in(Hertz)));
+        }
+    }
+
+    /**
+     * Turns off every frame on the devices that wasn't given a rate through {@link #registerPhoenix}.
+     *
+     * This has to be called after all of a device's signals are registered.
+     */
+    public static void optimize(ParentDevice... devices) {
+        ParentDevice.optimizeBusUtilizationForAll(devices);
+    }
+
+    /**
+     * Adds a SparkMax status frame to the budget.
+     *
+     * @param name The name of the frame, used for logging.
+     * @param period The fastest period of any signal in the frame, which is the period the frame is sent at.
+     */
+    public static void registerSpark(String name, Time period) {
+        frames.add(new Frame(name, 1.0 / period.in(Seconds)));
+    }
+
+    /**
+     * Adds a motor's control frame to the budget.
+     *
+     * Both Phoenix and the SparkMax send a control frame every time a setpoint is set, so the frame goes out at the rate of the loop that sets it.
+     *
+     * @param name The name of the motor, used for logging.
+     * @param frequency The rate the motor's setpoint is set at.
+     */
+    public static void registerControl(String name, Frequency frequency) {
+        frames.add(new Frame(name + "/Control", frequency.in(Hertz)));
+    }
+
+    /** Gets the number of frames per second that all registered frames put on the bus. */
+    public static double getFramesPerSecond() {
+        double framesPerSecond = 0;
+
+        for (Frame frame : frames) {
+            framesPerSecond += frame.framesPerSecond;
+        }
+
+        return framesPerSecond;
+    }
+
+    /** Gets the estimated fraction of the bus [0, 1] taken by the registered frames. */
+    public static double getEstimatedLoad() {
+        return getFramesPerSecond() * bitsPerFrame / busBitsPerSecond;
+    }
+
+    /** Gets the measured fraction of the bus [0, 1] that is in use. */
+    public static double getMeasuredLoad() {
+        return RobotController.getCANStatus().percentBusUtilization;
+    }
+
+    /** Logs the estimated and measured bus load. */
+    public static void log() {
+        Logger.recordOutput("/Subsystems/Drivetrain/CAN/RegisteredFrames", frames.size());
+        Logger.recordOutput("/Subsystems/Drivetrain/CAN/FramesPerSecond", getFramesPerSecond());
+        Logger.recordOutput("/Subsystems/Drivetrain/CAN/EstimatedLoad", getEstimatedLoad());
+        Logger.recordOutput("/Subsystems/Drivetrain/CAN/MeasuredLoad", getMeasuredLoad());
+    }
+}
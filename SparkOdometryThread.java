@@ -0,0 +1,139 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Samples SparkMax module positions on a background thread at {@link DriveConstants#sparkOdometryFrequency}.
+ *
+ * Each sample reads only the drive and steer encoder positions, so it costs two JNI calls per module plus one for the timestamp.
+ * Samples go into a bounded queue that the main loop drains every cycle.
+ * A sample that matches the previous one exactly is a status frame that hasn't been updated yet, so it is counted as a duplicate and skipped.
+ * A robot sitting still reads as duplicates too, which costs nothing since there is no new motion to add.
+ * If the main loop falls behind and the queue fills, the oldest sample is dropped and counted.
+ */
+public class SparkOdometryThread {
+    /** A module that can be sampled from the odometry thread. */
+    public interface Source {
+        /**
+         * Reads the module's position. Called from the odometry thread.
+         *
+         * @param sample The array to write into.
+         * @param offset Where to write the drive distance in meters, followed by the steer angle in radians.
+         */
+        public void readOdometry(double[] sample, int offset);
+    }
+
+    /** A single set of module positions. */
+    public static class OdometrySample {
+        public final double timestamp;
+        public final SwerveModulePosition[] positions;
+
+        private OdometrySample(double timestamp, SwerveModulePosition[] positions) {
+            this.timestamp = timestamp;
+            this.positions = positions;
+        }
+    }
+
+    private Source[] sources;
+    private Notifier notifier;
+
+    private double[] current;
+    private double[] previous;
+    private boolean hasPrevious = false;
+    private boolean priorityRaised = false;
+
+    private ArrayBlockingQueue<OdometrySample> queue = new ArrayBlockingQueue<>(DriveConstants.odometryQueueSize);
+
+    private volatile int dropped = 0;
+    private volatile int duplicates = 0;
+    private volatile int samples = 0;
+
+    /**
+     * Creates a new odometry thread. It doesn't sample until {@link #start()} is called.
+     *
+     * @param sources The modules to sample, in the same order as {@link DriveConstants#translations}.
+     */
+    public SparkOdometryThread(Source... sources) {
+        this.sources = sources;
+        this.current = new double[2 * sources.length];
+        this.previous = new double[2 * sources.length];
+
+        notifier = new Notifier(this::sample);
+        notifier.setName("SparkOdometry");
+    }
+
+    /** Starts sampling. */
+    public void start() {
+        notifier.startPeriodic(DriveConstants.sparkOdometryFrequency.asPeriod().in(Seconds));
+    }
+
+    /** Reads every module once. Runs on the odometry thread. */
+    private void sample() {
+        if (!priorityRaised) {
+            Threads.setCurrentThreadPriority(true, DriveConstants.odometryThreadPriority);
+            priorityRaised = true;
+        }
+
+        // Frames arrive at random points in their period, so they are half a period old on average
+        double timestamp = Timer.getFPGATimestamp() - DriveConstants.sparkOdometryFrequency.asPeriod().in(Seconds) / 2;
+
+        for (int i = 0; i < sources.length; i++) {
+            sources[i].readOdometry(current, 2 * i);
+        }
+
+        if (hasPrevious && Arrays.equals(current, previous)) {
+            duplicates++;
+            return;
+        }
+
+        System.arraycopy(current, 0, previous, 0, current.length);
+        hasPrevious = true;
+
+        SwerveModulePosition[] positions = new SwerveModulePosition[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            positions[i] = new SwerveModulePosition(current[2 * i], new Rotation2d(current[2 * i + 1]));
+        }
+
+        OdometrySample sample = new OdometrySample(timestamp, positions);
+
+        while (!queue.offer(sample)) {
+            queue.poll();
+            dropped++;
+        }
+
+        samples++;
+    }
+
+    /**
+     * Moves every queued sample into a list, oldest first.
+     *
+     * @param into The list to add the samples to.
+     */
+    public void drain(List<OdometrySample> into) {
+        queue.drainTo(into);
+    }
+
+    /** Gets how many samples were dropped because the queue was full. */
+    public int getDropped() {
+        return dropped;
+    }
+
+    /** Gets how many samples were skipped because no new frame had arrived. */
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    /** Gets how many samples were queued. */
+    public int getSamples() {
+        return samples;
+    }
+}
@@ -0,0 +1,92 @@
+package frc.robot.subsystems.drivetrain;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Times each step of startup, from JVM start to the first loop.
+ *
+ * Wrap a step in a phase:
+ * <pre>
+ * try (var phase = StartupProfiler.phase("Module0_TalonFX/Config")) {
+ *     ...
+ * }
+ * </pre>
+ * Phases can be timed from any thread, but are only logged from the main loop by {@link #log()}.
+ */
+public class StartupProfiler {
+    private static Map<String, Double> phases = new LinkedHashMap<>();
+    private static Set<String> unlogged = new LinkedHashSet<>();
+    private static double timeToFirstLoop = -1;
+
+    private StartupProfiler() {}
+
+    /** A running phase that records its duration when closed. */
+    public static class Phase implements AutoCloseable {
+        private String name;
+        private long start = System.nanoTime();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            record(name, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param name The name of the phase, with slashes to group phases.
+     */
+    public static Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Records the duration of a phase. Phases with the same name are added together.
+     *
+     * @param name The name of the phase.
+     * @param seconds How long it took in seconds.
+     */
+    public static synchronized void record(String name, double seconds) {
+        phases.merge(name, seconds, Double::sum);
+        unlogged.add(name);
+    }
+
+    /**
+     * Logs every phase that has been recorded or added to since the last call.
+     *
+     * The first call also marks the first loop. Call this every loop so phases that finish in the background later are logged too.
+     */
+    public static synchronized void log() {
+        if (timeToFirstLoop < 0) {
+            timeToFirstLoop = ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0;
+            Logger.recordOutput("/Startup/TimeToFirstLoop", timeToFirstLoop);
+        }
+
+        if (unlogged.isEmpty()) return;
+
+        for (String name : unlogged) {
+            Logger.recordOutput("/Startup/" + name, phases.get(name));
+        }
+
+        unlogged.clear();
+    }
+
+    /** Gets the time from JVM start to the first loop in seconds, or -1 if it hasn't run yet. */
+    public static synchronized double getTimeToFirstLoop() {
+        return timeToFirstLoop;
+    }
+
+    /** Gets the duration of a phase in seconds, or NaN if it wasn't recorded. */
+    public static synchronized double getPhase(String name) {
+        return phases.getOrDefault(name, Double.NaN);
+    }
+}
@@ -0,0 +1,151 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Fuses a module's absolute encoder with its steer motor's relative encoder.
+ *
+ * The relative encoder is fast and fine-grained but only knows where it started, so belt slip or a motor controller reset leaves it wrong forever.
+ * The absolute encoder is always right on average but slow and noisy.
+ * This is a complementary filter on the offset between the two: every new absolute sample pulls the offset a little toward what it measured,
+ * and the angle is the relative encoder plus that offset.
+ * Absolute samples are carried forward to the relative encoder's timestamp by the steer velocity, and ignored while the module is turning fast.
+ *
+ * Reseeding the relative encoder doesn't change what it reports until its next frame, so the offset is only folded in once a frame from after the reseed is read.
+ * Until then, readings from before the reseed keep the old offset and readings from after it have the folded part taken off.
+ * The readings are read from the odometry and control threads too, so everything that touches the offset is synchronized.
+ */
+public class SteerEstimator {
+    private double gain;
+    private double reseedThreshold;
+    private double maxVelocity;
+    private boolean timestamped;
+
+    private double offset = 0;
+    private double lastAbsoluteTimestamp = -1;
+    private double lastVelocity = Double.POSITIVE_INFINITY;
+    private int reseeds = 0;
+
+    // The part of the offset the relative encoder was reseeded with, until a frame from after the reseed is read
+    private boolean reseedPending = false;
+    private double reseedShift = 0;
+    private double reseedRelative = 0;
+    private double reseedTimestamp = 0;
+
+    /**
+     * Creates a new steer estimator.
+     *
+     * @param gain How much of the error each absolute sample corrects, between 0 and 1.
+     * @param reseedThreshold How far the offset can drift before the relative encoder should be reseeded, in radians.
+     * @param maxVelocity The steer velocity above which absolute samples are ignored, in radians per second.
+     * @param timestamped Whether the relative encoder's frames are timestamped when they arrive.
+     *                    If not, a frame from after a reseed is recognized by the jump the reseed causes.
+     */
+    public SteerEstimator(double gain, double reseedThreshold, double maxVelocity, boolean timestamped) {
+        this.gain = MathUtil.clamp(gain, 0, 1);
+        this.reseedThreshold = reseedThreshold;
+        this.maxVelocity = maxVelocity;
+        this.timestamped = timestamped;
+    }
+
+    /**
+     * Updates the offset with the latest readings.
+     *
+     * Folds in a pending reseed once the relative angle is from after it.
+     * Otherwise does nothing if the absolute encoder hasn't sent a new sample since the last call.
+     *
+     * @param relative The relative encoder angle in radians.
+     * @param relativeTimestamp When the relative angle was measured in seconds.
+     * @param absolute The absolute encoder angle in radians.
+     * @param absoluteTimestamp When the absolute angle was measured in seconds.
+     * @param velocity The steer velocity in radians per second.
+     */
+    public synchronized void update(double relative, double relativeTimestamp, double absolute, double absoluteTimestamp, double velocity) {
+        lastVelocity = velocity;
+
+        if (isAfterReseed(relative, relativeTimestamp)) {
+            offset = MathUtil.angleModulus(offset - reseedShift);
+            reseedPending = false;
+            reseeds++;
+        }
+
+        if (absoluteTimestamp == lastAbsoluteTimestamp) return;
+        lastAbsoluteTimestamp = absoluteTimestamp;
+
+        if (Math.abs(velocity) > maxVelocity) return;
+
+        double age = MathUtil.clamp(relativeTimestamp - absoluteTimestamp, 0, DriveConstants.maxLatencyCompensation.in(Seconds));
+        double error = MathUtil.angleModulus(absolute + velocity * age - relative - offset);
+
+        offset = MathUtil.angleModulus(offset + gain * error);
+    }
+
+    /**
+     * Gets the fused angle.
+     *
+     * @param relative The relative encoder angle in radians.
+     * @param timestamp When the relative angle was measured in seconds. Ignored if the frames aren't timestamped.
+     * @return The estimated module angle in radians.
+     */
+    public synchronized double getAngle(double relative, double timestamp) {
+        return relative + offset - (isAfterReseed(relative, timestamp) ? reseedShift : 0);
+    }
+
+    /**
+     * Converts a module angle into the relative encoder's frame, for sending to the controller.
+     *
+     * The controller switches frames as soon as it takes a reseed, so this uses the new frame without waiting for its readings to catch up.
+     *
+     * @param angle The module angle in radians.
+     * @return The matching relative encoder angle in radians.
+     */
+    public synchronized double toRelative(double angle) {
+        return angle - offset + (reseedPending ? reseedShift : 0);
+    }
+
+    /**
+     * Gets whether the offset has drifted far enough that the relative encoder should be reseeded.
+     *
+     * Only true while the module is nearly still, so a frame from after the reseed can be told apart from one before it by its jump,
+     * and never while a reseed is still pending.
+     */
+    public synchronized boolean needsReseed() {
+        return !reseedPending && Math.abs(offset) > reseedThreshold && Math.abs(lastVelocity) < DriveConstants.steerReseedMaxVelocity.in(RadiansPerSecond);
+    }
+
+    /**
+     * Starts folding the offset into the relative encoder.
+     *
+     * Call this once the controller has accepted the relative encoder being set to {@link #getAngle(double, double)}.
+     * The offset is only cleared when {@link #update} reads a frame from after the reseed.
+     *
+     * @param relative The last relative angle read before the reseed in radians.
+     * @param timestamp The time the controller accepted the reseed in seconds.
+     */
+    public synchronized void reseeded(double relative, double timestamp) {
+        reseedPending = true;
+        reseedShift = offset;
+        reseedRelative = relative;
+        reseedTimestamp = timestamp;
+    }
+
+    // Frames from after the reseed jumped by the shift, so they are closer to the old reading plus the shift than to the old reading
+    private boolean isAfterReseed(double relative, double timestamp) {
+        if (!reseedPending) return false;
+        if (timestamped) return timestamp > reseedTimestamp;
+
+        return Math.abs(MathUtil.angleModulus(relative - reseedRelative - reseedShift)) < Math.abs(MathUtil.angleModulus(relative - reseedRelative));
+    }
+
+    /** Gets the offset between the absolute and relative encoders in radians. */
+    public synchronized double getDrift() {
+        return offset;
+    }
+
+    /** Gets how many times the relative encoder has been reseeded. */
+    public synchronized int getReseeds() {
+        return reseeds;
+    }
+}
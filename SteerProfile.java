@@ -0,0 +1,111 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.util.Units;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * The limits for profiled steering, and a timer for how long a module takes to settle on a new angle.
+ *
+ * The limits come from the steer characterization: the fastest the module can turn is the battery voltage left after kS divided by kV,
+ * and the fastest it can speed up is that voltage divided by kA.
+ * Until the steer is characterized, the Kraken X44 model at the steer stator current limit stands in.
+ * Both are scaled down by {@link DriveConstants#steerProfileMargin} so feedback has room to correct.
+ *
+ * A settle is timed from the cycle the setpoint jumps by at least {@link DriveConstants#steerSettleStep}
+ * to the first cycle the module is within {@link DriveConstants#steerSettleTolerance} of it.
+ * The timer only sees the angle when the module's inputs are updated, so the times are rounded up to the main loop period.
+ */
+public class SteerProfile {
+    private static final double maxVelocity;
+    private static final double maxAcceleration;
+
+    static {
+        double volts = DriveConstants.nominalBatteryVoltage.in(Volts) - DriveConstants.kSSteerDefault;
+
+        double velocity = DriveConstants.kVSteerDefault > 0
+            ? Units.rotationsToRadians(volts / DriveConstants.kVSteerDefault)
+            : DriveConstants.krakenX44.freeSpeedRadPerSec / DriveConstants.steerGearRatio;
+
+        double acceleration = DriveConstants.kASteerDefault > 0
+            ? Units.rotationsToRadians(volts / DriveConstants.kASteerDefault)
+            : DriveConstants.krakenX44.getTorque(DriveConstants.steerStatorCurrentLimit.in(Amps)) * DriveConstants.steerGearRatio / DriveConstants.steerMOI;
+
+        maxVelocity = DriveConstants.steerProfileMargin * velocity;
+        maxAcceleration = DriveConstants.steerProfileMargin * acceleration;
+    }
+
+    private double lastSetpoint = Double.NaN;
+    private double moveStart = -1;
+
+    private double lastSettleTime = Double.NaN;
+    private double totalSettleTime = 0;
+    private double maxSettleTime = 0;
+    private int settles = 0;
+    private int timeouts = 0;
+
+    /** Gets the fastest the profile turns a module, in radians per second. */
+    public static double getMaxVelocity() {
+        return maxVelocity;
+    }
+
+    /** Gets the fastest the profile speeds up a module's turning, in radians per second squared. */
+    public static double getMaxAcceleration() {
+        return maxAcceleration;
+    }
+
+    /**
+     * Updates the settle timer.
+     *
+     * @param setpoint The module's angle setpoint in radians.
+     * @param angle The module's measured angle in radians.
+     * @param timestamp When the angle was measured in seconds.
+     */
+    public void update(double setpoint, double angle, double timestamp) {
+        if (Double.isNaN(lastSetpoint) || Math.abs(MathUtil.angleModulus(setpoint - lastSetpoint)) >= DriveConstants.steerSettleStep.in(Radians)) {
+            // A missed settle is replaced by the newer move
+            if (moveStart >= 0) timeouts++;
+            moveStart = Double.isNaN(lastSetpoint) ? -1 : timestamp;
+        }
+
+        lastSetpoint = setpoint;
+
+        if (moveStart < 0) return;
+
+        if (Math.abs(MathUtil.angleModulus(setpoint - angle)) <= DriveConstants.steerSettleTolerance.in(Radians)) {
+            lastSettleTime = timestamp - moveStart;
+            totalSettleTime += lastSettleTime;
+            maxSettleTime = Math.max(maxSettleTime, lastSettleTime);
+            settles++;
+            moveStart = -1;
+        } else if (timestamp - moveStart > DriveConstants.steerSettleTimeout.in(Seconds)) {
+            timeouts++;
+            moveStart = -1;
+        }
+    }
+
+    /** Gets how long the last timed move took to settle in seconds, or NaN if none has. */
+    public double getLastSettleTime() {
+        return lastSettleTime;
+    }
+
+    /** Gets the average settle time in seconds, or NaN if no move has settled. */
+    public double getMeanSettleTime() {
+        return settles > 0 ? totalSettleTime / settles : Double.NaN;
+    }
+
+    /**
+     * Logs the settle times.
+     *
+     * @param key The module's log key.
+     */
+    public void log(String key) {
+        Logger.recordOutput(key + "/SteerSettle/Last", lastSettleTime);
+        Logger.recordOutput(key + "/SteerSettle/Mean", getMeanSettleTime());
+        Logger.recordOutput(key + "/SteerSettle/Max", maxSettleTime);
+        Logger.recordOutput(key + "/SteerSettle/Count", settles);
+        Logger.recordOutput(key + "/SteerSettle/Timeouts", timeouts);
+    }
+}
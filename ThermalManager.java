@@ -0,0 +1,132 @@
+package frc.robot.subsystems.drivetrain;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.Timer;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Runs a thermal model for every drive and steer motor and derates their current limits before they overheat.
+ *
+ * The model heats with stator current, so the limits are stator limits.
+ * They start at {@link DriveConstants#driveStatorCurrentLimit} and {@link DriveConstants#steerStatorCurrentLimit}, which the motors are configured with at startup,
+ * so derating only ever lowers a limit the motor already has.
+ * Each limit is the highest current that the motor can hold for {@link DriveConstants#thermalHorizon} without reaching its limit,
+ * so it falls smoothly as the motor heats up instead of hitting a hard cutoff.
+ */
+public class ThermalManager {
+    private ThermalModel[] driveModels;
+    private ThermalModel[] steerModels;
+
+    private double[] driveLimits;
+    private double[] steerLimits;
+
+    private double[] driveTimeToLimit;
+    private double[] steerTimeToLimit;
+
+    private double lastTimestamp = -1;
+
+    /**
+     * Creates a new ThermalManager.
+     *
+     * @param moduleCount The number of modules on the robot.
+     */
+    public ThermalManager(int moduleCount) {
+        driveModels = new ThermalModel[moduleCount];
+        steerModels = new ThermalModel[moduleCount];
+
+        driveLimits = new double[moduleCount];
+        steerLimits = new double[moduleCount];
+
+        driveTimeToLimit = new double[moduleCount];
+        steerTimeToLimit = new double[moduleCount];
+
+        for (int i = 0; i < moduleCount; i++) {
+            driveModels[i] = new ThermalModel(
+                DriveConstants.krakenX60.rOhms,
+                DriveConstants.driveThermalResistance,
+                DriveConstants.driveThermalCapacitance,
+                DriveConstants.ambientTemperature.in(Celsius),
+                DriveConstants.motorTemperatureLimit.in(Celsius),
+                DriveConstants.thermalCorrectionRate);
+
+            steerModels[i] = new ThermalModel(
+                DriveConstants.krakenX44.rOhms,
+                DriveConstants.steerThermalResistance,
+                DriveConstants.steerThermalCapacitance,
+                DriveConstants.ambientTemperature.in(Celsius),
+                DriveConstants.motorTemperatureLimit.in(Celsius),
+                DriveConstants.thermalCorrectionRate);
+
+            driveLimits[i] = DriveConstants.driveStatorCurrentLimit.in(Amps);
+            steerLimits[i] = DriveConstants.steerStatorCurrentLimit.in(Amps);
+        }
+    }
+
+    /**
+     * Steps every model forward with the latest module readings and recomputes the current limits.
+     *
+     * @param modules The modules to read from.
+     */
+    public void update(ModuleIO[] modules) {
+        double timestamp = Timer.getFPGATimestamp();
+        double dt = lastTimestamp < 0 ? 0 : timestamp - lastTimestamp;
+        lastTimestamp = timestamp;
+
+        double horizon = DriveConstants.thermalHorizon.in(Seconds);
+
+        for (int i = 0; i < modules.length; i++) {
+            driveModels[i].update(modules[i].getDriveCurrent().in(Amps), modules[i].getDriveTemperature().in(Celsius), dt);
+            steerModels[i].update(modules[i].getSteerCurrent().in(Amps), modules[i].getSteerTemperature().in(Celsius), dt);
+
+            driveLimits[i] = MathUtil.clamp(driveModels[i].getSustainableCurrent(horizon), DriveConstants.minDriveCurrentLimit.in(Amps), DriveConstants.driveStatorCurrentLimit.in(Amps));
+            steerLimits[i] = MathUtil.clamp(steerModels[i].getSustainableCurrent(horizon), DriveConstants.minSteerCurrentLimit.in(Amps), DriveConstants.steerStatorCurrentLimit.in(Amps));
+
+            // How long each motor could run flat out from here
+            driveTimeToLimit[i] = driveModels[i].getTimeToLimit(DriveConstants.driveStatorCurrentLimit.in(Amps));
+            steerTimeToLimit[i] = steerModels[i].getTimeToLimit(DriveConstants.steerStatorCurrentLimit.in(Amps));
+        }
+    }
+
+    /** Gets the thermal current limit of a drive motor in amps. */
+    public double getDriveLimit(int moduleId) {
+        return driveLimits[moduleId];
+    }
+
+    /** Gets the thermal current limit of a steer motor in amps. */
+    public double getSteerLimit(int moduleId) {
+        return steerLimits[moduleId];
+    }
+
+    /**
+     * Gets how long the hottest motor could run at its full current limit before reaching its temperature limit, in seconds.
+     *
+     * Returns positive infinity if every motor can run at its full limit forever.
+     */
+    public double getHeadroom() {
+        double headroom = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < driveTimeToLimit.length; i++) {
+            headroom = Math.min(headroom, Math.min(driveTimeToLimit[i], steerTimeToLimit[i]));
+        }
+
+        return headroom;
+    }
+
+    /** Logs the estimated temperatures, limits, and headroom of every motor. */
+    public void log() {
+        for (int i = 0; i < driveModels.length; i++) {
+            String key = "/Subsystems/Drivetrain/Thermal/Module" + i;
+
+            Logger.recordOutput(key + "/DriveTemperature", driveModels[i].getTemperature());
+            Logger.recordOutput(key + "/SteerTemperature", steerModels[i].getTemperature());
+            Logger.recordOutput(key + "/DriveLimit", driveLimits[i]);
+            Logger.recordOutput(key + "/SteerLimit", steerLimits[i]);
+            Logger.recordOutput(key + "/DriveTimeToLimit", driveTimeToLimit[i]);
+            Logger.recordOutput(key + "/SteerTimeToLimit", steerTimeToLimit[i]);
+        }
+
+        Logger.recordOutput("/Subsystems/Drivetrain/Thermal/Headroom", getHeadroom());
+    }
+}
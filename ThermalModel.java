@@ -0,0 +1,105 @@
+package frc.robot.subsystems.drivetrain;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * A lumped thermal model of a single motor.
+ *
+ * The winding is treated as one mass that is heated by I²R losses and cools to ambient through a thermal resistance:
+ * C * dT/dt = I²R - (T - Tambient) / Rth
+ * The estimate is pulled toward the motor's own temperature sensor so that model error doesn't build up over a match.
+ */
+public class ThermalModel {
+    private double resistance;
+    private double thermalResistance;
+    private double thermalCapacitance;
+    private double ambient;
+    private double limit;
+    private double correctionRate;
+
+    private double temperature;
+    private boolean seeded = false;
+
+    /**
+     * Creates a new thermal model.
+     *
+     * @param resistance The winding resistance in ohms.
+     * @param thermalResistance The thermal resistance from the winding to ambient in kelvin per watt.
+     * @param thermalCapacitance The heat capacity of the motor in joules per kelvin.
+     * @param ambient The ambient temperature in celsius.
+     * @param limit The temperature the motor should never pass in celsius.
+     * @param correctionRate How fast the estimate is pulled toward the measured temperature, in 1/s.
+     */
+    public ThermalModel(double resistance, double thermalResistance, double thermalCapacitance, double ambient, double limit, double correctionRate) {
+        this.resistance = resistance;
+        this.thermalResistance = thermalResistance;
+        this.thermalCapacitance = thermalCapacitance;
+        this.ambient = ambient;
+        this.limit = limit;
+        this.correctionRate = correctionRate;
+
+        this.temperature = ambient;
+    }
+
+    /**
+     * Steps the model forward.
+     *
+     * @param current The measured stator current in amps.
+     * @param measuredTemperature The temperature reported by the motor in celsius.
+     * @param dt The time since the last update in seconds.
+     */
+    public void update(double current, double measuredTemperature, double dt) {
+        if (!seeded) {
+            temperature = Math.max(measuredTemperature, ambient);
+            seeded = true;
+        }
+
+        double heat = current * current * resistance;
+        double loss = (temperature - ambient) / thermalResistance;
+
+        temperature += (heat - loss) / thermalCapacitance * dt;
+        temperature += (measuredTemperature - temperature) * MathUtil.clamp(correctionRate * dt, 0, 1);
+    }
+
+    /** Gets the estimated winding temperature in celsius. */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /** Gets the thermal time constant of the motor in seconds. */
+    public double getTimeConstant() {
+        return thermalResistance * thermalCapacitance;
+    }
+
+    /**
+     * Predicts how long the motor can hold a current before it reaches its limit.
+     *
+     * Returns positive infinity if the current can be held forever.
+     *
+     * @param current The stator current in amps.
+     */
+    public double getTimeToLimit(double current) {
+        if (temperature >= limit) return 0;
+
+        double steadyState = ambient + current * current * resistance * thermalResistance;
+        if (steadyState <= limit) return Double.POSITIVE_INFINITY;
+
+        return -getTimeConstant() * Math.log((steadyState - limit) / (steadyState - temperature));
+    }
+
+    /**
+     * Gets the highest current that won't bring the motor to its limit within a horizon.
+     *
+     * This falls smoothly toward the continuous rating as the motor heats up, instead of cutting off once it is hot.
+     *
+     * @param horizon How far ahead to look in seconds.
+     */
+    public double getSustainableCurrent(double horizon) {
+        double decay = Math.exp(-horizon / getTimeConstant());
+
+        // The steady state temperature that would reach the limit exactly at the horizon
+        double steadyState = (limit - temperature * decay) / (1 - decay);
+
+        return Math.sqrt(Math.max(steadyState - ambient, 0) / (resistance * thermalResistance));
+    }
+}
@@ -0,0 +1,184 @@
+package frc.robot.subsystems.drivetrain.commands;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.SlewRateLimiter;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import frc.robot.subsystems.drivetrain.Drivetrain;
+import frc.robot.subsystems.drivetrain.pathfinding.Pathfinder;
+import frc.robot.subsystems.drivetrain.pathfinding.PlannedPath;
+import java.util.List;
+import java.util.function.Supplier;
+import org.littletonrobotics.junction.Logger;
+
+public class PathFindToPose extends Command {
+    private Drivetrain drivetrain;
+    private Pathfinder pathfinder;
+    private Pose2d endPose;
+    private Supplier<Boolean> override;
+    private List<Pose2d> poses;
+
+    private PlannedPath path;
+
+    private int shouldEnds = 0;
+
+    // How much the controllers follow the visual pose instead of the global pose, from 0 to 1
+    private SlewRateLimiter handover = new SlewRateLimiter(1 / DriveConstants.visualServoHandoverTime.in(Seconds));
+    private double visualWeight = 0;
+    private Transform2d visualOffset = new Transform2d();
+
+    /**
+     * Creates a new PathFindToPose command.
+     * It pathfinds around the field's obstacles to the nearest of some poses.
+     *
+     * @param drivetrain The drivetrain subsystem to control.
+     * @param override A boolean supplier that allows the command to be overriden.
+     * @param poses The poses to choose from.
+     */
+    public PathFindToPose(Drivetrain drivetrain, Supplier<Boolean> override, List<Pose2d> poses) {
+        this.drivetrain = drivetrain;
+        this.pathfinder = drivetrain.getPathfinder();
+        this.override = override;
+        this.poses = poses;
+
+        addRequirements(drivetrain);
+    }
+
+    /**
+     * Called when the command is initially scheduled.
+     *
+     * It updates the end pose when the command is initialized to prevent the goalPose from changing during pathfinding
+     */
+    @Override
+    public void initialize() {
+        endPose = drivetrain.getBestGoal(poses);
+        shouldEnds = 0;
+
+        handover.reset(0);
+        visualWeight = 0;
+        visualOffset = new Transform2d();
+
+        pathfinder.reset();
+    }
+
+    /**
+     * Called every time the scheduler runs while the command is scheduled.
+     *
+     * It asks the pathfinder to replan if needed, then follows the current trajectory with the drivetrain's PID controllers.
+     * The robot holds still until the first plan is ready, and drives straight at the goal if no path exists.
+     * Close to the goal, the controllers hand over from the global pose to the drivetrain's visual pose, see {@link #getControlPose(Pose2d)}.
+     */
+    @Override
+    public void execute() {
+        double timestamp = Timer.getFPGATimestamp();
+        Pose2d curPose = drivetrain.getPose();
+
+        pathfinder.update(curPose, ChassisSpeeds.fromRobotRelativeSpeeds(drivetrain.getSpeeds(), curPose.getRotation()), endPose, timestamp);
+        path = pathfinder.getPath(endPose);
+
+        Translation2d target = curPose.getTranslation();
+        double vx = 0;
+        double vy = 0;
+
+        if (path != null) {
+            Trajectory.State state = path.sample(timestamp);
+
+            target = state.poseMeters.getTranslation();
+            vx = state.velocityMetersPerSecond * state.poseMeters.getRotation().getCos();
+            vy = state.velocityMetersPerSecond * state.poseMeters.getRotation().getSin();
+        } else if (pathfinder.hasFailed(endPose)) {
+            target = endPose.getTranslation();
+        }
+
+        Pose2d controlPose = getControlPose(curPose);
+
+        ChassisSpeeds speeds = ChassisSpeeds.fromFieldRelativeSpeeds(
+            vx + drivetrain.xController.calculate(controlPose.getX(), target.getX()),
+            vy + drivetrain.yController.calculate(controlPose.getY(), target.getY()),
+            drivetrain.thetaController.calculate(controlPose.getRotation().getRadians(), endPose.getRotation().getRadians()),
+            controlPose.getRotation());
+
+        drivetrain.drive(speeds);
+
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/Active", path != null);
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/Goal", endPose);
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/ETA", drivetrain.getTimeToGoal(endPose));
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/Target", target);
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/Waypoints", path != null ? path.getWaypoints().toArray(new Translation2d[0]) : new Translation2d[0]);
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/PlanTime", pathfinder.getLastPlanTime());
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/PlanExpanded", pathfinder.getLastPlanExpanded());
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/PlanCount", pathfinder.getPlanCount());
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/SplineFallbacks", pathfinder.getSplineFallbacks());
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/ControlPose", controlPose);
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/VisualWeight", visualWeight);
+    }
+
+    /**
+     * Gets the pose the controllers close the loop on.
+     *
+     * Far from the goal that's the global pose. Within {@link DriveConstants#visualServoDistance} it blends toward the visual pose,
+     * which is fully in control {@link DriveConstants#visualServoBlendDistance} closer.
+     * The blend is rate limited so control never jumps from one pose to the other.
+     * If vision loses the target mid-handover, the last difference between the two poses is held while the blend ramps back down.
+     *
+     * @param globalPose The pose estimator's pose.
+     */
+    private Pose2d getControlPose(Pose2d globalPose) {
+        Pose2d visualPose = drivetrain.getVisualPose();
+        double targetWeight = 0;
+
+        if (visualPose != null) {
+            visualOffset = new Transform2d(globalPose, visualPose);
+
+            double distance = globalPose.getTranslation().getDistance(endPose.getTranslation());
+            targetWeight = MathUtil.clamp((DriveConstants.visualServoDistance.in(Meters) - distance) / DriveConstants.visualServoBlendDistance.in(Meters), 0, 1);
+        }
+
+        visualWeight = handover.calculate(targetWeight);
+        if (visualWeight <= 0) return globalPose;
+
+        return globalPose.interpolate(globalPose.transformBy(visualOffset), visualWeight);
+    }
+
+    /**
+     * Returns true when the command should end.
+     *
+     * It returns true when the trajectory is done and the current pose is within the set tolerance for 5 ticks in a row (0.1s).
+     * It will also return true if the override is active.
+     */
+    @Override
+    public boolean isFinished() {
+        if (override.get()) return true;
+
+        boolean pathDone = path == null ? pathfinder.hasFailed(endPose) : path.isFinished(Timer.getFPGATimestamp());
+        boolean shouldEnd = pathDone && drivetrain.xController.atSetpoint() && drivetrain.yController.atSetpoint() && drivetrain.thetaController.atSetpoint();
+
+        if (shouldEnd) {
+            shouldEnds++;
+        } else {
+            shouldEnds = 0;
+        }
+
+        return shouldEnds > 5;
+    }
+
+    /**
+     * Called once the command ends or is interrupted.
+     *
+     * It sets the speeds of the robot to 0.
+     */
+    @Override
+    public void end(boolean interrupted) {
+        drivetrain.drive(new ChassisSpeeds());
+
+        Logger.recordOutput(drivetrain.getLogKey() + "/PathFind/Active", false);
+    }
+}
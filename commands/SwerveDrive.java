@@ -1,10 +1,14 @@
 package frc.robot.subsystems.drivetrain.commands;
 
+import static edu.wpi.first.units.Units.*;
+
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.subsystems.drivetrain.DriveConstants;
 import frc.robot.subsystems.drivetrain.Drivetrain;
+import frc.robot.subsystems.drivetrain.InputShaper;
 import java.util.function.Supplier;
 
 public class SwerveDrive extends Command {
@@ -16,6 +20,10 @@ public class SwerveDrive extends Command {
     private Drivetrain drivetrain;
     private double scalar = 1;
 
+    private InputShaper xShaper = new InputShaper(DriveConstants.joystickDeadband, DriveConstants.translationExpo, DriveConstants.translationSlewRate);
+    private InputShaper yShaper = new InputShaper(DriveConstants.joystickDeadband, DriveConstants.translationExpo, DriveConstants.translationSlewRate);
+    private InputShaper zShaper = new InputShaper(DriveConstants.joystickDeadband, DriveConstants.rotationExpo, DriveConstants.rotationSlewRate);
+
     /**
      * Creates a new SwerveDrive command.
      * It drives the robot based on different percent inputs.
@@ -37,7 +45,11 @@ public class SwerveDrive extends Command {
 
     /** Called when the command is initially scheduled. */
     @Override
-    public void initialize() {}
+    public void initialize() {
+        xShaper.reset(0);
+        yShaper.reset(0);
+        zShaper.reset(0);
+    }
 
     /**
      * Called every time the scheduler runs while the command is scheduled.
@@ -50,27 +62,22 @@ public class SwerveDrive extends Command {
             fieldRelative = !fieldRelative;
         }
 
+        // Predicting where the heading will be once these speeds are applied
+        // getHeading() is already carried forward to now, so only the delay after now is added
+        Rotation2d heading = drivetrain.getHeading().plus(Rotation2d.fromRadians(drivetrain.getYawRate() * DriveConstants.headingPredictionLatency.in(Seconds)));
+
         // Getting values from the suppliers.
         double xSpeed = xSpeedSupplier.get();
         double ySpeed = ySpeedSupplier.get();
         double zSteer = zSteerSupplier.get();
 
-        // Applying a deadband
-        xSpeed = MathUtil.applyDeadband(xSpeed, 0.1);
-        ySpeed = MathUtil.applyDeadband(ySpeed, 0.1);
-        zSteer = MathUtil.applyDeadband(zSteer, 0.1);
-
-        // When applying a deadband, you cannot go slower than the deadband zone.
-        // This code allows the robot to move within that "lost" zone.
-        // The problem with this is that it could prevent the robot from moving at its max speed.
-        // To prevent this, we stop dampening the speed at 90%.
-        if (xSpeed >  0.1 && xSpeed <  0.9) xSpeed -= 0.1;
-        if (ySpeed >  0.1 && ySpeed <  0.9) ySpeed -= 0.1;
-        if (zSteer >  0.1 && zSteer <  0.9) zSteer -= 0.1;
+        // Shaping the translation as one vector so the deadband and expo don't pull the robot toward the axes
+        double magnitude = Math.hypot(xSpeed, ySpeed);
+        double scale = magnitude > 1e-9 ? InputShaper.shape(magnitude, DriveConstants.joystickDeadband, DriveConstants.translationExpo) / magnitude : 0;
 
-        if (xSpeed < -0.1 && xSpeed > -0.9) xSpeed += 0.1;
-        if (ySpeed < -0.1 && ySpeed > -0.9) ySpeed += 0.1;
-        if (zSteer < -0.1 && zSteer > -0.9) zSteer += 0.1;
+        xSpeed = xShaper.limit(xSpeed * scale);
+        ySpeed = yShaper.limit(ySpeed * scale);
+        zSteer = zShaper.calculate(zSteer);
 
         // Getting speeds
         ChassisSpeeds speeds;
@@ -80,7 +87,7 @@ public class SwerveDrive extends Command {
                 DriveConstants.maxLinearVelocity.times(-ySpeed * scalar),
                 DriveConstants.maxLinearVelocity.times(-xSpeed * scalar),
                 DriveConstants.maxAngularVelocity.times(-zSteer * scalar),
-                drivetrain.getHeading());
+                heading);
         } else {
             speeds = new ChassisSpeeds(
                 DriveConstants.maxLinearVelocity.times(-ySpeed * scalar),
@@ -0,0 +1,87 @@
+package frc.robot.subsystems.drivetrain.filter;
+
+import java.util.Random;
+
+/**
+ * Measures the per-sample cost and accuracy of each filter.
+ *
+ * Every filter differentiates (or smooths) the same noisy sine wave sampled with jittered timestamps, like a SparkMax velocity frame.
+ * Run it off-robot:
+ * <pre>
+ * java frc.robot.subsystems.drivetrain.filter.FilterBenchmark [samples]
+ * </pre>
+ */
+public class FilterBenchmark {
+    private static final double period = 0.01;
+    private static final double jitter = 0.002;
+    private static final double noise = 0.02;
+    private static final double frequency = 2;
+
+    // Keeps the outputs live so the JIT can't skip the work
+    private static double sink;
+
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+        double[] timestamps = new double[samples];
+        double[] values = new double[samples];
+        double[] truth = new double[samples];
+        double[] truthDerivative = new double[samples];
+
+        Random random = new Random(1086);
+        double w = 2 * Math.PI * frequency;
+        double t = 0;
+
+        for (int i = 0; i < samples; i++) {
+            t += period + (random.nextDouble() * 2 - 1) * jitter;
+
+            timestamps[i] = t;
+            truth[i] = Math.sin(w * t);
+            truthDerivative[i] = w * Math.cos(w * t);
+            values[i] = truth[i] + random.nextGaussian() * noise;
+        }
+
+        System.out.printf("%d samples, %.0f ms +/- %.0f ms spacing, noise %.3f%n", samples, period * 1000, jitter * 1000, noise);
+        System.out.printf("%-28s %10s %12s%n", "Filter", "ns/sample", "RMS error");
+
+        run("Finite difference (1st)", new FiniteDifference(1), timestamps, values, truthDerivative);
+        run("Finite difference (2nd)", new FiniteDifference(2), timestamps, values, truthDerivative);
+        run("Savitzky-Golay d/dt (5)", new SavitzkyGolayFilter(5, true), timestamps, values, truthDerivative);
+        run("Savitzky-Golay d/dt (9)", new SavitzkyGolayFilter(9, true), timestamps, values, truthDerivative);
+        run("Savitzky-Golay (9)", new SavitzkyGolayFilter(9, false), timestamps, values, truth);
+        run("Low-pass (20 ms)", new LowPassFilter(0.02), timestamps, values, truth);
+    }
+
+    /** Times a filter over every sample, after a warm-up pass so the JIT has compiled it. */
+    private static void run(String name, SignalFilter filter, double[] timestamps, double[] values, double[] expected) {
+        for (int i = 0; i < Math.min(values.length, 200_000); i++) {
+            filter.calculate(values[i], timestamps[i]);
+        }
+
+        filter.reset();
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < values.length; i++) {
+            sink += filter.calculate(values[i], timestamps[i]);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        // Error is measured in a separate pass so it isn't part of the timing
+        filter.reset();
+        double squaredError = 0;
+        int counted = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            double output = filter.calculate(values[i], timestamps[i]);
+
+            if (i >= 10) {
+                squaredError += (output - expected[i]) * (output - expected[i]);
+                counted++;
+            }
+        }
+
+        System.out.printf("%-28s %10.1f %12.4f%n", name, (double) elapsed / values.length, Math.sqrt(squaredError / Math.max(counted, 1)));
+    }
+}
@@ -0,0 +1,62 @@
+package frc.robot.subsystems.drivetrain.filter;
+
+/**
+ * A backward finite difference that uses each sample's real timestamp.
+ *
+ * The first-order difference is (v0 - v1) / (t0 - t1).
+ * The second-order difference fits a parabola through the last three samples, which is more accurate when the signal is curving
+ * but amplifies noise more.
+ * Samples with a repeated timestamp are ignored.
+ */
+public class FiniteDifference implements SignalFilter {
+    private final SampleBuffer samples;
+    private final int order;
+
+    private double derivative = 0;
+
+    /**
+     * Creates a new finite difference.
+     *
+     * @param order 1 for a two-point difference or 2 for a three-point difference.
+     */
+    public FiniteDifference(int order) {
+        if (order != 1 && order != 2) throw new IllegalArgumentException("Finite difference order must be 1 or 2, got " + order);
+
+        this.order = order;
+        this.samples = new SampleBuffer(order + 1);
+    }
+
+    @Override
+    public double calculate(double value, double timestamp) {
+        if (samples.size() > 0 && timestamp <= samples.getTimestamp(0)) return derivative;
+
+        samples.add(value, timestamp);
+
+        if (samples.size() < 2) return derivative;
+
+        double h1 = samples.getTimestamp(0) - samples.getTimestamp(1);
+
+        if (order == 1 || samples.size() < 3) {
+            derivative = (samples.getValue(0) - samples.getValue(1)) / h1;
+        } else {
+            double h2 = samples.getTimestamp(1) - samples.getTimestamp(2);
+
+            derivative = samples.getValue(0) * (2 * h1 + h2) / (h1 * (h1 + h2))
+                - samples.getValue(1) * (h1 + h2) / (h1 * h2)
+                + samples.getValue(2) * h1 / (h2 * (h1 + h2));
+        }
+
+        return derivative;
+    }
+
+    @Override
+    public double get() {
+        return derivative;
+    }
+
+    @Override
+    public void reset() {
+        samples.clear();
+        derivative = 0;
+    }
+}
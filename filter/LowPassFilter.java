@@ -0,0 +1,52 @@
+package frc.robot.subsystems.drivetrain.filter;
+
+/**
+ * A first-order low-pass filter that accounts for the real time between samples.
+ *
+ * Each sample moves the output by 1 - e^(-dt / timeConstant) of the way to the sample, so uneven sample rates don't change the cutoff.
+ */
+public class LowPassFilter implements SignalFilter {
+    private final double timeConstant;
+
+    private double output;
+    private double lastTimestamp;
+    private boolean seeded = false;
+
+    /**
+     * Creates a new low-pass filter.
+     *
+     * @param timeConstant The time constant in seconds. The cutoff frequency is 1 / (2π * timeConstant).
+     */
+    public LowPassFilter(double timeConstant) {
+        this.timeConstant = timeConstant;
+    }
+
+    @Override
+    public double calculate(double value, double timestamp) {
+        if (!seeded || timeConstant <= 0) {
+            output = value;
+            lastTimestamp = timestamp;
+            seeded = true;
+            return output;
+        }
+
+        double dt = timestamp - lastTimestamp;
+        if (dt <= 0) return output;
+
+        output += (1 - Math.exp(-dt / timeConstant)) * (value - output);
+        lastTimestamp = timestamp;
+
+        return output;
+    }
+
+    @Override
+    public double get() {
+        return output;
+    }
+
+    @Override
+    public void reset() {
+        output = 0;
+        seeded = false;
+    }
+}
@@ -0,0 +1,67 @@
+package frc.robot.subsystems.drivetrain.filter;
+
+/**
+ * A fixed-size ring buffer of timestamped samples.
+ *
+ * Index 0 is the newest sample. Once full, adding a sample overwrites the oldest one.
+ */
+public class SampleBuffer {
+    private final double[] timestamps;
+    private final double[] values;
+
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param capacity The most samples the buffer holds.
+     */
+    public SampleBuffer(int capacity) {
+        timestamps = new double[Math.max(capacity, 1)];
+        values = new double[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Adds a sample, overwriting the oldest one if the buffer is full.
+     *
+     * @param value The sample.
+     * @param timestamp When the sample was measured in seconds.
+     */
+    public void add(double value, double timestamp) {
+        head = (head + 1) % values.length;
+        values[head] = value;
+        timestamps[head] = timestamp;
+        size = Math.min(size + 1, values.length);
+    }
+
+    /** Gets a sample's value, where 0 is the newest. */
+    public double getValue(int age) {
+        return values[slot(age)];
+    }
+
+    /** Gets a sample's timestamp, where 0 is the newest. */
+    public double getTimestamp(int age) {
+        return timestamps[slot(age)];
+    }
+
+    private int slot(int age) {
+        int slot = head - age;
+        return slot < 0 ? slot + values.length : slot;
+    }
+
+    /** Gets the number of samples in the buffer. */
+    public int size() {
+        return size;
+    }
+
+    /** Gets the most samples the buffer holds. */
+    public int capacity() {
+        return values.length;
+    }
+
+    /** Removes every sample. */
+    public void clear() {
+        size = 0;
+    }
+}
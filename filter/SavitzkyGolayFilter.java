@@ -0,0 +1,89 @@
+package frc.robot.subsystems.drivetrain.filter;
+
+/**
+ * A Savitzky-Golay filter that works on unevenly spaced samples.
+ *
+ * Each sample, a parabola is least-squares fit to the last few samples and evaluated at the newest one.
+ * With even spacing this is the classic Savitzky-Golay filter. With uneven spacing the fit just uses the real timestamps.
+ * The output is either the smoothed value or its derivative, which makes this a much quieter differentiator than a finite difference
+ * for the same delay.
+ */
+public class SavitzkyGolayFilter implements SignalFilter {
+    private final SampleBuffer samples;
+    private final boolean derivative;
+
+    private double output = 0;
+
+    /**
+     * Creates a new Savitzky-Golay filter.
+     *
+     * @param window How many samples each fit uses, at least 3.
+     * @param derivative Whether to output the derivative instead of the smoothed value.
+     */
+    public SavitzkyGolayFilter(int window, boolean derivative) {
+        if (window < 3) throw new IllegalArgumentException("Savitzky-Golay window must be at least 3, got " + window);
+
+        this.samples = new SampleBuffer(window);
+        this.derivative = derivative;
+    }
+
+    @Override
+    public double calculate(double value, double timestamp) {
+        if (samples.size() > 0 && timestamp <= samples.getTimestamp(0)) return output;
+
+        samples.add(value, timestamp);
+
+        int n = samples.size();
+
+        if (n < 3) {
+            // Not enough samples for a parabola yet
+            if (!derivative) output = value;
+            else if (n == 2) output = (samples.getValue(0) - samples.getValue(1)) / (samples.getTimestamp(0) - samples.getTimestamp(1));
+
+            return output;
+        }
+
+        // Sums for the normal equations, with time measured back from the newest sample so the fit is evaluated at t = 0
+        double s0 = n, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double y0 = 0, y1 = 0, y2 = 0;
+        double newest = samples.getTimestamp(0);
+
+        for (int i = 0; i < n; i++) {
+            double t = samples.getTimestamp(i) - newest;
+            double t2 = t * t;
+            double y = samples.getValue(i);
+
+            s1 += t;
+            s2 += t2;
+            s3 += t2 * t;
+            s4 += t2 * t2;
+
+            y0 += y;
+            y1 += y * t;
+            y2 += y * t2;
+        }
+
+        // Solving [s0 s1 s2; s1 s2 s3; s2 s3 s4] * [c0 c1 c2] = [y0 y1 y2] by Cramer's rule
+        double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2);
+        if (Math.abs(det) < 1e-300) return output;
+
+        if (derivative) {
+            output = (s0 * (y1 * s4 - s3 * y2) - y0 * (s1 * s4 - s3 * s2) + s2 * (s1 * y2 - y1 * s2)) / det;
+        } else {
+            output = (y0 * (s2 * s4 - s3 * s3) - s1 * (y1 * s4 - s3 * y2) + s2 * (y1 * s3 - s2 * y2)) / det;
+        }
+
+        return output;
+    }
+
+    @Override
+    public double get() {
+        return output;
+    }
+
+    @Override
+    public void reset() {
+        samples.clear();
+        output = 0;
+    }
+}
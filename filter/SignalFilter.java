@@ -0,0 +1,23 @@
+package frc.robot.subsystems.drivetrain.filter;
+
+/**
+ * A filter over a stream of timestamped samples.
+ *
+ * Implementations keep their history in preallocated arrays, so calculating never allocates.
+ */
+public interface SignalFilter {
+    /**
+     * Adds a sample and gets the filter's output.
+     *
+     * @param value The sample.
+     * @param timestamp When the sample was measured in seconds. Must not go backward.
+     * @return The filtered value.
+     */
+    public double calculate(double value, double timestamp);
+
+    /** Gets the last output without adding a sample. */
+    public double get();
+
+    /** Clears the history. */
+    public void reset();
+}
@@ -0,0 +1,146 @@
+package frc.robot.subsystems.drivetrain.pathfinding;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A precomputed table of how long it takes to reach each scoring pose from every cell and heading on the field.
+ *
+ * The table is written offline by {@link CostToGoMapGenerator} and memory-mapped at boot, so it lives in the page cache instead of the heap
+ * and every lookup is a single read.
+ *
+ * File layout (big-endian):
+ * <pre>
+ * int    magic ('CTG1')
+ * int    width, height, headingBins, goalCount
+ * double cellSize
+ * double x, y, theta       (goalCount times)
+ * ushort time in ms        ([y][x][heading][goal], 0xFFFF if unreachable)
+ * </pre>
+ */
+public class CostToGoMap {
+    public static final int magic = 0x43544731;
+    public static final int unreachable = 0xFFFF;
+
+    private MappedByteBuffer buffer;
+
+    private int width;
+    private int height;
+    private int headingBins;
+    private int goalCount;
+    private double cellSize;
+    private Pose2d[] goals;
+
+    private int dataOffset;
+
+    /**
+     * Maps a cost-to-go file into memory.
+     *
+     * @param path The file written by {@link CostToGoMapGenerator}.
+     * @throws IOException If the file can't be read or isn't a cost-to-go map.
+     */
+    public CostToGoMap(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != magic) throw new IOException("Not a cost-to-go map: " + path);
+
+        width = buffer.getInt();
+        height = buffer.getInt();
+        headingBins = buffer.getInt();
+        goalCount = buffer.getInt();
+        cellSize = buffer.getDouble();
+
+        goals = new Pose2d[goalCount];
+        for (int i = 0; i < goalCount; i++) {
+            goals[i] = new Pose2d(buffer.getDouble(), buffer.getDouble(), new Rotation2d(buffer.getDouble()));
+        }
+
+        dataOffset = buffer.position();
+
+        long expected = dataOffset + 2L * width * height * headingBins * goalCount;
+        if (buffer.capacity() != expected) throw new IOException("Cost-to-go map is " + buffer.capacity() + " bytes, expected " + expected + ": " + path);
+    }
+
+    /** Gets the byte offset of the first goal's entry for the cell and heading bin a pose falls in. */
+    private int getOffset(Pose2d pose) {
+        int x = MathUtil.clamp((int) Math.floor(pose.getX() / cellSize), 0, width - 1);
+        int y = MathUtil.clamp((int) Math.floor(pose.getY() / cellSize), 0, height - 1);
+        int heading = Math.floorMod((int) Math.round(pose.getRotation().getRadians() / (2 * Math.PI) * headingBins), headingBins);
+
+        return dataOffset + 2 * (((y * width + x) * headingBins + heading) * goalCount);
+    }
+
+    /**
+     * Gets the time it takes to reach a goal from a pose.
+     *
+     * @param pose The pose to start from.
+     * @param goalIndex The index of the goal.
+     * @return The time in seconds, or positive infinity if the goal can't be reached.
+     */
+    public double getTime(Pose2d pose, int goalIndex) {
+        int time = buffer.getShort(getOffset(pose) + 2 * goalIndex) & 0xFFFF;
+
+        return time == unreachable ? Double.POSITIVE_INFINITY : time / 1000.0;
+    }
+
+    /**
+     * Gets the time it takes to reach a goal from a pose.
+     *
+     * @return The time in seconds, or NaN if the goal isn't in the map.
+     */
+    public double getTime(Pose2d pose, Pose2d goal) {
+        int index = indexOf(goal);
+
+        return index < 0 ? Double.NaN : getTime(pose, index);
+    }
+
+    /**
+     * Finds the goal that is quickest to reach from a pose.
+     *
+     * @return The index of the goal, or -1 if none can be reached.
+     */
+    public int getBestGoal(Pose2d pose) {
+        int offset = getOffset(pose);
+        int best = -1;
+        int bestTime = unreachable;
+
+        for (int i = 0; i < goalCount; i++) {
+            int time = buffer.getShort(offset + 2 * i) & 0xFFFF;
+
+            if (time < bestTime) {
+                best = i;
+                bestTime = time;
+            }
+        }
+
+        return best;
+    }
+
+    /** Gets the index of a goal in the map, or -1 if it isn't one of the map's goals. */
+    public int indexOf(Pose2d goal) {
+        for (int i = 0; i < goalCount; i++) {
+            if (goals[i].getTranslation().getDistance(goal.getTranslation()) < 1e-3
+                && Math.abs(goals[i].getRotation().minus(goal.getRotation()).getRadians()) < 1e-3) return i;
+        }
+
+        return -1;
+    }
+
+    /** Gets a goal by its index. */
+    public Pose2d getGoal(int goalIndex) {
+        return goals[goalIndex];
+    }
+
+    /** Gets the number of goals in the map. */
+    public int getGoalCount() {
+        return goalCount;
+    }
+}
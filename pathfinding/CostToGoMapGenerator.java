@@ -0,0 +1,188 @@
+package frc.robot.subsystems.drivetrain.pathfinding;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import frc.robot.Constants.Poses;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Writes the {@link CostToGoMap} for every reef pose.
+ *
+ * For each goal, a Dijkstra search outward from the goal gives the path length to every free cell.
+ * Cells inside an inflated obstacle use the length from their nearest free cell.
+ * The travel time is the longer of driving that length and turning to the goal's heading, each with a trapezoid profile from rest,
+ * since the robot turns while it drives.
+ *
+ * Run this off-robot whenever the field or the robot's constraints change, and deploy the output:
+ * <pre>
+ * java frc.robot.subsystems.drivetrain.pathfinding.CostToGoMapGenerator src/main/deploy/costtogo.bin
+ * </pre>
+ */
+public class CostToGoMapGenerator {
+    public static final Pose2d[] goals = {
+        Poses.REEF_Side1Left, Poses.REEF_Side1Right,
+        Poses.REEF_Side2Left, Poses.REEF_Side2Right,
+        Poses.REEF_Side3Left, Poses.REEF_Side3Right,
+        Poses.REEF_Side4Left, Poses.REEF_Side4Right,
+        Poses.REEF_Side5Left, Poses.REEF_Side5Right,
+        Poses.REEF_Side6Left, Poses.REEF_Side6Right
+    };
+
+    private static final int[][] neighbors = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    public static void main(String[] args) throws IOException {
+        String output = args.length > 0 ? args[0] : "src/main/deploy/" + DriveConstants.costToGoFile;
+
+        long start = System.nanoTime();
+        generate(output);
+
+        System.out.printf("Wrote %s in %.1f s%n", output, (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Computes the map and writes it to a file. */
+    public static void generate(String output) throws IOException {
+        NavigationGrid grid = Pathfinder.createFieldGrid();
+
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int headingBins = DriveConstants.costToGoHeadingBins;
+        double cellSize = grid.getCellSize();
+
+        // The nearest free cell to each blocked cell, shared by every goal
+        int[] nearestFree = new int[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int[] free = grid.findNearestFree(x, y);
+                nearestFree[grid.index(x, y)] = free == null ? -1 : grid.index(free[0], free[1]);
+            }
+        }
+
+        // Path lengths from every cell to every goal
+        double[][] distances = new double[goals.length][];
+        for (int g = 0; g < goals.length; g++) {
+            distances[g] = getDistances(grid, nearestFree, goals[g]);
+        }
+
+        double maxVelocity = DriveConstants.pathfindingMaxVelocity.in(MetersPerSecond);
+        double maxAcceleration = DriveConstants.pathfindingMaxAcceleration.in(MetersPerSecondPerSecond);
+        double maxAngularVelocity = DriveConstants.maxAngularVelocity.in(RadiansPerSecond);
+        double maxAngularAcceleration = DriveConstants.maxAngularAcceleration.in(RadiansPerSecondPerSecond);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 16))) {
+            out.writeInt(CostToGoMap.magic);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(headingBins);
+            out.writeInt(goals.length);
+            out.writeDouble(cellSize);
+
+            for (Pose2d goal : goals) {
+                out.writeDouble(goal.getX());
+                out.writeDouble(goal.getY());
+                out.writeDouble(goal.getRotation().getRadians());
+            }
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    for (int h = 0; h < headingBins; h++) {
+                        double heading = 2 * Math.PI * h / headingBins;
+
+                        for (int g = 0; g < goals.length; g++) {
+                            double distance = distances[g][grid.index(x, y)];
+
+                            if (Double.isInfinite(distance)) {
+                                out.writeShort(CostToGoMap.unreachable);
+                                continue;
+                            }
+
+                            double turn = Math.abs(MathUtil.angleModulus(goals[g].getRotation().getRadians() - heading));
+                            double time = Math.max(
+                                getProfileTime(distance, maxVelocity, maxAcceleration),
+                                getProfileTime(turn, maxAngularVelocity, maxAngularAcceleration));
+
+                            out.writeShort((int) Math.min(Math.round(time * 1000), CostToGoMap.unreachable - 1));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the path length from every cell to a goal.
+     *
+     * The search starts at the goal's nearest free cell, seeded with the straight-line distance from there to the goal.
+     */
+    private static double[] getDistances(NavigationGrid grid, int[] nearestFree, Pose2d goal) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        double[] distances = new double[width * height];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+
+        int[] seed = grid.findNearestFree(grid.toCellX(goal.getX()), grid.toCellY(goal.getY()));
+        if (seed == null) return distances;
+
+        // Each entry is {distance, cell}
+        PriorityQueue<double[]> open = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+
+        int seedIndex = grid.index(seed[0], seed[1]);
+        distances[seedIndex] = grid.getCellCenter(seed[0], seed[1]).getDistance(goal.getTranslation());
+        open.add(new double[] {distances[seedIndex], seedIndex});
+
+        while (!open.isEmpty()) {
+            double[] entry = open.poll();
+            int cell = (int) entry[1];
+
+            if (entry[0] > distances[cell]) continue;
+
+            int x = cell % width;
+            int y = cell / width;
+
+            for (int[] offset : neighbors) {
+                int nx = x + offset[0];
+                int ny = y + offset[1];
+
+                if (grid.isBlocked(nx, ny)) continue;
+                if (offset[0] != 0 && offset[1] != 0 && (grid.isBlocked(x + offset[0], y) || grid.isBlocked(x, y + offset[1]))) continue;
+
+                int next = grid.index(nx, ny);
+                double distance = distances[cell] + Math.hypot(offset[0], offset[1]) * grid.getCellSize();
+
+                if (distance < distances[next]) {
+                    distances[next] = distance;
+                    open.add(new double[] {distance, next});
+                }
+            }
+        }
+
+        // Cells inside obstacles leave through their nearest free cell
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int free = nearestFree[grid.index(x, y)];
+                if (!grid.isBlocked(x, y) || free < 0) continue;
+
+                distances[grid.index(x, y)] = distances[free] + grid.getCellCenter(x, y).getDistance(grid.getCellCenter(free % width, free / width));
+            }
+        }
+
+        return distances;
+    }
+
+    /** Gets the time a trapezoid profile from rest to rest takes to cover a distance. */
+    private static double getProfileTime(double distance, double maxVelocity, double maxAcceleration) {
+        double accelDistance = maxVelocity * maxVelocity / maxAcceleration;
+
+        if (distance < accelDistance) return 2 * Math.sqrt(distance / maxAcceleration);
+
+        return distance / maxVelocity + maxVelocity / maxAcceleration;
+    }
+}
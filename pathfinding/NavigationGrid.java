@@ -0,0 +1,202 @@
+package frc.robot.subsystems.drivetrain.pathfinding;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * An occupancy grid over the field.
+ *
+ * Obstacles are stored already inflated by the robot's footprint, so the planner can treat the robot as a point.
+ * Static obstacles (walls, the reefs) are set once; dynamic obstacles (other robots) are rebuilt whenever they move.
+ */
+public class NavigationGrid {
+    private double cellSize;
+    private int width;
+    private int height;
+
+    private boolean[] staticBlocked;
+    private boolean[] blocked;
+
+    /**
+     * Creates an empty grid.
+     *
+     * @param fieldLength The length of the field (x) in meters.
+     * @param fieldWidth The width of the field (y) in meters.
+     * @param cellSize The side length of one cell in meters.
+     */
+    public NavigationGrid(double fieldLength, double fieldWidth, double cellSize) {
+        this.cellSize = cellSize;
+        this.width = (int) Math.ceil(fieldLength / cellSize);
+        this.height = (int) Math.ceil(fieldWidth / cellSize);
+
+        staticBlocked = new boolean[width * height];
+        blocked = new boolean[width * height];
+    }
+
+    /**
+     * Blocks every cell within some distance of the field's edges.
+     *
+     * @param inflation The distance from the edges in meters.
+     */
+    public void addWalls(double inflation) {
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                Translation2d center = getCellCenter(x, y);
+
+                double distance = Math.min(
+                    Math.min(center.getX(), width * cellSize - center.getX()),
+                    Math.min(center.getY(), height * cellSize - center.getY()));
+
+                if (distance < inflation) staticBlocked[index(x, y)] = true;
+            }
+        }
+
+        blocked = staticBlocked.clone();
+    }
+
+    /**
+     * Adds a circular static obstacle.
+     *
+     * @param center The center of the obstacle.
+     * @param radius The radius of the obstacle plus the inflation, in meters.
+     */
+    public void addObstacle(Translation2d center, double radius) {
+        fillCircle(staticBlocked, center, radius);
+
+        blocked = staticBlocked.clone();
+    }
+
+    /**
+     * Replaces the dynamic obstacles.
+     *
+     * @param centers The centers of the obstacles.
+     * @param radius The radius of each obstacle plus the inflation, in meters.
+     */
+    public void setDynamicObstacles(List<Translation2d> centers, double radius) {
+        boolean[] newBlocked = staticBlocked.clone();
+
+        for (Translation2d center : centers) {
+            fillCircle(newBlocked, center, radius);
+        }
+
+        blocked = newBlocked;
+    }
+
+    private void fillCircle(boolean[] cells, Translation2d center, double radius) {
+        int minX = Math.max(toCellX(center.getX() - radius), 0);
+        int maxX = Math.min(toCellX(center.getX() + radius), width - 1);
+        int minY = Math.max(toCellY(center.getY() - radius), 0);
+        int maxY = Math.min(toCellY(center.getY() + radius), height - 1);
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                if (getCellCenter(x, y).getDistance(center) <= radius) cells[index(x, y)] = true;
+            }
+        }
+    }
+
+    /** Gets whether a cell is blocked. Cells off the grid are always blocked. */
+    public boolean isBlocked(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return true;
+
+        return blocked[index(x, y)];
+    }
+
+    /**
+     * Checks whether the straight line between two cells crosses any blocked cell.
+     *
+     * The line is walked in quarter-cell steps, which is enough to catch every cell it passes through.
+     */
+    public boolean hasLineOfSight(int x0, int y0, int x1, int y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)) * 4);
+
+        for (int i = 0; i <= steps; i++) {
+            double t = steps == 0 ? 0 : (double) i / steps;
+
+            if (isBlocked((int) Math.round(x0 + dx * t), (int) Math.round(y0 + dy * t))) return false;
+        }
+
+        return true;
+    }
+
+    /** Checks whether the straight line between two points on the field crosses any blocked cell. */
+    public boolean isSegmentClear(Translation2d start, Translation2d end) {
+        return hasLineOfSight(toCellX(start.getX()), toCellY(start.getY()), toCellX(end.getX()), toCellY(end.getY()));
+    }
+
+    /**
+     * Finds the nearest free cell to a cell with a breadth-first search.
+     *
+     * @return The {x, y} of the free cell, or null if the grid is full.
+     */
+    public int[] findNearestFree(int x, int y) {
+        x = Math.max(0, Math.min(x, width - 1));
+        y = Math.max(0, Math.min(y, height - 1));
+
+        if (!isBlocked(x, y)) return new int[] {x, y};
+
+        boolean[] visited = new boolean[width * height];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        queue.add(index(x, y));
+        visited[index(x, y)] = true;
+
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            int cx = cell % width;
+            int cy = cell / width;
+
+            if (!isBlocked(cx, cy)) return new int[] {cx, cy};
+
+            for (int[] offset : new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}}) {
+                int nx = cx + offset[0];
+                int ny = cy + offset[1];
+
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height || visited[index(nx, ny)]) continue;
+
+                visited[index(nx, ny)] = true;
+                queue.add(index(nx, ny));
+            }
+        }
+
+        return null;
+    }
+
+    /** Gets the column of the cell that contains an x coordinate. */
+    public int toCellX(double x) {
+        return (int) Math.floor(x / cellSize);
+    }
+
+    /** Gets the row of the cell that contains a y coordinate. */
+    public int toCellY(double y) {
+        return (int) Math.floor(y / cellSize);
+    }
+
+    /** Gets the center of a cell on the field. */
+    public Translation2d getCellCenter(int x, int y) {
+        return new Translation2d((x + 0.5) * cellSize, (y + 0.5) * cellSize);
+    }
+
+    /** Gets the index of a cell in the flattened grid. */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /** Gets the number of columns. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Gets the number of rows. */
+    public int getHeight() {
+        return height;
+    }
+
+    /** Gets the side length of one cell in meters. */
+    public double getCellSize() {
+        return cellSize;
+    }
+}
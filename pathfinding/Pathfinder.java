@@ -0,0 +1,327 @@
+package frc.robot.subsystems.drivetrain.pathfinding;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plans obstacle-free paths on a background thread.
+ *
+ * The field's walls and both reefs are static obstacles, and other robots can be added as dynamic obstacles.
+ * Every obstacle is inflated by the robot's footprint so the robot can be planned as a point.
+ *
+ * The planner's corners are smoothed with a spline, which can bulge past them into an obstacle.
+ * A spline that does is replaced by straight legs between the corners, which the planner already checked are clear.
+ *
+ * Plans are kept as long as they stay valid. A new plan is only made when the goal changes,
+ * when a dynamic obstacle blocks the current path, or when the robot falls too far behind the trajectory.
+ *
+ * The grid and planner are only touched by the background thread. Callers only see finished {@link PlannedPath}s.
+ */
+public class Pathfinder {
+    private NavigationGrid grid;
+    private ThetaStarPlanner planner;
+
+    private ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Pathfinder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AtomicBoolean planning = new AtomicBoolean(false);
+    private AtomicReference<PlannedPath> path = new AtomicReference<>();
+    private AtomicReference<List<Translation2d>> pendingObstacles = new AtomicReference<>();
+
+    private volatile Pose2d failedGoal;
+    private volatile double lastPlanTime;
+    private volatile int lastPlanExpanded;
+    private volatile int planCount;
+    private volatile int splineFallbacks;
+
+    /** Creates a new Pathfinder with the field's static obstacles. */
+    public Pathfinder() {
+        grid = createFieldGrid();
+        planner = new ThetaStarPlanner(grid);
+    }
+
+    /** Creates a grid with the field's walls and both reefs, inflated by the robot's footprint. */
+    public static NavigationGrid createFieldGrid() {
+        double inflation = getInflation();
+
+        NavigationGrid grid = new NavigationGrid(DriveConstants.fieldLength.in(Meters), DriveConstants.fieldWidth.in(Meters), DriveConstants.navGridCellSize.in(Meters));
+        grid.addWalls(inflation);
+        grid.addObstacle(DriveConstants.blueReefCenter, DriveConstants.reefRadius.in(Meters) + inflation);
+        grid.addObstacle(DriveConstants.redReefCenter, DriveConstants.reefRadius.in(Meters) + inflation);
+
+        return grid;
+    }
+
+    /** Gets how far obstacles are inflated by: half the diagonal of the robot with bumpers, plus clearance. */
+    public static double getInflation() {
+        double length = DriveConstants.robotLength.plus(DriveConstants.bumperThickness.times(2)).in(Meters);
+        double width = DriveConstants.robotWidth.plus(DriveConstants.bumperThickness.times(2)).in(Meters);
+
+        return Math.hypot(length, width) / 2 + DriveConstants.pathfindingClearance.in(Meters);
+    }
+
+    /**
+     * Replaces the dynamic obstacles, like other robots seen by vision.
+     *
+     * They are applied on the next update. The current path is only replaced if one of them blocks it.
+     *
+     * @param obstacles The centers of the obstacles on the field.
+     */
+    public void setDynamicObstacles(List<Translation2d> obstacles) {
+        pendingObstacles.set(List.copyOf(obstacles));
+    }
+
+    /**
+     * Starts a new plan in the background if the current one is missing, stale, or blocked.
+     *
+     * Call this every cycle while following a path. It never blocks.
+     *
+     * @param pose The current pose.
+     * @param fieldSpeeds The current field relative speeds.
+     * @param goal The pose to plan to.
+     * @param timestamp The current FPGA time in seconds.
+     */
+    public void update(Pose2d pose, ChassisSpeeds fieldSpeeds, Pose2d goal, double timestamp) {
+        if (planning.get()) return;
+
+        PlannedPath current = path.get();
+        boolean hasPath = current != null && current.getGoal().equals(goal);
+
+        boolean needsPlan = !hasPath && !goal.equals(failedGoal);
+        if (hasPath && current.sample(timestamp).poseMeters.getTranslation().getDistance(pose.getTranslation()) > DriveConstants.replanDeviation.in(Meters)) needsPlan = true;
+
+        boolean obstaclesChanged = pendingObstacles.get() != null;
+
+        if ((needsPlan || obstaclesChanged) && planning.compareAndSet(false, true)) {
+            boolean forcePlan = needsPlan;
+
+            executor.execute(() -> {
+                try {
+                    plan(pose, fieldSpeeds, goal, timestamp, forcePlan);
+                } finally {
+                    planning.set(false);
+                }
+            });
+        }
+    }
+
+    /** Runs on the background thread. */
+    private void plan(Pose2d pose, ChassisSpeeds fieldSpeeds, Pose2d goal, double timestamp, boolean forcePlan) {
+        List<Translation2d> obstacles = pendingObstacles.getAndSet(null);
+
+        if (obstacles != null) {
+            grid.setDynamicObstacles(obstacles, DriveConstants.dynamicObstacleRadius.in(Meters) + getInflation());
+
+            // Keeping the current path if the new obstacles don't block it
+            PlannedPath current = path.get();
+            if (!forcePlan && current != null && current.getGoal().equals(goal) && isClear(current.getTrajectory())) return;
+        }
+
+        double startTime = System.nanoTime();
+
+        int[] start = grid.findNearestFree(grid.toCellX(pose.getX()), grid.toCellY(pose.getY()));
+        int[] end = grid.findNearestFree(grid.toCellX(goal.getX()), grid.toCellY(goal.getY()));
+
+        List<int[]> cells = (start == null || end == null) ? List.of() : planner.plan(start[0], start[1], end[0], end[1]);
+
+        lastPlanTime = (System.nanoTime() - startTime) / 1e9;
+        lastPlanExpanded = planner.getExpanded();
+        planCount++;
+
+        if (cells.isEmpty()) {
+            path.set(null);
+            failedGoal = goal;
+            return;
+        }
+
+        List<Translation2d> waypoints = new ArrayList<>();
+        for (int[] cell : cells) {
+            waypoints.add(grid.getCellCenter(cell[0], cell[1]));
+        }
+
+        Trajectory trajectory = smooth(pose, fieldSpeeds, goal, waypoints);
+
+        if (!isClear(trajectory)) {
+            trajectory = connect(pose, fieldSpeeds, goal, waypoints);
+            splineFallbacks++;
+        }
+
+        path.set(new PlannedPath(trajectory, waypoints, goal, timestamp));
+        failedGoal = null;
+    }
+
+    /**
+     * Checks that a trajectory doesn't pass through any blocked cell.
+     *
+     * The robot or the goal can be inside an inflated obstacle, so the blocked samples at either end are skipped,
+     * and only the part between the first and last free samples is checked.
+     */
+    private boolean isClear(Trajectory trajectory) {
+        List<Trajectory.State> states = trajectory.getStates();
+
+        int first = 0;
+        while (first < states.size() && isBlocked(states.get(first).poseMeters.getTranslation())) first++;
+
+        int last = states.size() - 1;
+        while (last > first && isBlocked(states.get(last).poseMeters.getTranslation())) last--;
+
+        for (int i = first + 1; i <= last; i++) {
+            if (!grid.isSegmentClear(states.get(i - 1).poseMeters.getTranslation(), states.get(i).poseMeters.getTranslation())) return false;
+        }
+
+        return true;
+    }
+
+    /** Gets whether the cell a point is in is blocked. */
+    private boolean isBlocked(Translation2d point) {
+        return grid.isBlocked(grid.toCellX(point.getX()), grid.toCellY(point.getY()));
+    }
+
+    /**
+     * Smooths the corners of a path into a trajectory with a cubic spline.
+     *
+     * The trajectory starts at the robot, passes through every corner that isn't right next to another point, and ends at the goal.
+     * The last leg from the nearest free cell to the goal is the final approach into the inflated zone around the goal.
+     */
+    private Trajectory smooth(Pose2d pose, ChassisSpeeds fieldSpeeds, Pose2d goal, List<Translation2d> waypoints) {
+        double minSpacing = 2 * grid.getCellSize();
+
+        List<Translation2d> interior = new ArrayList<>();
+        Translation2d previous = pose.getTranslation();
+
+        for (int i = 1; i < waypoints.size(); i++) {
+            Translation2d point = waypoints.get(i);
+
+            if (point.getDistance(previous) > minSpacing && point.getDistance(goal.getTranslation()) > minSpacing) {
+                interior.add(point);
+                previous = point;
+            }
+        }
+
+        Translation2d first = interior.isEmpty() ? goal.getTranslation() : interior.get(0);
+        Translation2d last = interior.isEmpty() ? pose.getTranslation() : interior.get(interior.size() - 1);
+
+        Rotation2d startHeading = first.minus(pose.getTranslation()).getAngle();
+        Rotation2d endHeading = goal.getTranslation().minus(last).getAngle();
+
+        // Starting at whatever speed the robot already has along the path
+        double startVelocity = fieldSpeeds.vxMetersPerSecond * startHeading.getCos() + fieldSpeeds.vyMetersPerSecond * startHeading.getSin();
+
+        TrajectoryConfig config = new TrajectoryConfig(DriveConstants.pathfindingMaxVelocity, DriveConstants.pathfindingMaxAcceleration)
+            .setStartVelocity(MathUtil.clamp(startVelocity, 0, DriveConstants.pathfindingMaxVelocity.in(MetersPerSecond)))
+            .setEndVelocity(0);
+
+        return TrajectoryGenerator.generateTrajectory(
+            new Pose2d(pose.getTranslation(), startHeading),
+            interior,
+            new Pose2d(goal.getTranslation(), endHeading),
+            config);
+    }
+
+    /**
+     * Connects the corners of a path with straight legs, stopping at each corner.
+     *
+     * This is slower to drive than the spline, but it stays on the lines the planner checked.
+     */
+    private Trajectory connect(Pose2d pose, ChassisSpeeds fieldSpeeds, Pose2d goal, List<Translation2d> waypoints) {
+        List<Translation2d> points = new ArrayList<>();
+        points.add(pose.getTranslation());
+
+        for (int i = 1; i < waypoints.size(); i++) {
+            points.add(waypoints.get(i));
+        }
+
+        points.add(goal.getTranslation());
+
+        Trajectory trajectory = null;
+        Translation2d start = points.get(0);
+
+        for (int i = 1; i < points.size(); i++) {
+            Translation2d end = points.get(i);
+
+            // Legs too short to give a heading are merged into the next one
+            if (end.getDistance(start) < 1e-3 && i < points.size() - 1) continue;
+
+            Rotation2d heading = end.minus(start).getAngle();
+
+            // Only the first leg starts moving, the rest start from a stop at their corner
+            double startVelocity = trajectory == null ? fieldSpeeds.vxMetersPerSecond * heading.getCos() + fieldSpeeds.vyMetersPerSecond * heading.getSin() : 0;
+
+            TrajectoryConfig config = new TrajectoryConfig(DriveConstants.pathfindingMaxVelocity, DriveConstants.pathfindingMaxAcceleration)
+                .setStartVelocity(MathUtil.clamp(startVelocity, 0, DriveConstants.pathfindingMaxVelocity.in(MetersPerSecond)))
+                .setEndVelocity(0);
+
+            Trajectory leg = TrajectoryGenerator.generateTrajectory(new Pose2d(start, heading), List.of(), new Pose2d(end, heading), config);
+
+            trajectory = trajectory == null ? leg : trajectory.concatenate(leg);
+            start = end;
+        }
+
+        return trajectory;
+    }
+
+    /**
+     * Gets the current path to a goal.
+     *
+     * Returns null if there is no path to that goal yet.
+     */
+    public PlannedPath getPath(Pose2d goal) {
+        PlannedPath current = path.get();
+
+        return (current != null && current.getGoal().equals(goal)) ? current : null;
+    }
+
+    /** Gets whether planning to a goal failed because there is no free path to it. */
+    public boolean hasFailed(Pose2d goal) {
+        return goal.equals(failedGoal);
+    }
+
+    /** Gets whether a plan is running in the background. */
+    public boolean isPlanning() {
+        return planning.get();
+    }
+
+    /** Drops the current path so the next update plans from scratch. */
+    public void reset() {
+        path.set(null);
+        failedGoal = null;
+    }
+
+    /** Gets how long the last plan took in seconds. */
+    public double getLastPlanTime() {
+        return lastPlanTime;
+    }
+
+    /** Gets how many cells the last plan expanded. */
+    public int getLastPlanExpanded() {
+        return lastPlanExpanded;
+    }
+
+    /** Gets how many plans have been made. */
+    public int getPlanCount() {
+        return planCount;
+    }
+
+    /** Gets how many plans fell back to straight legs because their spline hit an obstacle. */
+    public int getSplineFallbacks() {
+        return splineFallbacks;
+    }
+}
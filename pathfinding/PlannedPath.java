@@ -0,0 +1,63 @@
+package frc.robot.subsystems.drivetrain.pathfinding;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import java.util.List;
+
+/** A smoothed, time-parameterized path to a goal, as produced by the {@link Pathfinder}. */
+public final class PlannedPath {
+    private final Trajectory trajectory;
+    private final List<Translation2d> waypoints;
+    private final Pose2d goal;
+    private final double startTimestamp;
+
+    /**
+     * Creates a new PlannedPath.
+     *
+     * @param trajectory The smoothed trajectory.
+     * @param waypoints The corners of the path the trajectory was smoothed from.
+     * @param goal The goal the path was planned to.
+     * @param startTimestamp The FPGA time the trajectory starts at, in seconds.
+     */
+    public PlannedPath(Trajectory trajectory, List<Translation2d> waypoints, Pose2d goal, double startTimestamp) {
+        this.trajectory = trajectory;
+        this.waypoints = List.copyOf(waypoints);
+        this.goal = goal;
+        this.startTimestamp = startTimestamp;
+    }
+
+    /**
+     * Samples the trajectory.
+     *
+     * @param timestamp The FPGA time to sample at, in seconds.
+     */
+    public Trajectory.State sample(double timestamp) {
+        return trajectory.sample(timestamp - startTimestamp);
+    }
+
+    /** Gets whether the trajectory has ended at a time. */
+    public boolean isFinished(double timestamp) {
+        return timestamp - startTimestamp >= trajectory.getTotalTimeSeconds();
+    }
+
+    /** Gets the smoothed trajectory. */
+    public Trajectory getTrajectory() {
+        return trajectory;
+    }
+
+    /** Gets the corners of the path the trajectory was smoothed from. */
+    public List<Translation2d> getWaypoints() {
+        return waypoints;
+    }
+
+    /** Gets the goal the path was planned to. */
+    public Pose2d getGoal() {
+        return goal;
+    }
+
+    /** Gets the FPGA time the trajectory starts at, in seconds. */
+    public double getStartTimestamp() {
+        return startTimestamp;
+    }
+}
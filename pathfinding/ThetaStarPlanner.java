@@ -0,0 +1,129 @@
+package frc.robot.subsystems.drivetrain.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Plans any-angle paths on a {@link NavigationGrid} with Theta*.
+ *
+ * Theta* is A* that lets a cell's parent be any earlier cell it can see, so paths cut across the grid
+ * instead of following its 45 degree steps. The result is close to the true shortest path and has few waypoints.
+ *
+ * The search buffers are reused between plans, so one planner must only be used by one thread.
+ */
+public class ThetaStarPlanner {
+    private static final int[][] neighbors = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private NavigationGrid grid;
+
+    private double[] cost;
+    private int[] parent;
+    private boolean[] closed;
+
+    private int expanded;
+
+    /**
+     * Creates a new planner.
+     *
+     * @param grid The grid to plan on.
+     */
+    public ThetaStarPlanner(NavigationGrid grid) {
+        this.grid = grid;
+
+        int size = grid.getWidth() * grid.getHeight();
+        cost = new double[size];
+        parent = new int[size];
+        closed = new boolean[size];
+    }
+
+    /**
+     * Plans a path between two free cells.
+     *
+     * @return The cells of the path as {x, y} pairs from start to goal, or an empty list if there is no path.
+     */
+    public List<int[]> plan(int startX, int startY, int goalX, int goalY) {
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
+        Arrays.fill(closed, false);
+        expanded = 0;
+
+        int width = grid.getWidth();
+        int start = grid.index(startX, startY);
+        int goal = grid.index(goalX, goalY);
+
+        // Each entry is {f, cell}
+        PriorityQueue<double[]> open = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+
+        cost[start] = 0;
+        parent[start] = start;
+        open.add(new double[] {Math.hypot(goalX - startX, goalY - startY), start});
+
+        while (!open.isEmpty()) {
+            int cell = (int) open.poll()[1];
+
+            if (closed[cell]) continue;
+            if (cell == goal) break;
+
+            closed[cell] = true;
+            expanded++;
+
+            int x = cell % width;
+            int y = cell / width;
+
+            for (int[] offset : neighbors) {
+                int nx = x + offset[0];
+                int ny = y + offset[1];
+
+                if (grid.isBlocked(nx, ny)) continue;
+
+                // Diagonal moves may not cut a blocked corner
+                if (offset[0] != 0 && offset[1] != 0 && (grid.isBlocked(x + offset[0], y) || grid.isBlocked(x, y + offset[1]))) continue;
+
+                int next = grid.index(nx, ny);
+                if (closed[next]) continue;
+
+                int p = parent[cell];
+                int px = p % width;
+                int py = p / width;
+
+                double newCost;
+                int newParent;
+
+                if (grid.hasLineOfSight(px, py, nx, ny)) {
+                    newCost = cost[p] + Math.hypot(nx - px, ny - py);
+                    newParent = p;
+                } else {
+                    newCost = cost[cell] + Math.hypot(offset[0], offset[1]);
+                    newParent = cell;
+                }
+
+                if (newCost < cost[next]) {
+                    cost[next] = newCost;
+                    parent[next] = newParent;
+                    open.add(new double[] {newCost + Math.hypot(goalX - nx, goalY - ny), next});
+                }
+            }
+        }
+
+        if (parent[goal] < 0) return Collections.emptyList();
+
+        List<int[]> path = new ArrayList<>();
+
+        for (int cell = goal; ; cell = parent[cell]) {
+            path.add(new int[] {cell % width, cell / width});
+
+            if (cell == start) break;
+        }
+
+        Collections.reverse(path);
+        return path;
+    }
+
+    /** Gets the number of cells expanded by the last plan. */
+    public int getExpanded() {
+        return expanded;
+    }
+}
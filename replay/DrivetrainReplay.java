@@ -0,0 +1,293 @@
+package frc.robot.subsystems.drivetrain.replay;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.util.datalog.DataLogWriter;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StructArrayLogEntry;
+import edu.wpi.first.util.datalog.StructLogEntry;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import frc.robot.subsystems.drivetrain.Drivetrain;
+import frc.robot.subsystems.drivetrain.DrivetrainIOReplay;
+import frc.robot.subsystems.drivetrain.LoopWatchdog;
+import frc.robot.subsystems.drivetrain.ModuleIOReplay;
+import java.io.IOException;
+
+/**
+ * Re-runs the drivetrain logic over a recorded log as fast as possible.
+ *
+ * There is no wall-clock pacing, every cycle runs as soon as the previous one is done.
+ * The re-emitted pose and module states are written to a new log next to their difference from the recorded values.
+ * The recorded commanded speeds and heading lock are fed back in, so the control loop's setpoints and the outputs sent to the modules
+ * are compared too, and a change to the controller shows up as a difference instead of passing silently.
+ */
+public class DrivetrainReplay {
+    private static final String drivetrainKey = "/RealOutputs/Subsystems/Drivetrain";
+    private static final String[] moduleSuffixes = { "TalonFX", "SparkMax", "Sim", "CTRE" };
+    private static final String[] backendSuffixes = { "Modules", "CTRE" };
+
+    private String inputPath;
+    private String outputPath;
+    private String headingKey;
+
+    /** The outcome of a replay run. */
+    public static class Result {
+        public long cycles;
+        public double seconds;
+
+        public double maxPoseError;
+        public double meanPoseError;
+
+        public double maxStateError;
+
+        public double maxSetpointError;
+        public double maxSetpointAngleError;
+        public double maxSpeedsError;
+        public double maxOutputError;
+
+        /** Gets the replay throughput in cycles per second. */
+        public double getCyclesPerSecond() {
+            return cycles / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "Replayed %d cycles in %.3f s (%.0f cycles/s)%nPose error: max %.4f m, mean %.4f m%nModule state error: max %.4f m/s%n"
+                    + "Module setpoint error: max %.4f m/s, %.4f rad%nSpeeds setpoint error: max %.4f%nModule output error: max %.4f m/s",
+                cycles, seconds, getCyclesPerSecond(), maxPoseError, meanPoseError, maxStateError,
+                maxSetpointError, maxSetpointAngleError, maxSpeedsError, maxOutputError);
+        }
+    }
+
+    /**
+     * Creates a new drivetrain replay.
+     *
+     * @param inputPath The recorded log to replay.
+     * @param outputPath The log to write the replayed outputs to.
+     * @param headingKey The key of the recorded heading, or null to estimate heading from the modules.
+     *                   The drivetrain's Gyro/SampleYaws replays the heading of every odometry sample.
+     */
+    public DrivetrainReplay(String inputPath, String outputPath, String headingKey) {
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.headingKey = headingKey;
+    }
+
+    /** Runs the replay to the end of the log. */
+    public Result run() throws IOException {
+        Result result = new Result();
+
+        LogCycleReader log = new LogCycleReader(inputPath);
+        if (!log.nextCycle()) return result;
+
+        ModuleIOReplay[] modules = new ModuleIOReplay[DriveConstants.translations.length];
+        for (int i = 0; i < modules.length; i++) {
+            String key = findModuleKey(log, i);
+            if (key == null) throw new IOException("No inputs were found for module " + i);
+
+            modules[i] = new ModuleIOReplay(log, key);
+        }
+
+        Drivetrain drivetrain = new Drivetrain(null, null, new DrivetrainIOReplay(log, headingKey, modules));
+
+        DataLogWriter writer = new DataLogWriter(outputPath);
+        StructLogEntry<Pose2d> poseEntry = StructLogEntry.create(writer, "/ReplayOutputs/Subsystems/Drivetrain/RobotPose", Pose2d.struct);
+        StructArrayLogEntry<SwerveModuleState> statesEntry = StructArrayLogEntry.create(writer, "/ReplayOutputs/Subsystems/Drivetrain/States/Actual", SwerveModuleState.struct);
+        DoubleLogEntry poseErrorEntry = new DoubleLogEntry(writer, "/ReplayOutputs/Subsystems/Drivetrain/PoseError");
+        DoubleLogEntry stateErrorEntry = new DoubleLogEntry(writer, "/ReplayOutputs/Subsystems/Drivetrain/StateError");
+        StructArrayLogEntry<SwerveModuleState> setpointsEntry = StructArrayLogEntry.create(writer, "/ReplayOutputs/Subsystems/Drivetrain/States/Setpoint", SwerveModuleState.struct);
+        StructLogEntry<ChassisSpeeds> speedsEntry = StructLogEntry.create(writer, "/ReplayOutputs/Subsystems/Drivetrain/Speeds/Setpoint", ChassisSpeeds.struct);
+        DoubleLogEntry setpointErrorEntry = new DoubleLogEntry(writer, "/ReplayOutputs/Subsystems/Drivetrain/SetpointError");
+        DoubleLogEntry setpointAngleErrorEntry = new DoubleLogEntry(writer, "/ReplayOutputs/Subsystems/Drivetrain/SetpointAngleError");
+        DoubleLogEntry speedsErrorEntry = new DoubleLogEntry(writer, "/ReplayOutputs/Subsystems/Drivetrain/SpeedsError");
+        DoubleLogEntry outputErrorEntry = new DoubleLogEntry(writer, "/ReplayOutputs/Subsystems/Drivetrain/OutputError");
+
+        String targetsKey = findTargetsKey(log);
+
+        double poseErrorSum = 0;
+        long poseErrorCount = 0;
+        boolean seeded = false;
+
+        long start = System.nanoTime();
+
+        do {
+            // Commands run after the subsystems, so the recorded command is the one the control loop used this cycle
+            ChassisSpeeds desired = log.getStruct(drivetrainKey + "/Speeds/Desired", ChassisSpeeds.struct);
+            if (log.getBoolean(drivetrainKey + "/Control/XStates", false)) {
+                drivetrain.xStates();
+            } else if (desired != null) {
+                drivetrain.drive(desired);
+            }
+
+            drivetrain.setHeadingLock(log.getBoolean(drivetrainKey + "/HeadingLocked", false), log.getStruct(drivetrainKey + "/HeadingSetpoint", Rotation2d.struct));
+
+            // Shedding follows the recorded loop timing, not how fast the replay happens to run
+            drivetrain.replayShedLevel(getShedLevel(log.getString(drivetrainKey + "/Watchdog/Level", null)));
+
+            drivetrain.periodic();
+
+            long timestamp = log.getTimestampMicros();
+            Pose2d recordedPose = log.getStruct(drivetrainKey + "/RobotPose", Pose2d.struct);
+
+            // Starting from wherever the robot thought it was
+            if (!seeded && recordedPose != null) {
+                drivetrain.resetPose(recordedPose);
+                seeded = true;
+            }
+
+            Pose2d pose = drivetrain.getPose();
+            SwerveModuleState[] states = drivetrain.getStates();
+
+            poseEntry.append(pose, timestamp);
+            statesEntry.append(states, timestamp);
+
+            if (recordedPose != null) {
+                double error = pose.getTranslation().getDistance(recordedPose.getTranslation());
+
+                poseErrorEntry.append(error, timestamp);
+
+                result.maxPoseError = Math.max(result.maxPoseError, error);
+                poseErrorSum += error;
+                poseErrorCount++;
+            }
+
+            SwerveModuleState[] recordedStates = log.getStructArray(drivetrainKey + "/States/Actual", SwerveModuleState.struct);
+            if (recordedStates != null && recordedStates.length == states.length) {
+                double error = getSpeedError(states, recordedStates);
+
+                stateErrorEntry.append(error, timestamp);
+
+                result.maxStateError = Math.max(result.maxStateError, error);
+            }
+
+            SwerveModuleState[] setpoints = drivetrain.getSetpointStates();
+            ChassisSpeeds speeds = drivetrain.getSetpointSpeeds();
+
+            setpointsEntry.append(setpoints, timestamp);
+            speedsEntry.append(speeds, timestamp);
+
+            SwerveModuleState[] recordedSetpoints = log.getStructArray(drivetrainKey + "/States/Setpoint", SwerveModuleState.struct);
+            if (recordedSetpoints != null && recordedSetpoints.length == setpoints.length) {
+                double error = getSpeedError(setpoints, recordedSetpoints);
+                double angleError = getAngleError(setpoints, recordedSetpoints);
+
+                setpointErrorEntry.append(error, timestamp);
+                setpointAngleErrorEntry.append(angleError, timestamp);
+
+                result.maxSetpointError = Math.max(result.maxSetpointError, error);
+                result.maxSetpointAngleError = Math.max(result.maxSetpointAngleError, angleError);
+            }
+
+            ChassisSpeeds recordedSpeeds = log.getStruct(drivetrainKey + "/Speeds/Setpoint", ChassisSpeeds.struct);
+            if (recordedSpeeds != null) {
+                double error = Math.max(
+                    Math.hypot(speeds.vxMetersPerSecond - recordedSpeeds.vxMetersPerSecond, speeds.vyMetersPerSecond - recordedSpeeds.vyMetersPerSecond),
+                    Math.abs(speeds.omegaRadiansPerSecond - recordedSpeeds.omegaRadiansPerSecond));
+
+                speedsErrorEntry.append(error, timestamp);
+
+                result.maxSpeedsError = Math.max(result.maxSpeedsError, error);
+            }
+
+            // What actually reached the modules, as opposed to what the control loop computed
+            SwerveModuleState[] recordedTargets = targetsKey == null ? null : log.getStructArray(targetsKey, SwerveModuleState.struct);
+            if (recordedTargets != null && recordedTargets.length == modules.length) {
+                SwerveModuleState[] outputs = new SwerveModuleState[modules.length];
+                for (int i = 0; i < modules.length; i++) {
+                    outputs[i] = modules[i].getSetpoint();
+                }
+
+                double error = getSpeedError(outputs, recordedTargets);
+
+                outputErrorEntry.append(error, timestamp);
+
+                result.maxOutputError = Math.max(result.maxOutputError, error);
+            }
+
+            result.cycles++;
+        } while (log.nextCycle());
+
+        result.seconds = (System.nanoTime() - start) / 1e9;
+        result.meanPoseError = poseErrorCount == 0 ? 0 : poseErrorSum / poseErrorCount;
+
+        writer.close();
+
+        return result;
+    }
+
+    /** Gets a recorded shed level, or null if there isn't one or it's no longer a level. */
+    private static LoopWatchdog.ShedLevel getShedLevel(String name) {
+        if (name == null) return null;
+
+        for (LoopWatchdog.ShedLevel level : LoopWatchdog.ShedLevel.values()) {
+            if (level.name().equals(name)) return level;
+        }
+
+        return null;
+    }
+
+    /** Gets the largest wheel speed difference between two sets of module states in meters per second. */
+    private static double getSpeedError(SwerveModuleState[] states, SwerveModuleState[] recorded) {
+        double error = 0;
+        for (int i = 0; i < states.length; i++) {
+            error = Math.max(error, Math.abs(states[i].speedMetersPerSecond - recorded[i].speedMetersPerSecond));
+        }
+
+        return error;
+    }
+
+    /** Gets the largest module angle difference between two sets of module states in radians. */
+    private static double getAngleError(SwerveModuleState[] states, SwerveModuleState[] recorded) {
+        double error = 0;
+        for (int i = 0; i < states.length; i++) {
+            error = Math.max(error, Math.abs(MathUtil.angleModulus(states[i].angle.getRadians() - recorded[i].angle.getRadians())));
+        }
+
+        return error;
+    }
+
+    /** Finds where the drivetrain backend recorded the setpoints it sent to the modules, or null if it didn't. */
+    private static String findTargetsKey(LogCycleReader log) {
+        for (String suffix : backendSuffixes) {
+            String key = String.format("%s/%s/ModuleTargets", drivetrainKey, suffix);
+
+            if (log.getType(key) != null) return key;
+        }
+
+        return null;
+    }
+
+    /** Finds which ModuleIO implementation recorded a module's inputs, or null if none has yet. */
+    static String findModuleKey(LogCycleReader log, int moduleId) {
+        for (String suffix : moduleSuffixes) {
+            String key = String.format("%s/Module%d_%s", drivetrainKey, moduleId, suffix);
+
+            if (log.getEntryNames().stream().anyMatch(name -> name.startsWith(key + "/"))) return key;
+        }
+
+        return null;
+    }
+
+    /**
+     * Runs a replay from the command line.
+     *
+     * Usage: DrivetrainReplay input.wpilog output.wpilog [headingKey]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DrivetrainReplay input.wpilog output.wpilog [headingKey]");
+            System.exit(1);
+        }
+
+        HAL.initialize(500, 0);
+
+        Result result = new DrivetrainReplay(args[0], args[1], args.length > 2 ? args[2] : null).run();
+
+        System.out.println(result);
+    }
+}
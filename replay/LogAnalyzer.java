@@ -0,0 +1,450 @@
+package frc.robot.subsystems.drivetrain.replay;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes drivetrain metrics over a batch of recorded match logs.
+ *
+ * Logs are analyzed in parallel, one per thread, and each one is streamed through a {@link LogCycleReader}.
+ * Every metric is kept in a fixed-size histogram, so memory use depends on the thread count and not on how long or how many the logs are.
+ * Results are written per match and for the whole batch as CSV, JSON, or both.
+ */
+public class LogAnalyzer {
+    private static final String drivetrainKey = "/RealOutputs/Subsystems/Drivetrain";
+    private static final String enabledKey = "/DriverStation/Enabled";
+
+    // A wheel moving this far off what the other wheels agree on is slipping
+    private static final double slipThreshold = 0.5; // m/s
+    private static final int slipCycles = 3;
+
+    // Temperatures are logged in kelvin
+    private static final double kelvinOffset = 273.15;
+
+    /** A histogram with fixed-width bins. Values past the last bin are counted in it. */
+    public static class Histogram {
+        private long[] bins;
+        private double binWidth;
+
+        private long count = 0;
+        private double sum = 0;
+        private double max = 0;
+
+        /**
+         * Creates a new histogram.
+         *
+         * @param binWidth The width of each bin.
+         * @param range The largest value that gets its own bin.
+         */
+        public Histogram(double binWidth, double range) {
+            this.binWidth = binWidth;
+            this.bins = new long[(int) Math.ceil(range / binWidth) + 1];
+        }
+
+        /** Adds a non-negative value. */
+        public void add(double value) {
+            if (!Double.isFinite(value) || value < 0) return;
+
+            bins[Math.min((int) (value / binWidth), bins.length - 1)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        /** Adds every value of another histogram with the same bins. */
+        public void merge(Histogram other) {
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] += other.bins[i];
+            }
+
+            count += other.count;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * Gets a percentile, to within one bin width.
+         *
+         * @param percentile The percentile between 0 and 100.
+         * @return The upper edge of the bin the percentile falls in, or NaN if the histogram is empty.
+         */
+        public double getPercentile(double percentile) {
+            if (count == 0) return Double.NaN;
+
+            long target = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+
+            for (int i = 0; i < bins.length; i++) {
+                seen += bins[i];
+                if (seen >= Math.max(target, 1)) return Math.min((i + 1) * binWidth, max);
+            }
+
+            return max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /** Gets the mean, or NaN if the histogram is empty. */
+        public double getMean() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+
+        /** Gets the largest value, or NaN if the histogram is empty. */
+        public double getMax() {
+            return count == 0 ? Double.NaN : max;
+        }
+    }
+
+    /** The metrics of one log, or of the whole batch. */
+    public static class Stats {
+        public String name;
+        public int matches = 0;
+        public long cycles = 0;
+        public double duration = 0;
+
+        /** Time between cycles in seconds. */
+        public Histogram loopPeriod = new Histogram(0.0001, 0.2);
+        /** Module speed setpoint minus actual speed in m/s, per module per enabled cycle. */
+        public Histogram speedError = new Histogram(0.01, 5);
+        /** Module angle setpoint minus actual angle in radians, per module per enabled cycle. */
+        public Histogram angleError = new Histogram(0.001, Math.PI);
+        /** How long each pathfind to a reef pose took in seconds. */
+        public Histogram alignTime = new Histogram(0.02, 30);
+
+        public int slipEvents = 0;
+        public double slipTime = 0;
+
+        public double peakDriveTemperature = Double.NaN;
+        public double peakSteerTemperature = Double.NaN;
+
+        /** Set if the log couldn't be read. */
+        public String error;
+
+        public Stats(String name) {
+            this.name = name;
+        }
+
+        /** Adds the metrics of a match to this batch. */
+        public void merge(Stats other) {
+            if (other.error != null) return;
+
+            matches += other.matches;
+            cycles += other.cycles;
+            duration += other.duration;
+
+            loopPeriod.merge(other.loopPeriod);
+            speedError.merge(other.speedError);
+            angleError.merge(other.angleError);
+            alignTime.merge(other.alignTime);
+
+            slipEvents += other.slipEvents;
+            slipTime += other.slipTime;
+
+            peakDriveTemperature = maxOf(peakDriveTemperature, other.peakDriveTemperature);
+            peakSteerTemperature = maxOf(peakSteerTemperature, other.peakSteerTemperature);
+        }
+    }
+
+    private static final String[] columns = {
+        "log", "matches", "cycles", "duration_s",
+        "loop_p50_ms", "loop_p95_ms", "loop_p99_ms", "loop_max_ms",
+        "speed_error_mean", "speed_error_p95", "speed_error_max",
+        "angle_error_mean_deg", "angle_error_p95_deg", "angle_error_max_deg",
+        "slip_events", "slip_time_s",
+        "peak_drive_temp_c", "peak_steer_temp_c",
+        "aligns", "align_mean_s", "align_p95_s", "align_max_s",
+        "error"
+    };
+
+    private LogAnalyzer() {}
+
+    /**
+     * Analyzes one log from start to end.
+     *
+     * @param path The path of the WPILOG file.
+     */
+    public static Stats analyze(String path) {
+        Stats stats = new Stats(new File(path).getName());
+
+        try {
+            LogCycleReader log = new LogCycleReader(path);
+            if (!log.nextCycle()) return stats;
+
+            SwerveDriveKinematics kinematics = new SwerveDriveKinematics(DriveConstants.translations);
+            String[] moduleKeys = new String[DriveConstants.translations.length];
+            int[] slipping = new int[moduleKeys.length];
+
+            double start = log.getTimestamp();
+            double lastTimestamp = start;
+            boolean aligning = false;
+            double alignStart = 0;
+
+            stats.matches = 1;
+
+            do {
+                double timestamp = log.getTimestamp();
+
+                double dt = timestamp - lastTimestamp;
+                if (stats.cycles > 0) stats.loopPeriod.add(dt);
+                lastTimestamp = timestamp;
+                stats.cycles++;
+
+                // Modules start logging on their first cycle, which may not be the log's first
+                for (int i = 0; i < moduleKeys.length; i++) {
+                    if (moduleKeys[i] == null) moduleKeys[i] = DrivetrainReplay.findModuleKey(log, i);
+                    if (moduleKeys[i] == null) continue;
+
+                    stats.peakDriveTemperature = maxOf(stats.peakDriveTemperature, log.getDouble(moduleKeys[i] + "/DriveTemperature", Double.NaN) - kelvinOffset);
+                    stats.peakSteerTemperature = maxOf(stats.peakSteerTemperature, log.getDouble(moduleKeys[i] + "/SteerTemperature", Double.NaN) - kelvinOffset);
+                }
+
+                // An align still running when the log ends never finished, so it isn't counted
+                boolean active = log.getBoolean(drivetrainKey + "/PathFind/Active", false);
+                if (active && !aligning) alignStart = timestamp;
+                if (!active && aligning) stats.alignTime.add(timestamp - alignStart);
+                aligning = active;
+
+                if (!log.getBoolean(enabledKey, true)) continue;
+
+                SwerveModuleState[] actual = log.getStructArray(drivetrainKey + "/States/Actual", SwerveModuleState.struct);
+                SwerveModuleState[] setpoint = log.getStructArray(drivetrainKey + "/States/Setpoint", SwerveModuleState.struct);
+
+                if (actual == null || actual.length != slipping.length) continue;
+
+                if (setpoint != null && setpoint.length == actual.length) {
+                    for (int i = 0; i < actual.length; i++) {
+                        stats.speedError.add(Math.abs(setpoint[i].speedMetersPerSecond - actual[i].speedMetersPerSecond));
+                        stats.angleError.add(Math.abs(MathUtil.angleModulus(setpoint[i].angle.getRadians() - actual[i].angle.getRadians())));
+                    }
+                }
+
+                // Each wheel is compared against the rigid-body motion that best fits all of them
+                SwerveModuleState[] fit = kinematics.toSwerveModuleStates(kinematics.toChassisSpeeds(actual));
+                boolean anySlipping = false;
+
+                for (int i = 0; i < actual.length; i++) {
+                    double dx = actual[i].speedMetersPerSecond * actual[i].angle.getCos() - fit[i].speedMetersPerSecond * fit[i].angle.getCos();
+                    double dy = actual[i].speedMetersPerSecond * actual[i].angle.getSin() - fit[i].speedMetersPerSecond * fit[i].angle.getSin();
+
+                    if (Math.hypot(dx, dy) > slipThreshold) {
+                        // An event is counted once the wheel has been off for a few cycles in a row, so noise doesn't count
+                        if (++slipping[i] == slipCycles) stats.slipEvents++;
+                        if (slipping[i] >= slipCycles) anySlipping = true;
+                    } else {
+                        slipping[i] = 0;
+                    }
+                }
+
+                if (anySlipping) stats.slipTime += dt;
+            } while (log.nextCycle());
+
+            stats.duration = lastTimestamp - start;
+        } catch (IOException | RuntimeException e) {
+            stats.error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        }
+
+        return stats;
+    }
+
+    /**
+     * Analyzes many logs in parallel.
+     *
+     * @param paths The paths of the WPILOG files.
+     * @param threads How many logs to analyze at once.
+     * @return The stats of each log in the given order, followed by the stats of the whole batch.
+     */
+    public static List<Stats> analyzeAll(List<String> paths, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, paths.size())));
+        List<Future<Stats>> futures = new ArrayList<>();
+
+        for (String path : paths) {
+            futures.add(executor.submit(() -> analyze(path)));
+        }
+
+        List<Stats> results = new ArrayList<>();
+        Stats total = new Stats("ALL");
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Stats stats = futures.get(i).get();
+
+                System.err.printf("[%d/%d] %s%s%n", i + 1, futures.size(), stats.name, stats.error == null ? "" : ": " + stats.error);
+
+                results.add(stats);
+                total.merge(stats);
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        results.add(total);
+
+        return results;
+    }
+
+    /** Writes one row per log, with the header first. */
+    public static void writeCsv(List<Stats> results, PrintStream out) {
+        out.println(String.join(",", columns));
+
+        for (Stats stats : results) {
+            Object[] row = getRow(stats);
+            StringBuilder line = new StringBuilder();
+
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) line.append(',');
+                line.append(formatCsv(row[i]));
+            }
+
+            out.println(line);
+        }
+    }
+
+    /** Writes every log as a JSON object, with the batch under "aggregate". */
+    public static void writeJson(List<Stats> results, PrintStream out) {
+        out.println("{");
+        out.println("  \"matches\": [");
+
+        for (int i = 0; i < results.size() - 1; i++) {
+            out.print("    " + toJson(results.get(i)));
+            out.println(i < results.size() - 2 ? "," : "");
+        }
+
+        out.println("  ],");
+        out.println("  \"aggregate\": " + toJson(results.get(results.size() - 1)));
+        out.println("}");
+    }
+
+    private static Object[] getRow(Stats stats) {
+        return new Object[] {
+            stats.name, stats.matches, stats.cycles, stats.duration,
+            stats.loopPeriod.getPercentile(50) * 1000, stats.loopPeriod.getPercentile(95) * 1000, stats.loopPeriod.getPercentile(99) * 1000, stats.loopPeriod.getMax() * 1000,
+            stats.speedError.getMean(), stats.speedError.getPercentile(95), stats.speedError.getMax(),
+            Math.toDegrees(stats.angleError.getMean()), Math.toDegrees(stats.angleError.getPercentile(95)), Math.toDegrees(stats.angleError.getMax()),
+            stats.slipEvents, stats.slipTime,
+            stats.peakDriveTemperature, stats.peakSteerTemperature,
+            stats.alignTime.getCount(), stats.alignTime.getMean(), stats.alignTime.getPercentile(95), stats.alignTime.getMax(),
+            stats.error
+        };
+    }
+
+    private static String toJson(Stats stats) {
+        Object[] row = getRow(stats);
+        StringBuilder json = new StringBuilder("{");
+
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) json.append(", ");
+            json.append('"').append(columns[i]).append("\": ");
+
+            if (row[i] == null) {
+                json.append("null");
+            } else if (row[i] instanceof String) {
+                json.append('"').append(((String) row[i]).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            } else if (row[i] instanceof Double && !Double.isFinite((Double) row[i])) {
+                json.append("null");
+            } else {
+                json.append(formatNumber(row[i]));
+            }
+        }
+
+        return json.append('}').toString();
+    }
+
+    private static String formatCsv(Object value) {
+        if (value == null) return "";
+        if (value instanceof String) return "\"" + ((String) value).replace("\"", "\"\"") + "\"";
+        if (value instanceof Double && !Double.isFinite((Double) value)) return "";
+
+        return formatNumber(value);
+    }
+
+    private static String formatNumber(Object value) {
+        return value instanceof Double ? String.format("%.4f", (Double) value) : value.toString();
+    }
+
+    /** Gets the larger of two values, ignoring NaN. */
+    private static double maxOf(double a, double b) {
+        if (Double.isNaN(a)) return b;
+        if (Double.isNaN(b)) return a;
+
+        return Math.max(a, b);
+    }
+
+    /** Adds a log, or every log under a directory. */
+    private static void collect(File file, List<String> into) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) return;
+
+            Arrays.sort(children);
+            for (File child : children) {
+                collect(child, into);
+            }
+        } else if (file.getName().endsWith(".wpilog")) {
+            into.add(file.getPath());
+        }
+    }
+
+    /**
+     * Runs the analyzer from the command line.
+     *
+     * Usage: LogAnalyzer [--threads n] [--csv out.csv] [--json out.json] logs or directories...
+     * The CSV is printed if no output is given.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String csvPath = null;
+        String jsonPath = null;
+        List<String> paths = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--csv") && i + 1 < args.length) {
+                csvPath = args[++i];
+            } else if (args[i].equals("--json") && i + 1 < args.length) {
+                jsonPath = args[++i];
+            } else {
+                collect(new File(args[i]), paths);
+            }
+        }
+
+        if (paths.isEmpty()) {
+            System.err.println("Usage: LogAnalyzer [--threads n] [--csv out.csv] [--json out.json] logs or directories...");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        List<Stats> results = analyzeAll(paths, threads);
+        System.err.printf("Analyzed %d logs in %.2f s%n", paths.size(), (System.nanoTime() - start) / 1e9);
+
+        if (csvPath == null && jsonPath == null) writeCsv(results, System.out);
+
+        if (csvPath != null) {
+            try (PrintStream out = new PrintStream(csvPath)) {
+                writeCsv(results, out);
+            }
+        }
+
+        if (jsonPath != null) {
+            try (PrintStream out = new PrintStream(jsonPath)) {
+                writeJson(results, out);
+            }
+        }
+    }
+}
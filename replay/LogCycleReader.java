@@ -0,0 +1,166 @@
+package frc.robot.subsystems.drivetrain.replay;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import edu.wpi.first.util.datalog.DataLogRecord.StartRecordData;
+import edu.wpi.first.util.struct.Struct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Streams a WPILOG file one robot cycle at a time.
+ *
+ * The file is memory-mapped by {@link DataLogReader} and walked with a single iterator,
+ * so only the latest record of each entry is held at once no matter how long the log is.
+ * AdvantageKit writes every value of a cycle with the same timestamp, which is what a cycle is grouped by.
+ */
+public class LogCycleReader {
+    private Iterator<DataLogRecord> records;
+
+    private Map<Integer, String> entryNames = new HashMap<>();
+    private Map<String, String> entryTypes = new HashMap<>();
+    private Map<String, DataLogRecord> values = new HashMap<>();
+
+    private DataLogRecord pending;
+    private long cycleTimestamp;
+
+    /**
+     * Opens a log for cycle-by-cycle reading.
+     *
+     * @param path The path of the WPILOG file.
+     */
+    public LogCycleReader(String path) throws IOException {
+        DataLogReader reader = new DataLogReader(path);
+
+        if (!reader.isValid()) throw new IOException(path + " is not a valid WPILOG file");
+
+        records = reader.iterator();
+    }
+
+    /**
+     * Advances to the next cycle.
+     *
+     * Values that weren't written in the new cycle keep their previous value.
+     * Returns false once the end of the log is reached.
+     */
+    public boolean nextCycle() {
+        if (pending == null && !advance()) return false;
+
+        cycleTimestamp = pending.getTimestamp();
+
+        do {
+            String name = entryNames.get(pending.getEntry());
+            if (name != null) values.put(name, pending);
+        } while (advance() && pending.getTimestamp() == cycleTimestamp);
+
+        return true;
+    }
+
+    /** Moves to the next data record, consuming any control records on the way. */
+    private boolean advance() {
+        while (records.hasNext()) {
+            DataLogRecord record = records.next();
+
+            if (record.isStart()) {
+                StartRecordData data = record.getStartData();
+                entryNames.put(data.entry, data.name);
+                entryTypes.put(data.name, data.type);
+            } else if (record.isFinish()) {
+                entryNames.remove(record.getFinishEntry());
+            } else if (!record.isControl()) {
+                pending = record;
+                return true;
+            }
+        }
+
+        pending = null;
+        return false;
+    }
+
+    /** Gets the timestamp of the current cycle in microseconds. */
+    public long getTimestampMicros() {
+        return cycleTimestamp;
+    }
+
+    /** Gets the timestamp of the current cycle in seconds. */
+    public double getTimestamp() {
+        return cycleTimestamp / 1e6;
+    }
+
+    /** Gets the names of every entry that has been started so far. */
+    public Collection<String> getEntryNames() {
+        return entryTypes.keySet();
+    }
+
+    /** Gets the type string of an entry, or null if it hasn't been started. */
+    public String getType(String name) {
+        return entryTypes.get(name);
+    }
+
+    /** Returns true if the entry has a value. */
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    /** Gets a double value, or the default if the entry has no value yet. */
+    public double getDouble(String name, double defaultValue) {
+        DataLogRecord record = values.get(name);
+        if (record == null) return defaultValue;
+
+        return record.getDouble();
+    }
+
+    /** Gets a double array value, or null if the entry has no value yet. */
+    public double[] getDoubleArray(String name) {
+        DataLogRecord record = values.get(name);
+        if (record == null) return null;
+
+        return record.getDoubleArray();
+    }
+
+    /** Gets a boolean value, or the default if the entry has no value yet. */
+    public boolean getBoolean(String name, boolean defaultValue) {
+        DataLogRecord record = values.get(name);
+        if (record == null) return defaultValue;
+
+        return record.getBoolean();
+    }
+
+    /** Gets a string value, or the default if the entry has no value yet. */
+    public String getString(String name, String defaultValue) {
+        DataLogRecord record = values.get(name);
+        if (record == null) return defaultValue;
+
+        return record.getString();
+    }
+
+    /** Gets a struct value, or null if the entry has no value yet. */
+    public <T> T getStruct(String name, Struct<T> struct) {
+        DataLogRecord record = values.get(name);
+        if (record == null) return null;
+
+        return struct.unpack(ByteBuffer.wrap(record.getRaw()).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /** Gets a struct array value, or null if the entry has no value yet. */
+    public <T> T[] getStructArray(String name, Struct<T> struct) {
+        DataLogRecord record = values.get(name);
+        if (record == null) return null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(record.getRaw()).order(ByteOrder.LITTLE_ENDIAN);
+
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) java.lang.reflect.Array.newInstance(struct.getTypeClass(), buffer.remaining() / struct.getSize());
+
+        for (int i = 0; i < array.length; i++) {
+            array[i] = struct.unpack(buffer);
+        }
+
+        return array;
+    }
+}
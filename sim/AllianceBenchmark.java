@@ -0,0 +1,122 @@
+package frc.robot.subsystems.drivetrain.sim;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import frc.robot.subsystems.drivetrain.Drivetrain;
+import frc.robot.subsystems.drivetrain.commands.PathFindToPose;
+import java.util.List;
+
+/**
+ * Runs the whole per-robot stack of an {@link AllianceSimulation} off-robot and reports where the time goes.
+ *
+ * Unlike {@link ChassisBenchmark}, every robot is a full {@link Drivetrain} with simulated modules and a {@link PathFindToPose} command,
+ * so the drivetrain logic, the control loop, the pathfinders, and the physics are all timed.
+ * The robots start on a circle around the middle of the field and pathfind to the opposite side, back and forth,
+ * so their paths cross and the pathfinders have to plan around each other.
+ * The FPGA clock is stepped by hand, so the sim runs as fast as the stack allows.
+ * <pre>
+ * java frc.robot.subsystems.drivetrain.sim.AllianceBenchmark [sim seconds] [robots]
+ * </pre>
+ */
+public class AllianceBenchmark {
+    private static final double circleRadius = 2.5;
+
+    public static void main(String[] args) {
+        double duration = args.length > 0 ? Double.parseDouble(args[0]) : 60;
+        int robotCount = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        double dt = DriveConstants.loopBudget.in(Seconds);
+
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+
+        // Commands don't run while disabled
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+
+        Translation2d center = new Translation2d(DriveConstants.fieldLength.div(2), DriveConstants.fieldWidth.div(2));
+
+        AllianceSimulation alliance = new AllianceSimulation();
+        Drivetrain[] drivetrains = new Drivetrain[robotCount];
+        Pose2d[][] goals = new Pose2d[robotCount][2];
+        Command[] commands = new Command[robotCount];
+        int[] legs = new int[robotCount];
+
+        for (int r = 0; r < robotCount; r++) {
+            double angle = 2 * Math.PI * r / robotCount;
+            Translation2d offset = new Translation2d(circleRadius, new Rotation2d(angle));
+
+            goals[r][0] = new Pose2d(center.plus(offset), new Rotation2d(angle + Math.PI));
+            goals[r][1] = new Pose2d(center.minus(offset), new Rotation2d(angle + Math.PI));
+
+            drivetrains[r] = alliance.addRobot("Robot" + r, goals[r][0]);
+        }
+
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+
+        double schedulerTime = 0;
+        double allianceTime = 0;
+        double worstCycle = 0;
+        long cycles = 0;
+
+        long start = System.nanoTime();
+
+        for (double time = 0; time < duration; time += dt) {
+            // Each robot heads to the other end of its leg once it arrives
+            for (int r = 0; r < robotCount; r++) {
+                if (commands[r] != null && commands[r].isScheduled()) continue;
+
+                legs[r]++;
+                commands[r] = new PathFindToPose(drivetrains[r], () -> false, List.of(goals[r][legs[r] % 2]));
+                scheduler.schedule(commands[r]);
+            }
+
+            SimHooks.stepTiming(dt);
+
+            long cycleStart = System.nanoTime();
+            scheduler.run();
+            long schedulerEnd = System.nanoTime();
+            alliance.update();
+            long cycleEnd = System.nanoTime();
+
+            schedulerTime += (schedulerEnd - cycleStart) / 1e9;
+            allianceTime += (cycleEnd - schedulerEnd) / 1e9;
+            worstCycle = Math.max(worstCycle, (cycleEnd - cycleStart) / 1e9);
+            cycles++;
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int plans = 0;
+        int fallbacks = 0;
+        double planTime = 0;
+
+        for (Drivetrain drivetrain : drivetrains) {
+            plans += drivetrain.getPathfinder().getPlanCount();
+            fallbacks += drivetrain.getPathfinder().getSplineFallbacks();
+            planTime = Math.max(planTime, drivetrain.getPathfinder().getLastPlanTime());
+        }
+
+        int legCount = 0;
+        for (int leg : legs) {
+            legCount += leg;
+        }
+
+        System.out.printf("Simulated %d robot(s) for %.0f s in %.2f s (%.1fx real time)%n", robotCount, duration, elapsed, duration / elapsed);
+        System.out.printf("Drivetrains and commands: %.3f ms per robot per cycle%n", schedulerTime / cycles / robotCount * 1000);
+        System.out.printf("Physics, collisions and obstacles: %.3f ms per cycle%n", allianceTime / cycles * 1000);
+        System.out.printf("Worst cycle: %.2f ms of a %.0f ms budget%n", worstCycle * 1000, dt * 1000);
+        System.out.printf("Legs: %d, plans: %d (%d fell back to straight legs), last plan %.2f ms, obstacle updates: %d, collisions: %d%n",
+            legCount, plans, fallbacks, planTime * 1000, alliance.getObstacleUpdates(), alliance.getCollisions());
+
+        System.exit(0);
+    }
+}
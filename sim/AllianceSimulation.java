@@ -0,0 +1,292 @@
+package frc.robot.subsystems.drivetrain.sim;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import frc.robot.subsystems.drivetrain.Drivetrain;
+import frc.robot.subsystems.drivetrain.DrivetrainIOModules;
+import frc.robot.subsystems.drivetrain.ModuleIO;
+import frc.robot.subsystems.drivetrain.ModuleIOSim;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Simulates several robots on the field at once, to test pathfinding and alignment in traffic.
+ *
+ * Each robot is a full {@link Drivetrain} with its own {@link ChassisSimulator}, modules, controllers, and log key.
+ * The drivetrains are still run one after another by the command scheduler, since logging and commands aren't thread safe.
+ * The physics is stepped for every robot in parallel here rather than by their modules, and then robots whose bumpers overlap are pushed apart.
+ * Every pathfinder is told where the other robots are, as if it could see them perfectly,
+ * but only once one of them has moved {@link DriveConstants#obstacleUpdateDistance}, since new obstacles make the pathfinders check their paths again.
+ *
+ * Call {@link #update()} from {@code simulationPeriodic()}.
+ */
+public class AllianceSimulation {
+    private static class Robot {
+        private String name;
+        private Drivetrain drivetrain;
+        private ChassisSimulator chassis;
+
+        // Reused every cycle so stepping doesn't allocate
+        private Callable<Void> step;
+        private double now;
+
+        // Where the pathfinders were last told this robot is, or null if they haven't been
+        private Translation2d reportedPosition;
+    }
+
+    private List<Robot> robots = new ArrayList<>();
+    private List<Callable<Void>> steps = new ArrayList<>();
+    private ExecutorService executor;
+
+    private double halfLength;
+    private double halfWidth;
+
+    private int collisions = 0;
+    private int obstacleUpdates = 0;
+    private double stepTime = 0;
+
+    /** Creates an empty alliance simulation. */
+    public AllianceSimulation() {
+        halfLength = DriveConstants.robotLength.plus(DriveConstants.bumperThickness.times(2)).in(Meters) / 2;
+        halfWidth = DriveConstants.robotWidth.plus(DriveConstants.bumperThickness.times(2)).in(Meters) / 2;
+    }
+
+    /**
+     * Adds a robot that was created elsewhere, like the robot's own drivetrain.
+     *
+     * @param name The name to log the robot under.
+     * @param drivetrain The robot's drivetrain, or null if only its chassis is simulated.
+     * @param chassis The chassis its modules drive.
+     */
+    public void addRobot(String name, Drivetrain drivetrain, ChassisSimulator chassis) {
+        Robot robot = new Robot();
+        robot.name = name;
+        robot.drivetrain = drivetrain;
+        robot.chassis = chassis;
+        robot.step = () -> {
+            robot.chassis.update(robot.now);
+            return null;
+        };
+
+        // Its modules would otherwise step it again, one robot after another
+        chassis.setSteppedExternally(true);
+
+        robots.add(robot);
+        steps.add(robot.step);
+
+        // The pool is sized on the next update
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Creates a simulated robot and adds it.
+     *
+     * The robot has no gyro or vision, so its heading comes from its modules.
+     * Its gains are read from AdjustableValues once and can be changed afterwards through its controllers.
+     *
+     * @param name The name of the robot, which is also where it logs.
+     * @param start Where the robot starts on the field.
+     * @return The robot's drivetrain, to give commands to.
+     */
+    public Drivetrain addRobot(String name, Pose2d start) {
+        ChassisSimulator chassis = new ChassisSimulator();
+        ModuleIO[] modules = new ModuleIO[DriveConstants.translations.length];
+
+        for (int i = 0; i < modules.length; i++) {
+            modules[i] = new ModuleIOSim(i, chassis, name);
+        }
+
+        Drivetrain drivetrain = new Drivetrain(null, null, new DrivetrainIOModules(Drivetrain.getLogKey(name), modules), name);
+
+        chassis.reset(start);
+        drivetrain.resetPose(start);
+
+        addRobot(name, drivetrain, chassis);
+
+        return drivetrain;
+    }
+
+    /** Steps every robot to the current time, resolves collisions, updates the pathfinders, and logs. */
+    public void update() {
+        update(Timer.getFPGATimestamp());
+        updateObstacles();
+        log();
+    }
+
+    /**
+     * Steps every robot's physics to a time in parallel, then resolves collisions.
+     *
+     * @param now The time to step to in seconds.
+     */
+    public void update(double now) {
+        long start = System.nanoTime();
+
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, Math.min(robots.size(), Runtime.getRuntime().availableProcessors())), runnable -> {
+                Thread thread = new Thread(runnable, "AllianceSimulation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        for (Robot robot : robots) {
+            robot.now = now;
+        }
+
+        try {
+            executor.invokeAll(steps);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        for (int i = 0; i < robots.size(); i++) {
+            for (int j = i + 1; j < robots.size(); j++) {
+                collide(robots.get(i).chassis, robots.get(j).chassis);
+            }
+        }
+
+        stepTime = (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Pushes two robots apart if their bumpers overlap, and bounces them off each other if they're closing.
+     *
+     * The bumpers are checked as rotated rectangles with the separating axis test.
+     * The impulse goes through each robot's center, so collisions don't spin the robots.
+     */
+    private void collide(ChassisSimulator a, ChassisSimulator b) {
+        double dx = b.getX() - a.getX();
+        double dy = b.getY() - a.getY();
+
+        // Quick rejection by the circles around each robot
+        double reach = 2 * Math.hypot(halfLength, halfWidth);
+        if (dx * dx + dy * dy > reach * reach) return;
+
+        double cosA = Math.cos(a.getTheta());
+        double sinA = Math.sin(a.getTheta());
+        double cosB = Math.cos(b.getTheta());
+        double sinB = Math.sin(b.getTheta());
+
+        // The axes to test are the length and width directions of both robots
+        double[] axesX = { cosA, -sinA, cosB, -sinB };
+        double[] axesY = { sinA, cosA, sinB, cosB };
+
+        double minOverlap = Double.POSITIVE_INFINITY;
+        double normalX = 0;
+        double normalY = 0;
+
+        for (int i = 0; i < axesX.length; i++) {
+            double ax = axesX[i];
+            double ay = axesY[i];
+
+            double radiusA = halfLength * Math.abs(cosA * ax + sinA * ay) + halfWidth * Math.abs(-sinA * ax + cosA * ay);
+            double radiusB = halfLength * Math.abs(cosB * ax + sinB * ay) + halfWidth * Math.abs(-sinB * ax + cosB * ay);
+            double distance = dx * ax + dy * ay;
+            double overlap = radiusA + radiusB - Math.abs(distance);
+
+            if (overlap <= 0) return;
+
+            if (overlap < minOverlap) {
+                minOverlap = overlap;
+                normalX = Math.copySign(1, distance) * ax;
+                normalY = Math.copySign(1, distance) * ay;
+            }
+        }
+
+        collisions++;
+
+        double massA = a.getMass();
+        double massB = b.getMass();
+
+        // Each robot moves out of the overlap in proportion to how light it is
+        double shareA = massB / (massA + massB);
+        a.displace(-normalX * minOverlap * shareA, -normalY * minOverlap * shareA);
+        b.displace(normalX * minOverlap * (1 - shareA), normalY * minOverlap * (1 - shareA));
+
+        double closingSpeed = (b.getVx() - a.getVx()) * normalX + (b.getVy() - a.getVy()) * normalY;
+        if (closingSpeed >= 0) return;
+
+        double impulse = -(1 + DriveConstants.bumperRestitution) * closingSpeed / (1 / massA + 1 / massB);
+        a.applyImpulse(-impulse * normalX, -impulse * normalY);
+        b.applyImpulse(impulse * normalX, impulse * normalY);
+    }
+
+    /** Tells every robot's pathfinder where the other robots are, if any of them has moved far enough since the last time. */
+    private void updateObstacles() {
+        boolean moved = false;
+
+        for (Robot robot : robots) {
+            Translation2d position = new Translation2d(robot.chassis.getX(), robot.chassis.getY());
+
+            if (robot.reportedPosition == null || robot.reportedPosition.getDistance(position) > DriveConstants.obstacleUpdateDistance.in(Meters)) {
+                moved = true;
+                break;
+            }
+        }
+
+        if (!moved) return;
+
+        for (Robot robot : robots) {
+            robot.reportedPosition = new Translation2d(robot.chassis.getX(), robot.chassis.getY());
+        }
+
+        obstacleUpdates++;
+
+        List<Translation2d> obstacles = new ArrayList<>(robots.size());
+
+        for (Robot robot : robots) {
+            if (robot.drivetrain == null) continue;
+
+            obstacles.clear();
+            for (Robot other : robots) {
+                if (other != robot) obstacles.add(other.reportedPosition);
+            }
+
+            robot.drivetrain.getPathfinder().setDynamicObstacles(obstacles);
+        }
+    }
+
+    /** Gets how many times two robots were found overlapping, counted once per pair per update. */
+    public int getCollisions() {
+        return collisions;
+    }
+
+    /** Gets how many times the pathfinders have been told where the other robots are. */
+    public int getObstacleUpdates() {
+        return obstacleUpdates;
+    }
+
+    /** Gets how long the last physics step took in seconds. */
+    public double getStepTime() {
+        return stepTime;
+    }
+
+    /** Logs every robot's true pose, the collision count, and how long stepping took. */
+    public void log() {
+        Pose2d[] poses = new Pose2d[robots.size()];
+        String[] names = new String[robots.size()];
+
+        for (int i = 0; i < robots.size(); i++) {
+            poses[i] = robots.get(i).chassis.getPose();
+            names[i] = robots.get(i).name;
+        }
+
+        Logger.recordOutput("/Sim/Alliance/TruePoses", poses);
+        Logger.recordOutput("/Sim/Alliance/Names", names);
+        Logger.recordOutput("/Sim/Alliance/Collisions", collisions);
+        Logger.recordOutput("/Sim/Alliance/ObstacleUpdates", obstacleUpdates);
+        Logger.recordOutput("/Sim/Alliance/StepTime", stepTime);
+    }
+}
@@ -0,0 +1,92 @@
+package frc.robot.subsystems.drivetrain.sim;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+
+/**
+ * Runs the {@link ChassisSimulator} off-robot and reports how much faster than real time it is.
+ *
+ * The robot launches straight ahead at full voltage every few seconds, which is where the tires slip the most.
+ * With more than one robot, they start on a circle facing its center and are stepped together by an {@link AllianceSimulation},
+ * so they launch into each other.
+ * <pre>
+ * java frc.robot.subsystems.drivetrain.sim.ChassisBenchmark [sim seconds] [robots]
+ * </pre>
+ */
+public class ChassisBenchmark {
+    private static final double launchPeriod = 4;
+    private static final double circleRadius = 3;
+
+    public static void main(String[] args) {
+        double duration = args.length > 0 ? Double.parseDouble(args[0]) : 600;
+        int robotCount = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        double dt = DriveConstants.controlLoopPeriod.in(Seconds);
+        double currentLimit = DriveConstants.driveStatorCurrentLimit.in(Amps);
+        int moduleCount = DriveConstants.translations.length;
+
+        ChassisSimulator[] robots = new ChassisSimulator[robotCount];
+        Pose2d[] starts = new Pose2d[robotCount];
+        AllianceSimulation alliance = robotCount > 1 ? new AllianceSimulation() : null;
+
+        for (int r = 0; r < robotCount; r++) {
+            robots[r] = new ChassisSimulator();
+
+            // Facing the center of the circle
+            double angle = 2 * Math.PI * r / robotCount;
+            starts[r] = robotCount > 1 ? new Pose2d(circleRadius * Math.cos(angle), circleRadius * Math.sin(angle), new Rotation2d(angle + Math.PI)) : new Pose2d();
+
+            if (alliance != null) alliance.addRobot("Robot" + r, null, robots[r]);
+        }
+
+        ChassisSimulator chassis = robots[0];
+
+        double peakSlip = 0;
+        double timeTo3 = Double.NaN;
+        double time = 0;
+
+        long start = System.nanoTime();
+
+        while (time < duration) {
+            double launchTime = time % launchPeriod;
+
+            if (launchTime < dt) {
+                for (int r = 0; r < robotCount; r++) {
+                    robots[r].reset(starts[r]);
+                }
+            }
+
+            // Full voltage for half the launch, then coasting
+            double volts = launchTime < launchPeriod / 2 ? 12 : 0;
+
+            for (int r = 0; r < robotCount; r++) {
+                for (int i = 0; i < moduleCount; i++) {
+                    robots[r].setModule(i, 0, volts, currentLimit);
+                }
+            }
+
+            time += dt;
+
+            if (alliance == null) {
+                chassis.step(dt);
+            } else {
+                alliance.update(time);
+            }
+
+            for (int i = 0; i < moduleCount; i++) {
+                peakSlip = Math.max(peakSlip, chassis.getWheelSlip(i));
+            }
+
+            if (Double.isNaN(timeTo3) && Math.hypot(chassis.getVx(), chassis.getVy()) >= 3) timeTo3 = launchTime;
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Simulated %d robot(s) for %.0f s in %.2f s (%.0fx real time)%n", robotCount, duration, elapsed, duration / elapsed);
+        System.out.printf("Time to 3 m/s: %.2f s, peak slip: %.2f m/s, final speed: %.2f m/s%n", timeTo3, peakSlip, Math.hypot(chassis.getVx(), chassis.getVy()));
+
+        if (alliance != null) System.out.printf("Collisions: %d%n", alliance.getCollisions());
+    }
+}
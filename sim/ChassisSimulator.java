@@ -0,0 +1,425 @@
+package frc.robot.subsystems.drivetrain.sim;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.system.plant.DCMotor;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import java.util.Arrays;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Simulates the chassis as one 2D rigid body pushed around by its wheels.
+ *
+ * The modules report which way each wheel points and what voltage its drive motor gets.
+ * Each wheel is spun by its motor and slowed by its tire, and the tire pushes on the chassis in proportion to how fast the tread slides over the carpet.
+ * That force is capped at the coefficient of friction times the load on the wheel, so the robot slips when it's asked for too much.
+ * Loads shift between wheels as the robot accelerates, based on the height of the center of mass.
+ *
+ * The wheels are stepped together with the chassis because a light wheel pressed against a heavy robot is a stiff system,
+ * and stepping them separately at the robot's loop rate would be unstable.
+ * Time is stepped by whatever is passed in, in fixed substeps, so it can run as fast as the CPU allows.
+ * Nothing allocates while stepping.
+ */
+public class ChassisSimulator {
+    private static final double gravity = 9.81;
+
+    private final int moduleCount;
+    private final double[] moduleX;
+    private final double[] moduleY;
+    private final double mass;
+    private final double moi;
+    private final double friction;
+    private final double stiffness;
+    private final double comHeight;
+
+    private final DCMotor motor;
+    private final double gearing;
+    private final double wheelRadius;
+    private final double wheelInertia;
+    private final double sumX2;
+    private final double sumY2;
+
+    // Wheel inputs, with angles in the robot frame
+    private final double[] wheelAngles;
+    private final double[] driveVoltages;
+    private final double[] currentLimits;
+
+    // Wheel state, as tread distance and speed
+    private final double[] wheelPositions;
+    private final double[] wheelSpeeds;
+    private final double[] wheelAccelerations;
+
+    // Outputs averaged over the last step
+    private final double[] wheelForces;
+    private final double[] wheelSlip;
+    private final double[] driveCurrents;
+    private final double[] forceSums;
+    private final double[] slipSums;
+    private final double[] currentSums;
+
+    // Field-relative state
+    private double x = 0;
+    private double y = 0;
+    private double theta = 0;
+    private double vx = 0;
+    private double vy = 0;
+    private double omega = 0;
+
+    // Robot-relative acceleration from the last substep, for load transfer
+    private double ax = 0;
+    private double ay = 0;
+
+    private double lastUpdate = -1;
+
+    // Set when an AllianceSimulation steps this chassis, so its modules don't
+    private boolean steppedExternally = false;
+
+    /** Creates a new chassis simulator using the robot's constants. */
+    public ChassisSimulator() {
+        this(
+            DriveConstants.translations,
+            DriveConstants.robotMass.in(Kilograms),
+            DriveConstants.robotMOI.in(KilogramSquareMeters),
+            DriveConstants.wheelCOF,
+            DriveConstants.tireSlipStiffness,
+            DriveConstants.centerOfMassHeight.in(Meters),
+            DriveConstants.krakenX60,
+            DriveConstants.driveGearRatio,
+            DriveConstants.wheelRadius.in(Meters),
+            DriveConstants.driveMOI);
+    }
+
+    /**
+     * Creates a new chassis simulator.
+     *
+     * @param modules The position of each module relative to the center of the robot.
+     * @param mass The robot's mass in kilograms.
+     * @param moi The robot's moment of inertia about its center in kg*m².
+     * @param friction The coefficient of friction between the tires and the carpet.
+     * @param stiffness How hard a tire pushes per meter per second of slip, in N*s/m.
+     * @param comHeight The height of the center of mass in meters.
+     * @param motor The drive motor on each module.
+     * @param gearing The drive reduction, as motor rotations per wheel rotation.
+     * @param wheelRadius The wheel radius in meters.
+     * @param wheelInertia The moment of inertia of the wheel and drivetrain, at the wheel, in kg*m².
+     */
+    public ChassisSimulator(Translation2d[] modules, double mass, double moi, double friction, double stiffness, double comHeight, DCMotor motor, double gearing, double wheelRadius, double wheelInertia) {
+        this.moduleCount = modules.length;
+        this.mass = mass;
+        this.moi = moi;
+        this.friction = friction;
+        this.stiffness = stiffness;
+        this.comHeight = comHeight;
+        this.motor = motor;
+        this.gearing = gearing;
+        this.wheelRadius = wheelRadius;
+        this.wheelInertia = wheelInertia;
+
+        moduleX = new double[moduleCount];
+        moduleY = new double[moduleCount];
+        wheelAngles = new double[moduleCount];
+        driveVoltages = new double[moduleCount];
+        currentLimits = new double[moduleCount];
+        wheelPositions = new double[moduleCount];
+        wheelSpeeds = new double[moduleCount];
+        wheelAccelerations = new double[moduleCount];
+        wheelForces = new double[moduleCount];
+        wheelSlip = new double[moduleCount];
+        driveCurrents = new double[moduleCount];
+        forceSums = new double[moduleCount];
+        slipSums = new double[moduleCount];
+        currentSums = new double[moduleCount];
+
+        Arrays.fill(currentLimits, Double.POSITIVE_INFINITY);
+
+        double sumX2 = 0;
+        double sumY2 = 0;
+
+        for (int i = 0; i < moduleCount; i++) {
+            moduleX[i] = modules[i].getX();
+            moduleY[i] = modules[i].getY();
+
+            sumX2 += moduleX[i] * moduleX[i];
+            sumY2 += moduleY[i] * moduleY[i];
+        }
+
+        this.sumX2 = sumX2;
+        this.sumY2 = sumY2;
+    }
+
+    /**
+     * Sets what a module is doing. Takes effect on the next step.
+     *
+     * @param module The module's index.
+     * @param angle Which way the wheel points relative to the robot in radians.
+     * @param volts The voltage applied to the drive motor.
+     * @param currentLimit The drive motor's stator current limit in amps.
+     */
+    public void setModule(int module, double angle, double volts, double currentLimit) {
+        wheelAngles[module] = angle;
+        driveVoltages[module] = volts;
+        currentLimits[module] = currentLimit;
+    }
+
+    /**
+     * Steps the simulation up to a time.
+     *
+     * Does nothing the first time it's called, or if the time hasn't moved forward.
+     *
+     * @param now The current time in seconds.
+     */
+    public void update(double now) {
+        if (lastUpdate >= 0 && now > lastUpdate) step(now - lastUpdate);
+        if (now > lastUpdate) lastUpdate = now;
+    }
+
+    /**
+     * Sets whether something other than the chassis's modules steps it, like an {@link AllianceSimulation} stepping several in parallel.
+     *
+     * @param steppedExternally True if the modules should leave the stepping to someone else.
+     */
+    public void setSteppedExternally(boolean steppedExternally) {
+        this.steppedExternally = steppedExternally;
+    }
+
+    /** Gets whether something other than the chassis's modules steps it. */
+    public boolean isSteppedExternally() {
+        return steppedExternally;
+    }
+
+    /**
+     * Steps the simulation forward.
+     *
+     * @param dt How far to step in seconds.
+     */
+    public void step(double dt) {
+        double maxSubstep = DriveConstants.chassisSimSubstep.in(Seconds);
+        int substeps = Math.max(1, (int) Math.ceil(dt / maxSubstep));
+        double h = dt / substeps;
+
+        for (int i = 0; i < moduleCount; i++) {
+            forceSums[i] = 0;
+            slipSums[i] = 0;
+            currentSums[i] = 0;
+            wheelAccelerations[i] = wheelSpeeds[i];
+        }
+
+        for (int s = 0; s < substeps; s++) {
+            substep(h);
+        }
+
+        for (int i = 0; i < moduleCount; i++) {
+            wheelForces[i] = forceSums[i] / substeps;
+            wheelSlip[i] = slipSums[i] / substeps;
+            driveCurrents[i] = currentSums[i] / substeps;
+            wheelAccelerations[i] = (wheelSpeeds[i] - wheelAccelerations[i]) / dt;
+        }
+    }
+
+    private void substep(double h) {
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+
+        // Robot-relative velocity
+        double vxRobot = vx * cos + vy * sin;
+        double vyRobot = -vx * sin + vy * cos;
+
+        double fxTotal = 0;
+        double fyTotal = 0;
+        double torque = 0;
+
+        for (int i = 0; i < moduleCount; i++) {
+            // Load on this wheel, shifted away from the direction of acceleration
+            double load = mass * gravity / moduleCount;
+            if (sumX2 > 0) load -= mass * comHeight * ax * moduleX[i] / sumX2;
+            if (sumY2 > 0) load -= mass * comHeight * ay * moduleY[i] / sumY2;
+            load = Math.max(load, 0);
+
+            // How fast the carpet under the wheel is moving, minus how fast the tread is moving
+            double wheelCos = Math.cos(wheelAngles[i]);
+            double wheelSin = Math.sin(wheelAngles[i]);
+
+            double slipX = vxRobot - omega * moduleY[i] - wheelSpeeds[i] * wheelCos;
+            double slipY = vyRobot + omega * moduleX[i] - wheelSpeeds[i] * wheelSin;
+
+            double fx = -stiffness * slipX;
+            double fy = -stiffness * slipY;
+
+            // Friction limit
+            double force = Math.hypot(fx, fy);
+            double maxForce = friction * load;
+            if (force > maxForce) {
+                fx *= maxForce / force;
+                fy *= maxForce / force;
+            }
+
+            fxTotal += fx;
+            fyTotal += fy;
+            torque += moduleX[i] * fy - moduleY[i] * fx;
+
+            // The carpet pushes back on the tread with the same force the tread pushes the chassis with
+            double tireForce = fx * wheelCos + fy * wheelSin;
+            double current = MathUtil.clamp(motor.getCurrent(wheelSpeeds[i] / wheelRadius * gearing, driveVoltages[i]), -currentLimits[i], currentLimits[i]);
+            double wheelTorque = motor.getTorque(current) * gearing - tireForce * wheelRadius;
+
+            wheelSpeeds[i] += wheelTorque / wheelInertia * wheelRadius * h;
+            wheelPositions[i] += wheelSpeeds[i] * h;
+
+            forceSums[i] += tireForce;
+            slipSums[i] += Math.hypot(slipX, slipY);
+            currentSums[i] += current;
+        }
+
+        ax = fxTotal / mass;
+        ay = fyTotal / mass;
+        double alpha = torque / moi;
+
+        // Semi-implicit Euler, velocity first
+        vx += (ax * cos - ay * sin) * h;
+        vy += (ax * sin + ay * cos) * h;
+        omega += alpha * h;
+
+        x += vx * h;
+        y += vy * h;
+        theta += omega * h;
+    }
+
+    /** Gets how far a wheel's tread has traveled in meters. */
+    public double getWheelPosition(int module) {
+        return wheelPositions[module];
+    }
+
+    /** Gets how fast a wheel's tread is moving in meters per second. */
+    public double getWheelSpeed(int module) {
+        return wheelSpeeds[module];
+    }
+
+    /** Gets a wheel's tread acceleration, averaged over the last step, in meters per second squared. */
+    public double getWheelAcceleration(int module) {
+        return wheelAccelerations[module];
+    }
+
+    /** Gets a drive motor's stator current, averaged over the last step, in amps. */
+    public double getDriveCurrent(int module) {
+        return driveCurrents[module];
+    }
+
+    /**
+     * Sets a wheel's tread distance, like resetting its encoder.
+     *
+     * @param module The module's index.
+     * @param position The distance in meters.
+     */
+    public void setWheelPosition(int module, double position) {
+        wheelPositions[module] = position;
+    }
+
+    /** Gets the force a tire put on the chassis along the direction its wheel points, averaged over the last step, in newtons. */
+    public double getWheelForce(int module) {
+        return wheelForces[module];
+    }
+
+    /** Gets how fast a tire was sliding over the carpet, averaged over the last step, in meters per second. */
+    public double getWheelSlip(int module) {
+        return wheelSlip[module];
+    }
+
+    /** Moves the robot to a pose and stops it and its wheels. */
+    public void reset(Pose2d pose) {
+        Arrays.fill(wheelSpeeds, 0);
+        Arrays.fill(wheelAccelerations, 0);
+
+        x = pose.getX();
+        y = pose.getY();
+        theta = pose.getRotation().getRadians();
+        vx = 0;
+        vy = 0;
+        omega = 0;
+        ax = 0;
+        ay = 0;
+    }
+
+    /**
+     * Moves the robot without changing its velocity, like being pushed out of another robot.
+     *
+     * @param dx How far to move along the field's x axis in meters.
+     * @param dy How far to move along the field's y axis in meters.
+     */
+    public void displace(double dx, double dy) {
+        x += dx;
+        y += dy;
+    }
+
+    /**
+     * Applies an impulse through the robot's center, like a collision.
+     *
+     * @param jx The impulse along the field's x axis in N*s.
+     * @param jy The impulse along the field's y axis in N*s.
+     */
+    public void applyImpulse(double jx, double jy) {
+        vx += jx / mass;
+        vy += jy / mass;
+    }
+
+    /** Gets the robot's mass in kilograms. */
+    public double getMass() {
+        return mass;
+    }
+
+    /** Gets the true x position in meters. */
+    public double getX() {
+        return x;
+    }
+
+    /** Gets the true y position in meters. */
+    public double getY() {
+        return y;
+    }
+
+    /** Gets the true heading in radians. */
+    public double getTheta() {
+        return theta;
+    }
+
+    /** Gets the true field-relative x velocity in meters per second. */
+    public double getVx() {
+        return vx;
+    }
+
+    /** Gets the true field-relative y velocity in meters per second. */
+    public double getVy() {
+        return vy;
+    }
+
+    /** Gets the true angular velocity in radians per second. */
+    public double getOmega() {
+        return omega;
+    }
+
+    /** Gets the true pose. Allocates, so it's meant for logging. */
+    public Pose2d getPose() {
+        return new Pose2d(x, y, new Rotation2d(theta));
+    }
+
+    /** Gets the true field-relative speeds. Allocates, so it's meant for logging. */
+    public ChassisSpeeds getSpeeds() {
+        return new ChassisSpeeds(vx, vy, omega);
+    }
+
+    /**
+     * Logs the true pose, speeds, and tire slip.
+     *
+     * @param key The log key to put everything under.
+     */
+    public void log(String key) {
+        Logger.recordOutput(key + "/TruePose", getPose());
+        Logger.recordOutput(key + "/TrueSpeeds", getSpeeds());
+        Logger.recordOutput(key + "/WheelSlip", wheelSlip);
+        Logger.recordOutput(key + "/WheelForces", wheelForces);
+    }
+}
@@ -0,0 +1,101 @@
+package frc.robot.subsystems.drivetrain.sim;
+
+import frc.robot.subsystems.drivetrain.filter.SampleBuffer;
+import java.util.Random;
+
+/**
+ * Turns a simulated signal's true value into what robot code would actually read over CAN.
+ *
+ * Each reading is the true value from {@code latency} ago, rounded to the sensor's resolution, plus gaussian noise.
+ * Some frames are dropped, in which case the previous reading (and its timestamp) is returned again.
+ * Everything random comes from a seeded generator, so a sim run is repeatable.
+ */
+public class SensorModel {
+    private static final int historySize = 32;
+
+    private final double latency;
+    private final double quantum;
+    private final double noise;
+    private final double dropRate;
+    private final Random random;
+
+    private final SampleBuffer history = new SampleBuffer(historySize);
+
+    private double value = 0;
+    private double timestamp = -1;
+    private int dropped = 0;
+
+    /**
+     * Creates a new sensor model.
+     *
+     * @param latency How old each reading is in seconds.
+     * @param quantum The sensor's resolution, or 0 for none.
+     * @param noise The standard deviation of the noise, or 0 for none.
+     * @param dropRate The chance that a frame is dropped, between 0 and 1.
+     * @param seed The seed for the noise and dropped frames.
+     */
+    public SensorModel(double latency, double quantum, double noise, double dropRate, long seed) {
+        this.latency = Math.max(latency, 0);
+        this.quantum = quantum;
+        this.noise = noise;
+        this.dropRate = dropRate;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Records the true value and gets the reading robot code would see now.
+     *
+     * @param trueValue The true value right now.
+     * @param now The current time in seconds.
+     * @return The reading.
+     */
+    public double update(double trueValue, double now) {
+        history.add(trueValue, now);
+
+        if (timestamp >= 0 && random.nextDouble() < dropRate) {
+            dropped++;
+            return value;
+        }
+
+        double measuredAt = now - latency;
+        double measured = interpolate(measuredAt);
+
+        if (quantum > 0) measured = Math.round(measured / quantum) * quantum;
+        if (noise > 0) measured += random.nextGaussian() * noise;
+
+        value = measured;
+        timestamp = Math.max(measuredAt, history.getTimestamp(history.size() - 1));
+
+        return value;
+    }
+
+    /** Gets the true value at a time from the history, clamped to the oldest sample. */
+    private double interpolate(double time) {
+        for (int i = 0; i < history.size() - 1; i++) {
+            double newer = history.getTimestamp(i);
+            double older = history.getTimestamp(i + 1);
+
+            if (older <= time) {
+                double t = newer > older ? (time - older) / (newer - older) : 1;
+                return history.getValue(i + 1) + (history.getValue(i) - history.getValue(i + 1)) * Math.min(t, 1);
+            }
+        }
+
+        return history.getValue(history.size() - 1);
+    }
+
+    /** Gets the last reading. */
+    public double get() {
+        return value;
+    }
+
+    /** Gets when the last reading was measured in seconds. */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    /** Gets how many frames have been dropped. */
+    public int getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,75 @@
+package frc.robot.subsystems.drivetrain.sim;
+
+import static edu.wpi.first.units.Units.*;
+
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import frc.robot.subsystems.drivetrain.DriveConstants;
+import java.util.HashMap;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * A battery shared by every simulated motor.
+ *
+ * The battery is an open-circuit voltage behind a resistance, so the bus sags by I * R with the total supply current.
+ * Each motor reports its own supply current and the bus voltage is recomputed from all of them.
+ * The voltage is also sent to the simulated roboRIO so that {@code RobotController.getBatteryVoltage()} sees the sag.
+ * Below {@link DriveConstants#brownoutVoltage} the roboRIO disables motor outputs, so the motors should output nothing.
+ */
+public class SimBattery {
+    private static Map<String, Double> currents = new HashMap<>();
+
+    private static double voltage = DriveConstants.nominalBatteryVoltage.in(Volts);
+    private static double minVoltage = voltage;
+    private static double totalCurrent = 0;
+    private static int brownouts = 0;
+    private static boolean brownedOut = false;
+
+    private SimBattery() {}
+
+    /**
+     * Reports a load's supply current and updates the bus voltage.
+     *
+     * @param source A unique name for the load.
+     * @param supplyCurrent The current the load draws from the battery in amps.
+     * @return The new bus voltage.
+     */
+    public static synchronized double reportCurrent(String source, double supplyCurrent) {
+        currents.put(source, Math.abs(supplyCurrent));
+
+        totalCurrent = DriveConstants.simOtherLoadCurrent.in(Amps);
+        for (double current : currents.values()) {
+            totalCurrent += current;
+        }
+
+        voltage = Math.max(DriveConstants.nominalBatteryVoltage.in(Volts) - totalCurrent * DriveConstants.batteryResistance, 0);
+        minVoltage = Math.min(minVoltage, voltage);
+
+        boolean wasBrownedOut = brownedOut;
+        brownedOut = voltage < DriveConstants.brownoutVoltage.in(Volts);
+        if (brownedOut && !wasBrownedOut) brownouts++;
+
+        RoboRioSim.setVInVoltage(voltage);
+
+        return voltage;
+    }
+
+    /** Gets the bus voltage. */
+    public static synchronized double getVoltage() {
+        return voltage;
+    }
+
+    /** Gets whether the bus is low enough that the roboRIO would disable outputs. */
+    public static synchronized boolean isBrownedOut() {
+        return brownedOut;
+    }
+
+    /** Logs the bus voltage, current, and brownouts. */
+    public static synchronized void log() {
+        Logger.recordOutput("/Sim/Battery/Voltage", voltage);
+        Logger.recordOutput("/Sim/Battery/MinVoltage", minVoltage);
+        Logger.recordOutput("/Sim/Battery/Current", totalCurrent);
+        Logger.recordOutput("/Sim/Battery/BrownedOut", brownedOut);
+        Logger.recordOutput("/Sim/Battery/Brownouts", brownouts);
+    }
+}
@@ -0,0 +1,163 @@
+package frc.robot.subsystems.drivetrain.trajectory;
+
+import choreo.trajectory.SwerveSample;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.util.List;
+
+/**
+ * A Choreo trajectory packed into one primitive array.
+ *
+ * Each sample takes {@link #stride} doubles: t, x, y, heading, vx, vy, omega, ax, ay, alpha, then the x and y force on each module.
+ * Samples are found by binary search on time and linearly interpolated.
+ */
+public final class CompactTrajectory {
+    private static final int fieldCount = 10;
+
+    private final String name;
+    private final double[] data;
+    private final int moduleCount;
+    private final int stride;
+    private final int sampleCount;
+
+    /**
+     * Packs a list of samples.
+     *
+     * @param name The name of the trajectory.
+     * @param samples The samples in time order.
+     */
+    public CompactTrajectory(String name, List<SwerveSample> samples) {
+        this.name = name;
+        this.sampleCount = samples.size();
+        this.moduleCount = samples.isEmpty() ? 0 : samples.get(0).moduleForcesX().length;
+        this.stride = fieldCount + 2 * moduleCount;
+        this.data = new double[sampleCount * stride];
+
+        for (int i = 0; i < sampleCount; i++) {
+            SwerveSample sample = samples.get(i);
+            int offset = i * stride;
+
+            data[offset]     = sample.t;
+            data[offset + 1] = sample.x;
+            data[offset + 2] = sample.y;
+            data[offset + 3] = sample.heading;
+            data[offset + 4] = sample.vx;
+            data[offset + 5] = sample.vy;
+            data[offset + 6] = sample.omega;
+            data[offset + 7] = sample.ax;
+            data[offset + 8] = sample.ay;
+            data[offset + 9] = sample.alpha;
+
+            double[] forcesX = sample.moduleForcesX();
+            double[] forcesY = sample.moduleForcesY();
+
+            for (int m = 0; m < moduleCount; m++) {
+                data[offset + fieldCount + m] = forcesX[m];
+                data[offset + fieldCount + moduleCount + m] = forcesY[m];
+            }
+        }
+    }
+
+    /**
+     * Samples the trajectory at a time.
+     *
+     * Times before the start or after the end are clamped to the first or last sample.
+     *
+     * @param time The time since the start of the trajectory in seconds.
+     * @return The interpolated sample, or null if the trajectory is empty.
+     */
+    public SwerveSample sampleAt(double time) {
+        if (sampleCount == 0) return null;
+
+        int after = findSampleAfter(time);
+        int before = Math.max(after - 1, 0);
+
+        int a = before * stride;
+        int b = after * stride;
+
+        double span = data[b] - data[a];
+        double t = span <= 0 ? 0 : MathUtil.clamp((time - data[a]) / span, 0, 1);
+
+        double[] forcesX = new double[moduleCount];
+        double[] forcesY = new double[moduleCount];
+
+        for (int m = 0; m < moduleCount; m++) {
+            forcesX[m] = lerp(a + fieldCount + m, b + fieldCount + m, t);
+            forcesY[m] = lerp(a + fieldCount + moduleCount + m, b + fieldCount + moduleCount + m, t);
+        }
+
+        return new SwerveSample(
+            lerp(a, b, t),
+            lerp(a + 1, b + 1, t),
+            lerp(a + 2, b + 2, t),
+            data[a + 3] + MathUtil.angleModulus(data[b + 3] - data[a + 3]) * t,
+            lerp(a + 4, b + 4, t),
+            lerp(a + 5, b + 5, t),
+            lerp(a + 6, b + 6, t),
+            lerp(a + 7, b + 7, t),
+            lerp(a + 8, b + 8, t),
+            lerp(a + 9, b + 9, t),
+            forcesX,
+            forcesY);
+    }
+
+    /** Gets the index of the first sample at or after a time, clamped to the last sample. */
+    private int findSampleAfter(double time) {
+        int low = 0;
+        int high = sampleCount - 1;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (data[middle * stride] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private double lerp(int a, int b, double t) {
+        return data[a] + (data[b] - data[a]) * t;
+    }
+
+    /** Gets the pose at the start of the trajectory, or null if it is empty. */
+    public Pose2d getInitialPose() {
+        return sampleCount == 0 ? null : getPose(0);
+    }
+
+    /** Gets the pose at the end of the trajectory, or null if it is empty. */
+    public Pose2d getFinalPose() {
+        return sampleCount == 0 ? null : getPose(sampleCount - 1);
+    }
+
+    private Pose2d getPose(int index) {
+        int offset = index * stride;
+
+        return new Pose2d(data[offset + 1], data[offset + 2], new Rotation2d(data[offset + 3]));
+    }
+
+    /** Gets the total time of the trajectory in seconds. */
+    public double getTotalTime() {
+        return sampleCount == 0 ? 0 : data[(sampleCount - 1) * stride];
+    }
+
+    /** Gets the name of the trajectory. */
+    public String getName() {
+        return name;
+    }
+
+    /** Gets the number of samples. */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /** Gets the approximate memory used by this trajectory in bytes. */
+    public long getMemoryUsage() {
+        // Array header plus the doubles, plus this object
+        return 16 + 8L * data.length + 40;
+    }
+}
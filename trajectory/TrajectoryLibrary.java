@@ -0,0 +1,162 @@
+package frc.robot.subsystems.drivetrain.trajectory;
+
+import choreo.Choreo;
+import choreo.trajectory.SwerveSample;
+import choreo.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Loads every deployed Choreo trajectory in parallel at boot and keeps them in memory as {@link CompactTrajectory}s.
+ *
+ * Auto routines get their handles from {@link #get(String)}, which is instant once the preload is done.
+ */
+public class TrajectoryLibrary {
+    private static final String key = "/Subsystems/Drivetrain/Trajectories";
+
+    /** A trajectory that is loading or loaded, with its log keys built once so logging doesn't build strings every cycle. */
+    private static class Entry {
+        final CompletableFuture<CompactTrajectory> future;
+        final String bytesKey;
+        final String loadTimeKey;
+
+        // Written by the loader thread, and only read once the future is done
+        volatile double loadTime = Double.NaN;
+
+        Entry(String name, CompletableFuture<CompactTrajectory> future) {
+            this.future = future;
+            this.bytesKey = key + "/" + name + "/Bytes";
+            this.loadTimeKey = key + "/" + name + "/LoadMs";
+        }
+    }
+
+    private static Map<String, Entry> trajectories = new ConcurrentHashMap<>();
+    private static ExecutorService executor;
+
+    private TrajectoryLibrary() {}
+
+    /**
+     * Starts parsing every .traj file in the deploy directory's choreo folder on a pool of background threads.
+     *
+     * Calling this more than once does nothing.
+     */
+    public static synchronized void preload() {
+        if (executor != null) return;
+
+        File[] files = new File(Filesystem.getDeployDirectory(), "choreo").listFiles((dir, file) -> file.endsWith(".traj"));
+        if (files == null) files = new File[0];
+
+        executor = Executors.newFixedThreadPool(Math.max(1, Math.min(files.length, Runtime.getRuntime().availableProcessors())), runnable -> {
+            Thread thread = new Thread(runnable, "TrajectoryLoader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (File file : files) {
+            String name = file.getName().substring(0, file.getName().length() - ".traj".length());
+
+            trajectories.put(name, createEntry(name, true));
+        }
+    }
+
+    /** Creates the entry for a trajectory, loading it on the pool or on this thread. */
+    private static Entry createEntry(String name, boolean async) {
+        CompletableFuture<CompactTrajectory> future = new CompletableFuture<>();
+        Entry entry = new Entry(name, future);
+
+        if (async) {
+            future.completeAsync(() -> load(entry, name), executor);
+        } else {
+            future.complete(load(entry, name));
+        }
+
+        return entry;
+    }
+
+    /**
+     * Parses a single trajectory. Runs on a loader thread unless the trajectory wasn't preloaded.
+     *
+     * Nothing is logged here, since the loader threads can't log. The results are logged by {@link #log()}.
+     */
+    private static CompactTrajectory load(Entry entry, String name) {
+        long start = System.nanoTime();
+
+        Optional<Trajectory<SwerveSample>> trajectory = Choreo.loadTrajectory(name);
+        CompactTrajectory compact = trajectory.map(loaded -> new CompactTrajectory(name, loaded.samples())).orElse(null);
+
+        entry.loadTime = (System.nanoTime() - start) / 1e6;
+
+        return compact;
+    }
+
+    /**
+     * Gets a trajectory by name.
+     *
+     * If it is still being parsed, this waits for it. Trajectories that weren't preloaded are loaded now.
+     *
+     * @param name The name of the trajectory, without the .traj extension.
+     * @return The trajectory, or null if it couldn't be loaded.
+     */
+    public static CompactTrajectory get(String name) {
+        return trajectories.computeIfAbsent(name, missing -> createEntry(missing, false)).future.join();
+    }
+
+    /** Gets whether every preloaded trajectory has finished parsing. */
+    public static boolean isLoaded() {
+        for (Entry entry : trajectories.values()) {
+            if (!entry.future.isDone()) return false;
+        }
+
+        return true;
+    }
+
+    /** Gets the names of every known trajectory. */
+    public static List<String> getNames() {
+        return List.copyOf(trajectories.keySet());
+    }
+
+    /** Gets the memory used by every loaded trajectory in bytes. */
+    public static long getMemoryUsage() {
+        long total = 0;
+
+        for (Entry entry : trajectories.values()) {
+            CompactTrajectory trajectory = entry.future.isCompletedExceptionally() ? null : entry.future.getNow(null);
+            if (trajectory != null) total += trajectory.getMemoryUsage();
+        }
+
+        return total;
+    }
+
+    /** Logs the memory used by and the load time of each loaded trajectory, and how many failed to load. */
+    public static void log() {
+        long total = 0;
+        int failed = 0;
+
+        for (Entry entry : trajectories.values()) {
+            if (!entry.future.isDone()) continue;
+
+            CompactTrajectory trajectory = entry.future.isCompletedExceptionally() ? null : entry.future.getNow(null);
+
+            if (trajectory == null) {
+                failed++;
+                continue;
+            }
+
+            Logger.recordOutput(entry.bytesKey, trajectory.getMemoryUsage());
+            Logger.recordOutput(entry.loadTimeKey, entry.loadTime);
+            total += trajectory.getMemoryUsage();
+        }
+
+        Logger.recordOutput(key + "/Loaded", isLoaded());
+        Logger.recordOutput(key + "/Failed", failed);
+        Logger.recordOutput(key + "/TotalBytes", total);
+    }
+}